@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hotels.avro.compatibility.ChronologyCompatibilityCheckResult;
+import com.hotels.avro.compatibility.ChronologyWindow;
+import com.hotels.avro.compatibility.Compatibility.Mode;
+import com.hotels.avro.compatibility.CompatibilityConfiguration;
+
+/**
+ * Times the checks of a candidate schema against a generated history through each {@link Mode}. Each invocation checks
+ * schema instances that the library has already seen, as a service checking candidates against a registry would.
+ * Windowed modes check the later half of the history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompatibilityBenchmark {
+
+  /** Every mode, as no values are given. */
+  @Param
+  public Mode mode;
+
+  @Param({ "10", "100" })
+  public int historyLength;
+
+  @Param({ "8", "64" })
+  public int recordWidth;
+
+  @Param({ "1", "4" })
+  public int nestingDepth;
+
+  @Param({ "2", "6" })
+  public int unionSize;
+
+  @Param({ "4", "256" })
+  public int enumSize;
+
+  private CompatibilityConfiguration configuration;
+  private List<Schema> history;
+  private Schema candidate;
+  private ChronologyCompatibilityCheckResult incompatibleResult;
+
+  @Setup
+  public void setUp() {
+    configuration = CompatibilityConfiguration
+        .builder()
+        .window(ChronologyWindow.lastVersions(historyLength / 2))
+        .build();
+    SchemaEvolution evolution = new SchemaEvolution(42L, recordWidth, nestingDepth, unionSize, enumSize);
+    history = evolution.history(historyLength);
+    candidate = evolution.next();
+    Schema incompatible = Schema.create(Schema.Type.STRING);
+    incompatibleResult = mode.check(incompatible, history, configuration);
+  }
+
+  @Benchmark
+  public ChronologyCompatibilityCheckResult modeCheck() {
+    return mode.check(candidate, history, configuration);
+  }
+
+  @Benchmark
+  public String asMessage() {
+    return incompatibleResult.asMessage();
+  }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hotels.avro.compatibility.Compatibility;
+import com.hotels.avro.compatibility.CompatibilityCheckResult;
+import com.hotels.avro.compatibility.CompatibilityConfiguration;
+import com.hotels.avro.compatibility.RoundTripVerifier;
+
+/**
+ * Measures the number of datums written and read per second when a candidate is verified against the latest schema
+ * of a generated history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundTripVerifierBenchmark {
+
+  private static final int DATUMS_PER_PAIR = 1000;
+
+  @Param({ "8", "64" })
+  public int recordWidth;
+
+  @Param({ "1", "4" })
+  public int nestingDepth;
+
+  private CompatibilityConfiguration configuration;
+  private Schema latest;
+  private Schema candidate;
+
+  @Setup
+  public void setUp() {
+    SchemaEvolution evolution = new SchemaEvolution(42L, recordWidth, nestingDepth, 2, 4);
+    List<Schema> history = evolution.history(2);
+    latest = history.get(history.size() - 1);
+    candidate = evolution.next();
+    configuration = CompatibilityConfiguration
+        .builder()
+        .verifier(new RoundTripVerifier(DATUMS_PER_PAIR))
+        .build();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(DATUMS_PER_PAIR)
+  public CompatibilityCheckResult canReadLatest() {
+    return Compatibility.checkThat(candidate, configuration).canRead(latest);
+  }
+
+}
@@ -0,0 +1,371 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility.benchmark;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.avro.JsonProperties;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.Schema.Type;
+
+/**
+ * Generates histories of record schemas that evolve as schemas in a registry do: fields with defaults are added and
+ * removed, unions are widened, numeric types are promoted, enums gain symbols and types are renamed with an alias of
+ * their former name. Histories are determined by the seed, so every run of a benchmark checks the same schemas.
+ * <p>
+ * Each schema in a history is built afresh, as it would be when parsed from a registry, and shares no instances with
+ * the other schemas.
+ */
+public final class SchemaEvolution {
+
+  private static final String NAMESPACE = "com.hotels.avro.compatibility.generated";
+  /** Primitive union branches in the order that unions are widened, after {@code null}. */
+  private static final Type[] BRANCH_TYPES = { Type.INT, Type.STRING, Type.BOOLEAN, Type.DOUBLE, Type.BYTES };
+  private static final Type[] FIELD_TYPES = { Type.INT, Type.FLOAT, Type.STRING, Type.BOOLEAN, Type.BYTES };
+
+  private final Random random;
+  private final int recordWidth;
+  private final int nestingDepth;
+  private final int unionSize;
+  private final int enumSize;
+  private final RecordModel root;
+  private int nextName;
+
+  /**
+   * @param recordWidth the number of fields in each record when the history starts.
+   * @param nestingDepth the number of levels of records, each nested in a field of the level above.
+   * @param unionSize the number of branches in each union when the history starts, including {@code null}.
+   * @param enumSize the number of symbols in each enum when the history starts.
+   */
+  public SchemaEvolution(long seed, int recordWidth, int nestingDepth, int unionSize, int enumSize) {
+    checkArgument(recordWidth >= 1, "Record width must be at least 1.");
+    checkArgument(nestingDepth >= 1, "Nesting depth must be at least 1.");
+    checkArgument(unionSize >= 2, "Union size must be at least 2.");
+    checkArgument(enumSize >= 1, "Enum size must be at least 1.");
+    random = new Random(seed);
+    this.recordWidth = recordWidth;
+    this.nestingDepth = nestingDepth;
+    this.unionSize = unionSize;
+    this.enumSize = enumSize;
+    root = newRecord(1);
+  }
+
+  /**
+   * @return {@code length} schemas, earliest first, each one evolution of the schema before it.
+   */
+  public List<Schema> history(int length) {
+    checkArgument(length >= 1, "History length must be at least 1.");
+    List<Schema> history = new ArrayList<>(length);
+    history.add(root.toSchema());
+    for (int i = 1; i < length; i++) {
+      evolve();
+      history.add(root.toSchema());
+    }
+    return history;
+  }
+
+  /** @return the next schema in the history, without recording it. */
+  public Schema next() {
+    evolve();
+    return root.toSchema();
+  }
+
+  private void evolve() {
+    RecordModel record = randomRecord();
+    switch (random.nextInt(6)) {
+    case 0:
+      record.fields.add(newOptionalField());
+      return;
+    case 1:
+      record.removeOptionalField();
+      return;
+    case 2:
+      record.widenUnion();
+      return;
+    case 3:
+      record.promoteField();
+      return;
+    case 4:
+      record.addEnumSymbol();
+      return;
+    default:
+      record.rename(NAMESPACE + "." + name("Record"));
+      return;
+    }
+  }
+
+  private RecordModel randomRecord() {
+    RecordModel record = root;
+    int depth = random.nextInt(nestingDepth);
+    for (int i = 0; i < depth; i++) {
+      record = record.nested();
+    }
+    return record;
+  }
+
+  private RecordModel newRecord(int depth) {
+    RecordModel record = new RecordModel(NAMESPACE + "." + name("Record"));
+    for (int i = 0; i < recordWidth; i++) {
+      if (i == 0 && depth < nestingDepth) {
+        record.fields.add(new FieldModel(name("nested"), newRecord(depth + 1)));
+        continue;
+      }
+      switch (i % 4) {
+      case 1:
+        record.fields.add(new FieldModel(name("choice"), newUnion()));
+        break;
+      case 2:
+        record.fields.add(new FieldModel(name("status"), newEnum()));
+        break;
+      default:
+        record.fields.add(new FieldModel(name("value"), FIELD_TYPES[random.nextInt(FIELD_TYPES.length)]));
+        break;
+      }
+    }
+    return record;
+  }
+
+  private FieldModel newOptionalField() {
+    UnionModel union = new UnionModel();
+    union.branches.add(BRANCH_TYPES[random.nextInt(BRANCH_TYPES.length)]);
+    return new FieldModel(name("added"), union);
+  }
+
+  private UnionModel newUnion() {
+    UnionModel union = new UnionModel();
+    for (int i = 1; i < unionSize; i++) {
+      union.widen();
+    }
+    return union;
+  }
+
+  private EnumModel newEnum() {
+    EnumModel model = new EnumModel(NAMESPACE + "." + name("Status"));
+    for (int i = 0; i < enumSize; i++) {
+      model.symbols.add("S" + i);
+    }
+    return model;
+  }
+
+  private String name(String prefix) {
+    return prefix + nextName++;
+  }
+
+  private final class RecordModel {
+    private String name;
+    private final List<String> aliases = new ArrayList<>();
+    private final List<FieldModel> fields = new ArrayList<>();
+
+    private RecordModel(String name) {
+      this.name = name;
+    }
+
+    private RecordModel nested() {
+      for (FieldModel field : fields) {
+        if (field.record != null) {
+          return field.record;
+        }
+      }
+      return this;
+    }
+
+    private void removeOptionalField() {
+      List<FieldModel> optional = new ArrayList<>();
+      for (FieldModel field : fields) {
+        if (field.union != null) {
+          optional.add(field);
+        }
+      }
+      if (optional.size() > 1) {
+        fields.remove(optional.get(random.nextInt(optional.size())));
+      }
+    }
+
+    private void widenUnion() {
+      FieldModel field = randomField(Kind.UNION);
+      if (field != null) {
+        field.union.widen();
+      }
+    }
+
+    private void promoteField() {
+      FieldModel field = randomField(Kind.PRIMITIVE);
+      if (field != null) {
+        switch (field.primitive) {
+        case INT:
+          field.primitive = Type.LONG;
+          break;
+        case FLOAT:
+          field.primitive = Type.DOUBLE;
+          break;
+        case STRING:
+          field.primitive = Type.BYTES;
+          break;
+        default:
+          break;
+        }
+      }
+    }
+
+    private void addEnumSymbol() {
+      FieldModel field = randomField(Kind.ENUM);
+      if (field != null) {
+        field.enumeration.symbols.add("S" + field.enumeration.symbols.size());
+      }
+    }
+
+    private void rename(String newName) {
+      aliases.add(name);
+      name = newName;
+    }
+
+    private FieldModel randomField(Kind kind) {
+      List<FieldModel> candidates = new ArrayList<>();
+      for (FieldModel field : fields) {
+        if (field.kind() == kind) {
+          candidates.add(field);
+        }
+      }
+      return candidates.isEmpty() ? null : candidates.get(random.nextInt(candidates.size()));
+    }
+
+    private Schema toSchema() {
+      Schema schema = Schema.createRecord(name, null, null, false);
+      for (String alias : aliases) {
+        schema.addAlias(alias);
+      }
+      List<Field> schemaFields = new ArrayList<>(fields.size());
+      for (FieldModel field : fields) {
+        schemaFields.add(field.toField());
+      }
+      schema.setFields(schemaFields);
+      return schema;
+    }
+  }
+
+  private enum Kind {
+    PRIMITIVE,
+    UNION,
+    ENUM,
+    RECORD
+  }
+
+  private static final class FieldModel {
+    private final String name;
+    private Type primitive;
+    private UnionModel union;
+    private EnumModel enumeration;
+    private RecordModel record;
+
+    private FieldModel(String name, Type primitive) {
+      this.name = name;
+      this.primitive = primitive;
+    }
+
+    private FieldModel(String name, UnionModel union) {
+      this.name = name;
+      this.union = union;
+    }
+
+    private FieldModel(String name, EnumModel enumeration) {
+      this.name = name;
+      this.enumeration = enumeration;
+    }
+
+    private FieldModel(String name, RecordModel record) {
+      this.name = name;
+      this.record = record;
+    }
+
+    private Kind kind() {
+      if (union != null) {
+        return Kind.UNION;
+      }
+      if (enumeration != null) {
+        return Kind.ENUM;
+      }
+      if (record != null) {
+        return Kind.RECORD;
+      }
+      return Kind.PRIMITIVE;
+    }
+
+    private Field toField() {
+      switch (kind()) {
+      case UNION:
+        return new Field(name, union.toSchema(), null, JsonProperties.NULL_VALUE);
+      case ENUM:
+        return new Field(name, enumeration.toSchema(), null, enumeration.symbols.get(0));
+      case RECORD:
+        return new Field(name, record.toSchema(), null, (Object) null);
+      default:
+        return new Field(name, Schema.create(primitive), null, (Object) null);
+      }
+    }
+  }
+
+  /** A union of {@code null} and other branches, defaulting to {@code null}. */
+  private static final class UnionModel {
+    private final List<Type> branches = new ArrayList<>();
+    private int records;
+
+    private void widen() {
+      for (Type type : BRANCH_TYPES) {
+        if (!branches.contains(type)) {
+          branches.add(type);
+          return;
+        }
+      }
+      branches.add(Type.RECORD);
+    }
+
+    private Schema toSchema() {
+      List<Schema> types = new ArrayList<>(branches.size() + 1);
+      types.add(Schema.create(Type.NULL));
+      records = 0;
+      for (Type type : branches) {
+        types.add(type == Type.RECORD ? branchRecord() : Schema.create(type));
+      }
+      return Schema.createUnion(types);
+    }
+
+    private Schema branchRecord() {
+      Schema schema = Schema.createRecord("Branch" + records++, null, NAMESPACE, false);
+      schema.setFields(Collections.singletonList(new Field("id", Schema.create(Type.LONG), null, (Object) null)));
+      return schema;
+    }
+  }
+
+  private static final class EnumModel {
+    private final String name;
+    private final List<String> symbols = new ArrayList<>();
+
+    private EnumModel(String name) {
+      this.name = name;
+    }
+
+    private Schema toSchema() {
+      return Schema.createEnum(name, null, null, new ArrayList<>(symbols), symbols.get(0));
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * A check run on a caller supplied executor. Cancelling the future stops the check before its next pair check, and
+ * cancels any pair checks that it has fanned out over the {@link CompatibilityConfiguration#getExecutor() configured
+ * executor} but which have not yet started. Cancelling a stage derived from the future does not cancel the check.
+ */
+final class AsyncCheck<T> extends CompletableFuture<T> implements Runnable {
+
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+  private final CompatibilityConfiguration configuration;
+  private final Function<CompatibilityConfiguration, T> check;
+
+  private AsyncCheck(CompatibilityConfiguration configuration, Function<CompatibilityConfiguration, T> check) {
+    this.configuration = configuration.toBuilder().cancelled(cancelled).build();
+    this.check = check;
+  }
+
+  /**
+   * @param check runs the check with a configuration through which it observes cancellation.
+   */
+  static <T> CompletableFuture<T> submit(
+      CompatibilityConfiguration configuration,
+      Executor executor,
+      Function<CompatibilityConfiguration, T> check) {
+    AsyncCheck<T> future = new AsyncCheck<>(configuration, check);
+    try {
+      executor.execute(future);
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  @Override
+  public void run() {
+    if (isDone()) {
+      return;
+    }
+    try {
+      complete(check.apply(configuration));
+    } catch (CancellationException e) {
+      cancel(false);
+    } catch (Throwable t) {
+      completeExceptionally(t);
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    cancelled.set(true);
+    return super.cancel(mayInterruptIfRunning);
+  }
+
+}
@@ -0,0 +1,406 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.avro.Schema;
+
+import com.hotels.avro.compatibility.Compatibility.ChronologyType;
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+/**
+ * Checks directories of schema histories in bulk. Each subdirectory of the root holds the history of one subject as
+ * files named {@code v1.avsc}, {@code v2.avsc} and so on, and the latest version of each subject is checked against
+ * the earlier versions with the configured {@link Mode}. Subjects are checked, and their schemas read and parsed, in
+ * parallel over a work stealing pool. A JSON object is written for each subject, one per line, as soon as it has been
+ * checked.
+ * <p>
+ * Run from the command line with the mode, the root directory and optionally the parallelism. The exit status is
+ * {@code 1} if any subject is incompatible or cannot be read:
+ *
+ * <pre>
+ * java com.hotels.avro.compatibility.BulkChecker CAN_READ_ALL schemas/ 8
+ * </pre>
+ */
+public final class BulkChecker {
+
+  private static final Pattern VERSION_FILE = Pattern.compile("v(\\d+)\\.avsc");
+
+  private final Mode mode;
+  private final CompatibilityConfiguration configuration;
+  private final ForkJoinPool pool;
+
+  /**
+   * Checks subjects over the common pool.
+   */
+  public BulkChecker(Mode mode) {
+    this(mode, CompatibilityConfiguration.DEFAULT, ForkJoinPool.commonPool());
+  }
+
+  public BulkChecker(Mode mode, CompatibilityConfiguration configuration, ForkJoinPool pool) {
+    this.mode = checkNotNull(mode, "Mode cannot be null.");
+    this.configuration = checkNotNull(configuration, "Configuration cannot be null.");
+    this.pool = checkNotNull(pool, "Pool cannot be null.");
+  }
+
+  /**
+   * Checks every subject under the root directory, writing a JSON line for each to the output as it is checked.
+   *
+   * @param out receives the results, which may be written from any thread of the pool but never concurrently. It is
+   *          flushed after each line if it is {@link Flushable}.
+   * @return the results keyed by subject, in the order of the subjects.
+   */
+  public Map<String, SubjectResult> check(Path root, Appendable out) throws IOException {
+    checkNotNull(root, "Root directory cannot be null.");
+    checkNotNull(out, "Output cannot be null.");
+    List<SubjectCheck> checks = new ArrayList<>();
+    for (SubjectHistory history : discover(root)) {
+      checks.add(new SubjectCheck(history, out));
+    }
+    try {
+      pool.invoke(new RecursiveTask<Void>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Void compute() {
+          ForkJoinTask.invokeAll(checks);
+          return null;
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    Map<String, SubjectResult> results = new TreeMap<>();
+    for (SubjectCheck check : checks) {
+      SubjectResult result = check.join();
+      results.put(result.getSubject(), result);
+    }
+    return results;
+  }
+
+  /**
+   * @return the history of each subdirectory of the root that holds at least one version, ordered by subject.
+   */
+  static List<SubjectHistory> discover(Path root) throws IOException {
+    List<SubjectHistory> histories = new ArrayList<>();
+    try (DirectoryStream<Path> subjects = Files.newDirectoryStream(root)) {
+      for (Path subject : subjects) {
+        if (Files.isDirectory(subject)) {
+          SubjectHistory history = SubjectHistory.of(subject);
+          if (!history.files.isEmpty()) {
+            histories.add(history);
+          }
+        }
+      }
+    }
+    Collections.sort(histories);
+    return histories;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      exitWithUsage();
+    }
+    Mode mode = null;
+    Path root = null;
+    ForkJoinPool pool = null;
+    try {
+      mode = Mode.valueOf(args[0]);
+      root = Paths.get(args[1]);
+      pool = args.length == 3 ? new ForkJoinPool(Integer.parseInt(args[2])) : ForkJoinPool.commonPool();
+    } catch (IllegalArgumentException e) {
+      exitWithUsage();
+    }
+    Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+    Map<String, SubjectResult> results = new BulkChecker(mode, CompatibilityConfiguration.DEFAULT, pool).check(root,
+        out);
+    out.flush();
+    for (SubjectResult result : results.values()) {
+      if (!result.isCompatible()) {
+        System.exit(1);
+      }
+    }
+  }
+
+  private static void exitWithUsage() {
+    System.err.println("Usage: BulkChecker <mode> <directory> [parallelism]");
+    System.exit(2);
+  }
+
+  /** The outcome of checking the latest version of a subject. */
+  public static final class SubjectResult {
+    private final String subject;
+    private final int version;
+    private final ChronologyCompatibilityCheckResult result;
+    private final String error;
+
+    private SubjectResult(String subject, int version, ChronologyCompatibilityCheckResult result, String error) {
+      this.subject = subject;
+      this.version = version;
+      this.result = result;
+      this.error = error;
+    }
+
+    public String getSubject() {
+      return subject;
+    }
+
+    /**
+     * @return the latest version of the subject, which was checked.
+     */
+    public int getVersion() {
+      return version;
+    }
+
+    /**
+     * @return the result of the check, or {@code null} if the history of the subject could not be read.
+     */
+    public ChronologyCompatibilityCheckResult getResult() {
+      return result;
+    }
+
+    /**
+     * @return why the history of the subject could not be read, or {@code null} if it was checked.
+     */
+    public String getError() {
+      return error;
+    }
+
+    /**
+     * @return {@code true} if the history was read and the latest version is compatible.
+     */
+    public boolean isCompatible() {
+      return result != null && result.isCompatible();
+    }
+
+    @Override
+    public String toString() {
+      return "SubjectResult [subject=" + subject + ", version=" + version + ", result=" + result + ", error=" + error
+          + "]";
+    }
+  }
+
+  /** The schema files of a subject, in version order. */
+  static final class SubjectHistory implements Comparable<SubjectHistory> {
+    final String subject;
+    final List<Path> files;
+    final List<Integer> versions;
+
+    private SubjectHistory(String subject, List<Path> files, List<Integer> versions) {
+      this.subject = subject;
+      this.files = files;
+      this.versions = versions;
+    }
+
+    private static SubjectHistory of(Path directory) throws IOException {
+      Map<Integer, Path> filesByVersion = new TreeMap<>();
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "v*.avsc")) {
+        for (Path file : files) {
+          Matcher matcher = VERSION_FILE.matcher(file.getFileName().toString());
+          if (matcher.matches() && Files.isRegularFile(file)) {
+            filesByVersion.put(Integer.valueOf(matcher.group(1)), file);
+          }
+        }
+      }
+      return new SubjectHistory(directory.getFileName().toString(), new ArrayList<>(filesByVersion.values()),
+          new ArrayList<>(filesByVersion.keySet()));
+    }
+
+    @Override
+    public int compareTo(SubjectHistory other) {
+      return subject.compareTo(other.subject);
+    }
+  }
+
+  private final class SubjectCheck extends RecursiveTask<SubjectResult> {
+    private static final long serialVersionUID = 1L;
+
+    private final SubjectHistory history;
+    private final Appendable out;
+
+    private SubjectCheck(SubjectHistory history, Appendable out) {
+      this.history = history;
+      this.out = out;
+    }
+
+    @Override
+    protected SubjectResult compute() {
+      int latestVersion = history.versions.get(history.versions.size() - 1);
+      List<SchemaRead> reads = new ArrayList<>(history.files.size());
+      for (Path file : history.files) {
+        reads.add(new SchemaRead(file));
+      }
+      ForkJoinTask.invokeAll(reads);
+      List<Schema> schemas = new ArrayList<>(reads.size());
+      for (SchemaRead read : reads) {
+        if (read.error != null) {
+          return write(new SubjectResult(history.subject, latestVersion, null, read.error));
+        }
+        schemas.add(read.schema);
+      }
+      Schema latest = schemas.get(schemas.size() - 1);
+      List<Schema> earlier = schemas.subList(0, schemas.size() - 1);
+      ChronologyCompatibilityCheckResult checked;
+      int firstChecked;
+      try {
+        if (mode.getChronology() == ChronologyType.WINDOW) {
+          // The window is applied here, rather than by the check, to know which versions its results refer to
+          int windowed = configuration.getWindow().apply(SchemaChronology.from(earlier)).size();
+          firstChecked = earlier.size() - windowed;
+          checked = mode.check(latest, earlier.subList(firstChecked, earlier.size()),
+              configuration.toBuilder().window(ChronologyWindow.ALL).build());
+        } else {
+          // Latest checks are made against the last of the earlier versions only
+          firstChecked = mode.getChronology() == ChronologyType.LATEST ? Math.max(earlier.size() - 1, 0) : 0;
+          checked = mode.check(latest, earlier, configuration);
+        }
+      } catch (RuntimeException e) {
+        return write(new SubjectResult(history.subject, latestVersion, null, String.valueOf(e.getMessage())));
+      }
+      return write(new SubjectResult(history.subject, latestVersion, checked, null), firstChecked);
+    }
+
+    private SubjectResult write(SubjectResult result) {
+      return write(result, 0);
+    }
+
+    /**
+     * @param firstChecked the index in the history of the earlier version against which the first result was checked.
+     */
+    private SubjectResult write(SubjectResult result, int firstChecked) {
+      StringBuilder line = new StringBuilder(128);
+      line.append("{\"subject\":");
+      appendJsonString(line, result.subject);
+      line.append(",\"version\":").append(result.version).append(",\"mode\":\"").append(mode).append('"');
+      if (result.result == null) {
+        line.append(",\"compatible\":false,\"error\":");
+        appendJsonString(line, result.error);
+      } else {
+        ChronologyCompatibilityCheckResult checked = result.result;
+        line.append(",\"compatible\":").append(checked.isCompatible());
+        if (!checked.isCompatible()) {
+          line.append(",\"incompatibleVersions\":[");
+          boolean first = true;
+          int index = firstChecked + (checked.isTruncated() ? checked.getFailedIndex() : 0);
+          for (CompatibilityCheckResult pair : checked.getResults()) {
+            if (!pair.isCompatible()) {
+              if (first) {
+                first = false;
+              } else {
+                line.append(',');
+              }
+              line.append(history.versions.get(index));
+            }
+            index++;
+          }
+          line.append("],\"message\":");
+          appendJsonString(line, checked.asMessage(MessageLimits.DEFAULT));
+        }
+      }
+      line.append("}\n");
+      synchronized (out) {
+        try {
+          out.append(line);
+          if (out instanceof Flushable) {
+            ((Flushable) out).flush();
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      return result;
+    }
+  }
+
+  /** Reads and parses a schema file, recording any failure rather than throwing it. */
+  private static final class SchemaRead extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Path file;
+    private Schema schema;
+    private String error;
+
+    private SchemaRead(Path file) {
+      this.file = file;
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        schema = new Schema.Parser().parse(json);
+      } catch (IOException | RuntimeException e) {
+        error = file + ": " + e.getMessage();
+      }
+    }
+  }
+
+  static void appendJsonString(StringBuilder out, String value) {
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '"':
+        out.append("\\\"");
+        break;
+      case '\\':
+        out.append("\\\\");
+        break;
+      case '\n':
+        out.append("\\n");
+        break;
+      case '\r':
+        out.append("\\r");
+        break;
+      case '\t':
+        out.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          out.append("\\u00");
+          out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+        } else {
+          out.append(c);
+        }
+      }
+    }
+    out.append('"');
+  }
+
+}
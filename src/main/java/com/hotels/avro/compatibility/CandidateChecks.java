@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.avro.Schema;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+import com.hotels.avro.compatibility.Compatibility.ChronologyType;
+
+/**
+ * Checks many candidate schemas against one chronology. The chronology is prepared once: it is materialised, reduced
+ * to its latest schema where only that is checked or to its configured window, compiled, and grouped into
+ * {@link EquivalentSchemas classes of equivalent schemas} where configured. Candidates are checked in parallel over the
+ * {@link CompatibilityConfiguration#getExecutor() configured executor}, in which case the pair checks of each candidate
+ * run sequentially.
+ */
+final class CandidateChecks {
+
+  private final ChronologyType chronology;
+  private final CheckType check;
+  private final List<Schema> schemasInOrder;
+  /** Held so that the compiled forms of the chronology are reused by every candidate. */
+  @SuppressWarnings("unused")
+  private final List<CompiledSchema> compiledSchemas;
+  private final EquivalentSchemas equivalentSchemas;
+  private final CompatibilityConfiguration candidateConfiguration;
+  private final SchemaInterner interner;
+
+  private CandidateChecks(
+      ChronologyType chronology,
+      CheckType check,
+      Iterable<Schema> schemasInOrder,
+      CompatibilityConfiguration configuration) {
+    this.chronology = chronology;
+    this.check = check;
+    interner = configuration.getInterner();
+    if (interner != null) {
+      schemasInOrder = SchemaChronology.interned(schemasInOrder, interner);
+    }
+    if (chronology == ChronologyType.WINDOW) {
+      schemasInOrder = configuration.getWindow().apply(SchemaChronology.from(schemasInOrder));
+      configuration = configuration.toBuilder().window(ChronologyWindow.ALL).build();
+    }
+    if (chronology == ChronologyType.LATEST) {
+      Schema latest = SchemaChronology.latestOf(schemasInOrder);
+      this.schemasInOrder = latest == null ? Collections.<Schema> emptyList() : Collections.singletonList(latest);
+    } else {
+      this.schemasInOrder = Compatibility.asList(schemasInOrder);
+    }
+    compiledSchemas = new ArrayList<>(this.schemasInOrder.size());
+    for (Schema schema : this.schemasInOrder) {
+      compiledSchemas.add(CompiledSchema.compile(schema));
+    }
+    equivalentSchemas = chronology != ChronologyType.LATEST && configuration.isDeduplicate()
+        ? EquivalentSchemas.of(this.schemasInOrder)
+        : null;
+    candidateConfiguration = configuration.getExecutor() == null
+        ? configuration
+        : configuration.toBuilder().executor(null).build();
+  }
+
+  /**
+   * @param schemasInOrder existing schemas, latest last.
+   * @return results keyed by candidate, in the order of the candidates. Equal candidates share a result.
+   */
+  static Map<Schema, ChronologyCompatibilityCheckResult> check(
+      ChronologyType chronology,
+      CheckType check,
+      Iterable<Schema> candidates,
+      Iterable<Schema> schemasInOrder,
+      CompatibilityConfiguration configuration) {
+    CandidateChecks candidateChecks = new CandidateChecks(chronology, check, schemasInOrder, configuration);
+    Executor executor = configuration.getExecutor();
+    Map<Schema, ChronologyCompatibilityCheckResult> results = new LinkedHashMap<>();
+    if (executor == null) {
+      for (Schema candidate : candidates) {
+        checkNotNull(candidate, "Schemas to be checked cannot contain null.");
+        if (!results.containsKey(candidate)) {
+          results.put(candidate, candidateChecks.check(candidate));
+        }
+      }
+      return results;
+    }
+
+    Map<Schema, FutureTask<ChronologyCompatibilityCheckResult>> tasks = new LinkedHashMap<>();
+    for (Schema candidate : candidates) {
+      checkNotNull(candidate, "Schemas to be checked cannot contain null.");
+      if (!tasks.containsKey(candidate)) {
+        FutureTask<ChronologyCompatibilityCheckResult> task = new FutureTask<>(candidateChecks.task(candidate));
+        tasks.put(candidate, task);
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          // Left for the calling thread
+        }
+      }
+    }
+    try {
+      for (FutureTask<ChronologyCompatibilityCheckResult> task : tasks.values()) {
+        task.run();
+      }
+      for (Map.Entry<Schema, FutureTask<ChronologyCompatibilityCheckResult>> task : tasks.entrySet()) {
+        results.put(task.getKey(), ParallelPairChecks.getResult(task.getValue()));
+      }
+      return results;
+    } finally {
+      for (FutureTask<ChronologyCompatibilityCheckResult> task : tasks.values()) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  private ChronologyCompatibilityCheckResult check(Schema candidate) {
+    if (interner != null) {
+      candidate = interner.intern(candidate);
+    }
+    CompatibilityConfiguration instrumented = PairCountingListener.instrument(candidateConfiguration);
+    if (instrumented == null) {
+      return check(candidate, candidateConfiguration);
+    }
+    ChronologyCompatibilityCheckResult result = check(candidate, instrumented);
+    PairCountingListener.chronologyChecked(instrumented, result, candidate);
+    return result;
+  }
+
+  private ChronologyCompatibilityCheckResult check(Schema candidate, CompatibilityConfiguration configuration) {
+    if (equivalentSchemas != null) {
+      return equivalentSchemas.checkClasses(chronology, check, candidate, schemasInOrder, configuration);
+    }
+    return chronology.check(check, candidate, schemasInOrder, configuration);
+  }
+
+  private Callable<ChronologyCompatibilityCheckResult> task(final Schema candidate) {
+    return new Callable<ChronologyCompatibilityCheckResult>() {
+      @Override
+      public ChronologyCompatibilityCheckResult call() {
+        return check(candidate);
+      }
+    };
+  }
+
+}
@@ -15,6 +15,10 @@
  */
 package com.hotels.avro.compatibility;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -24,36 +28,138 @@ import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
 import com.hotels.avro.compatibility.Compatibility.CheckType;
 import com.hotels.avro.compatibility.Compatibility.ChronologyType;
 
+/**
+ * The result of checking a schema against a chronology. The verdict is found once, when the result is created, and
+ * results of checks against empty chronologies are shared.
+ */
 public class ChronologyCompatibilityCheckResult {
 
+  /** Results of checks against empty chronologies, by check type and chronology type ordinals. */
+  private static final ChronologyCompatibilityCheckResult[][] EMPTY =
+      new ChronologyCompatibilityCheckResult[CheckType.values().length][ChronologyType.values().length];
+
+  static {
+    for (CheckType check : CheckType.values()) {
+      for (ChronologyType chronology : ChronologyType.values()) {
+        EMPTY[check.ordinal()][chronology.ordinal()] = new ChronologyCompatibilityCheckResult(check, chronology,
+            Collections.<CompatibilityCheckResult> emptyList(), -1, 0);
+      }
+    }
+  }
+
   private final List<CompatibilityCheckResult> results;
   private final CheckType compatibility;
   private final ChronologyType chronology;
+  private final int failedIndex;
+  private final int incompatibleCount;
 
   ChronologyCompatibilityCheckResult(
       CheckType strategy,
       ChronologyType chronologyStrategy,
       List<CompatibilityCheckResult> results) {
+    this(strategy, chronologyStrategy, Collections.unmodifiableList(results), -1, countIncompatible(results));
+  }
+
+  /**
+   * Creates the result of a check that stopped at the incompatible schema found at {@code failedIndex} in the
+   * chronology.
+   */
+  ChronologyCompatibilityCheckResult(
+      CheckType strategy,
+      ChronologyType chronologyStrategy,
+      CompatibilityCheckResult failure,
+      int failedIndex) {
+    this(strategy, chronologyStrategy, Collections.singletonList(failure), failedIndex, 1);
+  }
+
+  /**
+   * @param results an unmodifiable list of results.
+   */
+  private ChronologyCompatibilityCheckResult(
+      CheckType strategy,
+      ChronologyType chronologyStrategy,
+      List<CompatibilityCheckResult> results,
+      int failedIndex,
+      int incompatibleCount) {
     this.compatibility = strategy;
     this.chronology = chronologyStrategy;
-    this.results = Collections.unmodifiableList(results);
+    this.results = results;
+    this.failedIndex = failedIndex;
+    this.incompatibleCount = incompatibleCount;
   }
 
+  /**
+   * @return the shared result of a check against an empty chronology.
+   */
+  static ChronologyCompatibilityCheckResult empty(CheckType check, ChronologyType chronology) {
+    return EMPTY[check.ordinal()][chronology.ordinal()];
+  }
+
+  private static int countIncompatible(List<CompatibilityCheckResult> results) {
+    int incompatibleCount = 0;
+    for (CompatibilityCheckResult result : results) {
+      if (!result.isCompatible()) {
+        incompatibleCount++;
+      }
+    }
+    return incompatibleCount;
+  }
+
+  /**
+   * @return a result for each schema in the chronology, in order, or only the failing result if the check was
+   *         {@link #isTruncated() truncated}.
+   */
   public List<CompatibilityCheckResult> getResults() {
     return results;
   }
 
-  public SchemaCompatibilityType getType() {
-    return isCompatible() ? SchemaCompatibilityType.COMPATIBLE : SchemaCompatibilityType.INCOMPATIBLE;
+  /**
+   * @return {@code true} if the check stopped at the first incompatible schema without checking the remainder of the
+   *         chronology.
+   */
+  public boolean isTruncated() {
+    return failedIndex >= 0;
   }
 
-  public boolean isCompatible() {
+  /**
+   * @return the index in the chronology of the incompatible schema at which a {@link #isTruncated() truncated} check
+   *         stopped, otherwise {@code -1}.
+   */
+  public int getFailedIndex() {
+    return failedIndex;
+  }
+
+  /**
+   * @return the number of incompatible schemas found, which is one if the check was {@link #isTruncated() truncated}.
+   */
+  public int getIncompatibleCount() {
+    return incompatibleCount;
+  }
+
+  /**
+   * Creates an equivalent result in which each result is {@link CompatibilityCheckResult#compact(SchemaLookup)
+   * compact}, so that the schemas of the chronology are not retained. The position of each result in the chronology is
+   * kept.
+   */
+  public ChronologyCompatibilityCheckResult compact(SchemaLookup lookup) {
+    checkNotNull(lookup, "Schema lookup cannot be null.");
+    if (results.isEmpty()) {
+      return this;
+    }
+    List<CompatibilityCheckResult> compactResults = new ArrayList<>(results.size());
     for (CompatibilityCheckResult result : results) {
-      if (!result.isCompatible()) {
-        return false;
-      }
+      compactResults.add(result.compact(lookup));
     }
-    return true;
+    return new ChronologyCompatibilityCheckResult(compatibility, chronology,
+        Collections.unmodifiableList(compactResults), failedIndex, incompatibleCount);
+  }
+
+  public SchemaCompatibilityType getType() {
+    return incompatibleCount == 0 ? SchemaCompatibilityType.COMPATIBLE : SchemaCompatibilityType.INCOMPATIBLE;
+  }
+
+  public boolean isCompatible() {
+    return incompatibleCount == 0;
   }
 
   public void throwIfIncompatible() throws SchemaCompatibilityException {
@@ -62,6 +168,15 @@ public class ChronologyCompatibilityCheckResult {
     }
   }
 
+  /**
+   * @param limits bounds the message of the exception.
+   */
+  public void throwIfIncompatible(MessageLimits limits) throws SchemaCompatibilityException {
+    if (!isCompatible()) {
+      throw new SchemaCompatibilityException(this, limits);
+    }
+  }
+
   public CheckType getCompatibility() {
     return compatibility;
   }
@@ -71,42 +186,91 @@ public class ChronologyCompatibilityCheckResult {
   }
 
   public String asMessage() {
+    return asMessage(MessageLimits.UNLIMITED);
+  }
+
+  /**
+   * @return the message, omitting incompatibilities beyond the given limits, which apply over the whole chronology.
+   */
+  public String asMessage(MessageLimits limits) {
+    StringBuilder message = new StringBuilder();
+    try {
+      appendMessage(message, limits);
+    } catch (IOException e) {
+      throw new IllegalStateException("StringBuilder cannot fail to append.", e);
+    }
+    return message.toString();
+  }
+
+  /**
+   * Writes the message that {@link #asMessage()} returns without building it in memory first.
+   */
+  public void appendMessage(Appendable out) throws IOException {
+    appendMessage(out, MessageLimits.UNLIMITED);
+  }
+
+  /**
+   * Writes the message, omitting incompatibilities beyond the given limits, which apply over the whole chronology.
+   */
+  public void appendMessage(Appendable out, MessageLimits limits) throws IOException {
+    MessageRenderer renderer = new MessageRenderer(out, limits);
     if (isCompatible()) {
-      return String.format("Compatibility type '%s' holds for '%s' schema(s).", compatibility, chronology);
+      renderer
+          .append("Compatibility type '")
+          .append(compatibility)
+          .append("' holds for '")
+          .append(chronology)
+          .append("' schema(s)");
+      renderer.finish('.');
+      return;
     }
 
-    int incompatibleCount = 0;
-    for (CompatibilityCheckResult result : results) {
-      if (!result.isCompatible()) {
-        incompatibleCount++;
-      }
+    if (isTruncated()) {
+      renderer
+          .append("Compatibility type '")
+          .append(compatibility)
+          .append("' does not hold in the chronology, stopped at the first incompatible schema because: ");
+      appendIncompatibilities(renderer, failedIndex, results.get(0));
+      renderer.finish('.');
+      return;
     }
-    StringBuilder message = new StringBuilder(
-        String.format("Compatibility type '%s' does not hold between %s schema(s) in the chronology because: ",
-            compatibility, incompatibleCount));
+
+    renderer
+        .append("Compatibility type '")
+        .append(compatibility)
+        .append("' does not hold between ")
+        .append(incompatibleCount)
+        .append(" schema(s) in the chronology because: ");
     int i = 0;
+    boolean first = true;
     for (CompatibilityCheckResult result : results) {
       if (!result.isCompatible()) {
-        if (i > 0) {
-          message.append(", ");
-        }
-        message.append(String.format("Schema[%s] has incompatibilities: [", i));
-        boolean first = true;
-        for (Incompatibility incompatibility : result.getResult().getIncompatibilities()) {
+        List<Incompatibility> incompatibilities = result.getMessageIncompatibilities();
+        if (renderer.isFull()) {
+          renderer.omit(incompatibilities.size());
+        } else {
           if (first) {
             first = false;
           } else {
-            message.append(',');
+            renderer.append(", ");
           }
-          message.append(String.format("'%s: %s' at '%s'", incompatibility.getType(),
-              incompatibility.getMessage(), incompatibility.getLocation()));
+          appendIncompatibilities(renderer, i, result);
         }
-        message.append(']');
       }
       i++;
     }
-    message.append(".");
-    return message.toString();
+    renderer.finish('.');
+  }
+
+  private static void appendIncompatibilities(
+      MessageRenderer renderer,
+      int index,
+      CompatibilityCheckResult result) throws IOException {
+    renderer
+        .append("Schema[")
+        .append(index)
+        .append("] has incompatibilities: ")
+        .appendIncompatibilities(result.getMessageIncompatibilities());
   }
 
   @Override
@@ -115,6 +279,7 @@ public class ChronologyCompatibilityCheckResult {
     int result = 1;
     result = prime * result + ((chronology == null) ? 0 : chronology.hashCode());
     result = prime * result + ((compatibility == null) ? 0 : compatibility.hashCode());
+    result = prime * result + failedIndex;
     result = prime * result + ((results == null) ? 0 : results.hashCode());
     return result;
   }
@@ -132,6 +297,8 @@ public class ChronologyCompatibilityCheckResult {
       return false;
     if (compatibility != other.compatibility)
       return false;
+    if (failedIndex != other.failedIndex)
+      return false;
     if (results == null) {
       if (other.results != null)
         return false;
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Bounds the schemas of a chronology against which {@link Compatibility.ChronologyType#WINDOW windowed} checks are
+ * made, for example to the versions whose data may still be retained. Windows are applied through
+ * {@link SchemaChronology#last(int)} and {@link SchemaChronology#registeredAfter(Instant)}, so that schemas outside the
+ * window are not visited where the chronology allows.
+ */
+public final class ChronologyWindow {
+
+  /** Includes every schema in the chronology. */
+  public static final ChronologyWindow ALL = new ChronologyWindow(Integer.MAX_VALUE, null, null, null);
+
+  private final int versions;
+  private final Instant registeredAfter;
+  private final Duration retention;
+  private final Clock clock;
+
+  private ChronologyWindow(int versions, Instant registeredAfter, Duration retention, Clock clock) {
+    this.versions = versions;
+    this.registeredAfter = registeredAfter;
+    this.retention = retention;
+    this.clock = clock;
+  }
+
+  /**
+   * @return a window of the latest {@code count} schemas.
+   */
+  public static ChronologyWindow lastVersions(int count) {
+    checkArgument(count >= 0, "Version count cannot be negative.");
+    return new ChronologyWindow(count, null, null, null);
+  }
+
+  /**
+   * @return a window of the schemas registered strictly after the given instant, which requires a chronology that
+   *         knows when its schemas were registered.
+   */
+  public static ChronologyWindow registeredAfter(Instant instant) {
+    checkNotNull(instant, "Instant cannot be null.");
+    return new ChronologyWindow(Integer.MAX_VALUE, instant, null, null);
+  }
+
+  /**
+   * @return a window of the schemas registered within the retention period before each check.
+   */
+  public static ChronologyWindow retainedFor(Duration retention) {
+    return retainedFor(retention, Clock.systemUTC());
+  }
+
+  /**
+   * @return a window of the schemas registered within the retention period before each check, as told by the clock.
+   */
+  public static ChronologyWindow retainedFor(Duration retention, Clock clock) {
+    checkNotNull(retention, "Retention cannot be null.");
+    checkArgument(!retention.isNegative(), "Retention cannot be negative.");
+    checkNotNull(clock, "Clock cannot be null.");
+    return new ChronologyWindow(Integer.MAX_VALUE, null, retention, clock);
+  }
+
+  /**
+   * @return the schemas of the chronology within this window, latest last.
+   * @throws UnsupportedOperationException if the window is bounded by registration time and the chronology does not
+   *           know when its schemas were registered.
+   */
+  public SchemaChronology apply(SchemaChronology chronology) {
+    checkNotNull(chronology, "Chronology cannot be null.");
+    if (registeredAfter != null) {
+      return chronology.registeredAfter(registeredAfter);
+    }
+    if (retention != null) {
+      return chronology.registeredAfter(clock.instant().minus(retention));
+    }
+    if (versions < chronology.size()) {
+      return chronology.last(versions);
+    }
+    return chronology;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(versions, registeredAfter, retention, clock);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof ChronologyWindow))
+      return false;
+    ChronologyWindow other = (ChronologyWindow) obj;
+    return versions == other.versions
+        && Objects.equals(registeredAfter, other.registeredAfter)
+        && Objects.equals(retention, other.retention)
+        && Objects.equals(clock, other.clock);
+  }
+
+  @Override
+  public String toString() {
+    if (registeredAfter != null) {
+      return "ChronologyWindow [registeredAfter=" + registeredAfter + "]";
+    }
+    if (retention != null) {
+      return "ChronologyWindow [retention=" + retention + "]";
+    }
+    return "ChronologyWindow [versions=" + (versions == Integer.MAX_VALUE ? "all" : Integer.toString(versions)) + "]";
+  }
+
+}
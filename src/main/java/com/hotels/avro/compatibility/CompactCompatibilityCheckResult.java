@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.Incompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityResult;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+/**
+ * A result that holds the {@link SchemaFingerprints fingerprints} of its reader and writer and a {@link PairEncoding
+ * compact encoding} of its incompatibilities in place of the schemas. The schemas are resolved through a
+ * {@link SchemaLookup} when they are needed and are not retained, so that many results can be held cheaply.
+ * <p>
+ * Fingerprints ignore default values and logical types, so a lookup may resolve a schema that differs from the one
+ * checked in ways that do not affect the verdict. Resolution does depend on them, so the
+ * {@link SchemaFingerprints#structuralHash(Schema) structural hashes} of the schemas checked are also retained, and a
+ * {@link #getResolutionPlan() resolution plan} is only provided for the schemas that were checked.
+ */
+final class CompactCompatibilityCheckResult extends CompatibilityCheckResult {
+
+  private final long readerFingerprint;
+  private final long writerFingerprint;
+  private final long readerStructuralHash;
+  private final long writerStructuralHash;
+  /** Encoded with the reader as the schema validated. */
+  private final byte[] encoded;
+  private final SchemaLookup lookup;
+
+  CompactCompatibilityCheckResult(CompatibilityCheckResult result, SchemaLookup lookup) {
+    super(result.getCompatibility(), result.getChronology(), null);
+    this.lookup = lookup;
+    if (result instanceof CompactCompatibilityCheckResult) {
+      CompactCompatibilityCheckResult compact = (CompactCompatibilityCheckResult) result;
+      readerFingerprint = compact.readerFingerprint;
+      writerFingerprint = compact.writerFingerprint;
+      readerStructuralHash = compact.readerStructuralHash;
+      writerStructuralHash = compact.writerStructuralHash;
+      encoded = compact.encoded;
+    } else {
+      SchemaPairCompatibility compatibility = result.getSchemaPairCompatibility();
+      Schema reader = compatibility.getReader();
+      Schema writer = compatibility.getWriter();
+      readerFingerprint = SchemaFingerprints.fingerprint(reader);
+      writerFingerprint = SchemaFingerprints.fingerprint(writer);
+      readerStructuralHash = SchemaFingerprints.structuralHash(reader);
+      writerStructuralHash = SchemaFingerprints.structuralHash(writer);
+      encoded = PairEncoding.encode(compatibility, reader, writer);
+    }
+  }
+
+  @Override
+  SchemaPairCompatibility getSchemaPairCompatibility() {
+    return PairEncoding.decode(ByteBuffer.wrap(encoded), resolve(readerFingerprint), resolve(writerFingerprint));
+  }
+
+  private Schema resolve(long fingerprint) {
+    Schema schema = lookup.lookup(fingerprint);
+    if (schema == null) {
+      throw new IllegalStateException(String.format("No schema found with fingerprint %016x.", fingerprint));
+    }
+    return schema;
+  }
+
+  @Override
+  public SchemaCompatibilityType getType() {
+    return PairEncoding.getType(encoded);
+  }
+
+  @Override
+  public SchemaCompatibilityResult getResult() {
+    return getSchemaPairCompatibility().getResult();
+  }
+
+  @Override
+  public Schema getReader() {
+    return resolve(readerFingerprint);
+  }
+
+  @Override
+  public Schema getWriter() {
+    return resolve(writerFingerprint);
+  }
+
+  /**
+   * @throws IllegalStateException if the schemas are incompatible, or if the lookup resolves a schema that differs
+   *           from the one checked, for example in its default values.
+   */
+  @Override
+  public ResolutionPlan getResolutionPlan() {
+    checkState(isCompatible(), "Incompatible schemas have no resolution plan.");
+    Schema writer = getWriter();
+    Schema reader = getReader();
+    checkState(SchemaFingerprints.structuralHash(writer) == writerStructuralHash,
+        "Writer schema found with fingerprint %s differs from the schema checked.",
+        String.format("%016x", writerFingerprint));
+    checkState(SchemaFingerprints.structuralHash(reader) == readerStructuralHash,
+        "Reader schema found with fingerprint %s differs from the schema checked.",
+        String.format("%016x", readerFingerprint));
+    return ResolutionPlan.of(writer, reader);
+  }
+
+  @Override
+  public String getDescription() {
+    return getSchemaPairCompatibility().getDescription();
+  }
+
+  @Override
+  List<Incompatibility> getMessageIncompatibilities() {
+    return PairEncoding.decodeIncompatibilities(encoded);
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((getChronology() == null) ? 0 : getChronology().hashCode());
+    result = prime * result + ((getCompatibility() == null) ? 0 : getCompatibility().hashCode());
+    result = prime * result + (int) (readerFingerprint ^ readerFingerprint >>> 32);
+    result = prime * result + (int) (writerFingerprint ^ writerFingerprint >>> 32);
+    result = prime * result + Arrays.hashCode(encoded);
+    return result;
+  }
+
+  /** Compact results are equal if they describe the same outcome for schemas with the same fingerprints. */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    CompactCompatibilityCheckResult other = (CompactCompatibilityCheckResult) obj;
+    return getChronology() == other.getChronology()
+        && getCompatibility() == other.getCompatibility()
+        && readerFingerprint == other.readerFingerprint
+        && writerFingerprint == other.writerFingerprint
+        && Arrays.equals(encoded, other.encoded);
+  }
+
+  @Override
+  public String toString() {
+    return "CompactCompatibilityCheckResult [compatibility="
+        + getCompatibility()
+        + ", chronology="
+        + getChronology()
+        + ", type="
+        + getType()
+        + ", readerFingerprint="
+        + String.format("%016x", readerFingerprint)
+        + ", writerFingerprint="
+        + String.format("%016x", writerFingerprint)
+        + "]";
+  }
+
+}
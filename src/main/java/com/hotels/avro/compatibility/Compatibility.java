@@ -19,16 +19,21 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.apache.avro.Schema;
 
-import org.apache.avro.SchemaCompatibility;
 import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
 import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
 
+import com.google.common.collect.Lists;
+
 public final class Compatibility {
 
   public enum Mode {
@@ -43,7 +48,13 @@ public final class Compatibility {
     /** Also known as 'full'. Can read the data written by, a write data readable by the most recent previous schema. */
     MUTUAL_READ_WITH_LATEST(ChronologyType.LATEST, CheckType.MUTUAL_READ),
     /** Also known as 'full transitive'. Can read the data written by, a write data readable by all earlier schemas. */
-    MUTUAL_READ_WITH_ALL(ChronologyType.ALL, CheckType.MUTUAL_READ);
+    MUTUAL_READ_WITH_ALL(ChronologyType.ALL, CheckType.MUTUAL_READ),
+    /** Can read the data written by the earlier schemas within the configured {@link ChronologyWindow window}. */
+    CAN_READ_WINDOW(ChronologyType.WINDOW, CheckType.CAN_READ),
+    /** The data written by this schema can be read by the earlier schemas within the configured window. */
+    CAN_BE_READ_BY_WINDOW(ChronologyType.WINDOW, CheckType.CAN_BE_READ_BY),
+    /** Can read the data written by, a write data readable by the earlier schemas within the configured window. */
+    MUTUAL_READ_WITH_WINDOW(ChronologyType.WINDOW, CheckType.MUTUAL_READ);
 
     private final ChronologyType chronology;
     private final CheckType check;
@@ -53,34 +64,130 @@ public final class Compatibility {
       this.check = check;
     }
 
+    ChronologyType getChronology() {
+      return chronology;
+    }
+
     /**
      * @param schemasInOrder existing schemas, latest last.
      */
     public ChronologyCompatibilityCheckResult check(Schema toValidate, Iterable<Schema> schemasInOrder) {
+      return check(toValidate, schemasInOrder, CompatibilityConfiguration.DEFAULT);
+    }
+
+    /**
+     * @param schemasInOrder existing schemas, latest last.
+     */
+    public ChronologyCompatibilityCheckResult check(
+        Schema toValidate,
+        Iterable<Schema> schemasInOrder,
+        CompatibilityConfiguration configuration) {
+      checkNotNull(toValidate, "Schema to be checked cannot be null.");
+      checkNotNull(schemasInOrder, "Schemas to compare against cannot be null.");
+      checkNotNull(configuration, "Configuration cannot be null.");
+      return new Checker(chronology, check, toValidate, schemasInOrder, configuration).check();
+    }
+
+    /**
+     * Runs the check on the given executor. Cancelling the returned future stops any pair checks not yet started.
+     *
+     * @param schemasInOrder existing schemas, latest last.
+     */
+    public CompletableFuture<ChronologyCompatibilityCheckResult> checkAsync(
+        Schema toValidate,
+        Iterable<Schema> schemasInOrder,
+        Executor executor) {
+      return checkAsync(toValidate, schemasInOrder, CompatibilityConfiguration.DEFAULT, executor);
+    }
+
+    /**
+     * Runs the check on the given executor. Cancelling the returned future stops any pair checks not yet started.
+     *
+     * @param schemasInOrder existing schemas, latest last.
+     */
+    public CompletableFuture<ChronologyCompatibilityCheckResult> checkAsync(
+        Schema toValidate,
+        Iterable<Schema> schemasInOrder,
+        CompatibilityConfiguration configuration,
+        Executor executor) {
       checkNotNull(toValidate, "Schema to be checked cannot be null.");
       checkNotNull(schemasInOrder, "Schemas to compare against cannot be null.");
-      return new Checker(chronology, check, toValidate, schemasInOrder).check();
+      checkNotNull(configuration, "Configuration cannot be null.");
+      checkNotNull(executor, "Executor cannot be null.");
+      return AsyncCheck.submit(configuration, executor,
+          c -> new Checker(chronology, check, toValidate, schemasInOrder, c).check());
+    }
+
+    /**
+     * Checks each of many schemas against the same chronology, preparing the chronology once.
+     *
+     * @param schemasInOrder existing schemas, latest last.
+     * @return results keyed by schema to be checked, in the order of those schemas.
+     */
+    public Map<Schema, ChronologyCompatibilityCheckResult> checkEach(
+        Iterable<Schema> toValidate,
+        Iterable<Schema> schemasInOrder) {
+      return checkEach(toValidate, schemasInOrder, CompatibilityConfiguration.DEFAULT);
+    }
+
+    /**
+     * Checks each of many schemas against the same chronology, preparing the chronology once. If an
+     * {@link CompatibilityConfiguration#getExecutor() executor} is configured the schemas are checked in parallel.
+     *
+     * @param schemasInOrder existing schemas, latest last.
+     * @return results keyed by schema to be checked, in the order of those schemas.
+     */
+    public Map<Schema, ChronologyCompatibilityCheckResult> checkEach(
+        Iterable<Schema> toValidate,
+        Iterable<Schema> schemasInOrder,
+        CompatibilityConfiguration configuration) {
+      checkNotNull(toValidate, "Schemas to be checked cannot be null.");
+      checkNotNull(schemasInOrder, "Schemas to compare against cannot be null.");
+      checkNotNull(configuration, "Configuration cannot be null.");
+      return CandidateChecks.check(chronology, check, toValidate, schemasInOrder, configuration);
+    }
+
+    /**
+     * Checks the chronology latest first, stopping at the first incompatible schema.
+     *
+     * @param schemasInOrder existing schemas, latest last.
+     */
+    public ChronologyCompatibilityCheckResult checkFailFast(Schema toValidate, Iterable<Schema> schemasInOrder) {
+      return check(toValidate, schemasInOrder, FAIL_FAST);
     }
   }
 
+  private static final CompatibilityConfiguration FAIL_FAST = CompatibilityConfiguration
+      .builder()
+      .failFast(true)
+      .build();
+
   private Compatibility() {}
 
   public static CheckSelector checkThat(Schema schema) {
+    return checkThat(schema, CompatibilityConfiguration.DEFAULT);
+  }
+
+  public static CheckSelector checkThat(Schema schema, CompatibilityConfiguration configuration) {
     checkNotNull(schema, "Schema to be checked cannot be null.");
-    return new CheckSelector(schema);
+    checkNotNull(configuration, "Configuration cannot be null.");
+    return new CheckSelector(schema, configuration);
   }
 
   public static class CheckSelector {
 
     private final Schema toValidate;
+    private final CompatibilityConfiguration configuration;
 
-    private CheckSelector(Schema toValidate) {
+    private CheckSelector(Schema toValidate, CompatibilityConfiguration configuration) {
       this.toValidate = toValidate;
+      this.configuration = configuration;
     }
 
     public CompatibilityCheckResult canRead(Schema schema) {
       checkNotNull(schema, "Schema to compare against cannot be null.");
-      return new Checker(ChronologyType.LATEST, CheckType.CAN_READ, toValidate, Collections.singletonList(schema))
+      return new Checker(ChronologyType.LATEST, CheckType.CAN_READ, toValidate, Collections.singletonList(schema),
+          configuration)
           .check()
           .getResults()
           .get(0);
@@ -88,7 +195,8 @@ public final class Compatibility {
 
     public CompatibilityCheckResult canBeReadBy(Schema schema) {
       checkNotNull(schema, "Schema to compare against cannot be null.");
-      return new Checker(ChronologyType.LATEST, CheckType.CAN_BE_READ_BY, toValidate, Collections.singletonList(schema))
+      return new Checker(ChronologyType.LATEST, CheckType.CAN_BE_READ_BY, toValidate, Collections.singletonList(schema),
+          configuration)
           .check()
           .getResults()
           .get(0);
@@ -96,31 +204,71 @@ public final class Compatibility {
 
     public CompatibilityCheckResult mutualReadWith(Schema schema) {
       checkNotNull(schema, "Schema to compare against cannot be null.");
-      return new Checker(ChronologyType.LATEST, CheckType.MUTUAL_READ, toValidate, Collections.singletonList(schema))
+      return new Checker(ChronologyType.LATEST, CheckType.MUTUAL_READ, toValidate, Collections.singletonList(schema),
+          configuration)
           .check()
           .getResults()
           .get(0);
     }
 
+    /**
+     * Runs the check on the given executor.
+     */
+    public CompletableFuture<CompatibilityCheckResult> canReadAsync(Schema schema, Executor executor) {
+      return checkAsync(CheckType.CAN_READ, schema, executor);
+    }
+
+    /**
+     * Runs the check on the given executor.
+     */
+    public CompletableFuture<CompatibilityCheckResult> canBeReadByAsync(Schema schema, Executor executor) {
+      return checkAsync(CheckType.CAN_BE_READ_BY, schema, executor);
+    }
+
+    /**
+     * Runs the check on the given executor.
+     */
+    public CompletableFuture<CompatibilityCheckResult> mutualReadWithAsync(Schema schema, Executor executor) {
+      return checkAsync(CheckType.MUTUAL_READ, schema, executor);
+    }
+
+    private CompletableFuture<CompatibilityCheckResult> checkAsync(CheckType check, Schema schema, Executor executor) {
+      checkNotNull(schema, "Schema to compare against cannot be null.");
+      checkNotNull(executor, "Executor cannot be null.");
+      List<Schema> schemasInOrder = Collections.singletonList(schema);
+      return AsyncCheck.submit(configuration, executor,
+          c -> new Checker(ChronologyType.LATEST, check, toValidate, schemasInOrder, c).check().getResults().get(0));
+    }
+
     public ChronologySelector canRead() {
-      return new ChronologySelector(toValidate, CheckType.CAN_READ);
+      return new ChronologySelector(toValidate, CheckType.CAN_READ, configuration);
     }
 
     public ChronologySelector canBeReadBy() {
-      return new ChronologySelector(toValidate, CheckType.CAN_BE_READ_BY);
+      return new ChronologySelector(toValidate, CheckType.CAN_BE_READ_BY, configuration);
     }
 
     public ChronologySelector mutualReadWith() {
-      return new ChronologySelector(toValidate, CheckType.MUTUAL_READ);
+      return new ChronologySelector(toValidate, CheckType.MUTUAL_READ, configuration);
     }
 
     public static class ChronologySelector {
       private final Schema toValidate;
       private final CheckType compatibilityStrategy;
+      private final CompatibilityConfiguration configuration;
 
-      private ChronologySelector(Schema toValidate, CheckType check) {
+      private ChronologySelector(Schema toValidate, CheckType check, CompatibilityConfiguration configuration) {
         this.toValidate = toValidate;
         this.compatibilityStrategy = check;
+        this.configuration = configuration;
+      }
+
+      /**
+       * Stops transitive checks at the first incompatible schema, checking the chronology latest first.
+       */
+      public ChronologySelector failFast() {
+        return new ChronologySelector(toValidate, compatibilityStrategy,
+            configuration.toBuilder().failFast(true).build());
       }
 
       /**
@@ -128,7 +276,8 @@ public final class Compatibility {
        */
       public ChronologyCompatibilityCheckResult all(Iterable<Schema> schemasInOrder) {
         checkNotNull(schemasInOrder, "Schemas to compare against cannot be null.");
-        return new Checker(ChronologyType.ALL, compatibilityStrategy, toValidate, schemasInOrder).check();
+        return new Checker(ChronologyType.ALL, compatibilityStrategy, toValidate, schemasInOrder, configuration)
+            .check();
       }
 
       /**
@@ -139,12 +288,24 @@ public final class Compatibility {
         return all(Arrays.asList(schemasInOrder));
       }
 
+      /**
+       * Runs the check on the given executor. Cancelling the returned future stops any pair checks not yet started.
+       *
+       * @param schemasInOrder existing schemas, latest last.
+       */
+      public CompletableFuture<ChronologyCompatibilityCheckResult> allAsync(
+          Iterable<Schema> schemasInOrder,
+          Executor executor) {
+        return checkAsync(ChronologyType.ALL, schemasInOrder, executor);
+      }
+
       /**
        * @param schemasInOrder existing schemas, latest last.
        */
       public ChronologyCompatibilityCheckResult latestOf(Iterable<Schema> schemasInOrder) {
         checkNotNull(schemasInOrder, "Schemas to compare against cannot be null.");
-        return new Checker(ChronologyType.LATEST, compatibilityStrategy, toValidate, schemasInOrder).check();
+        return new Checker(ChronologyType.LATEST, compatibilityStrategy, toValidate, schemasInOrder, configuration)
+            .check();
       }
 
       /**
@@ -154,6 +315,27 @@ public final class Compatibility {
         checkNotNull(schemasInOrder, "Schemas to compare against cannot be null.");
         return latestOf(Arrays.asList(schemasInOrder));
       }
+
+      /**
+       * Runs the check on the given executor.
+       *
+       * @param schemasInOrder existing schemas, latest last.
+       */
+      public CompletableFuture<ChronologyCompatibilityCheckResult> latestOfAsync(
+          Iterable<Schema> schemasInOrder,
+          Executor executor) {
+        return checkAsync(ChronologyType.LATEST, schemasInOrder, executor);
+      }
+
+      private CompletableFuture<ChronologyCompatibilityCheckResult> checkAsync(
+          ChronologyType chronology,
+          Iterable<Schema> schemasInOrder,
+          Executor executor) {
+        checkNotNull(schemasInOrder, "Schemas to compare against cannot be null.");
+        checkNotNull(executor, "Executor cannot be null.");
+        return AsyncCheck.submit(configuration, executor,
+            c -> new Checker(chronology, compatibilityStrategy, toValidate, schemasInOrder, c).check());
+      }
     }
 
   }
@@ -163,16 +345,37 @@ public final class Compatibility {
     private final CheckType check;
     private final Schema toValidate;
     private final Iterable<Schema> schemasInOrder;
+    private final CompatibilityConfiguration configuration;
 
-    private Checker(ChronologyType chronology, CheckType check, Schema toValidate, Iterable<Schema> schemasInOrder) {
+    private Checker(
+        ChronologyType chronology,
+        CheckType check,
+        Schema toValidate,
+        Iterable<Schema> schemasInOrder,
+        CompatibilityConfiguration configuration) {
       this.chronology = chronology;
       this.check = check;
       this.toValidate = toValidate;
       this.schemasInOrder = schemasInOrder;
+      this.configuration = configuration;
     }
 
     ChronologyCompatibilityCheckResult check() {
-      return chronology.check(check, toValidate, schemasInOrder);
+      SchemaInterner interner = configuration.getInterner();
+      if (interner == null) {
+        return check(toValidate, schemasInOrder);
+      }
+      return check(interner.intern(toValidate), SchemaChronology.interned(schemasInOrder, interner));
+    }
+
+    private ChronologyCompatibilityCheckResult check(Schema toValidate, Iterable<Schema> schemasInOrder) {
+      CompatibilityConfiguration instrumented = PairCountingListener.instrument(configuration);
+      if (instrumented == null) {
+        return chronology.check(check, toValidate, schemasInOrder, configuration);
+      }
+      ChronologyCompatibilityCheckResult result = chronology.check(check, toValidate, schemasInOrder, instrumented);
+      PairCountingListener.chronologyChecked(instrumented, result, toValidate);
+      return result;
     }
   }
 
@@ -182,16 +385,29 @@ public final class Compatibility {
       public ChronologyCompatibilityCheckResult check(
           CheckType check,
           Schema toValidate,
-          Iterable<Schema> schemasInOrder) {
-        List<CompatibilityCheckResult> results = new ArrayList<>();
-        Iterator<Schema> schemas = schemasInOrder.iterator();
-        while (schemas.hasNext()) {
-          Schema existing = schemas.next();
-          SchemaPairCompatibility schemaPairCompatibility = check.validate(toValidate, existing);
-          CompatibilityCheckResult result = new CompatibilityCheckResult(check, this, schemaPairCompatibility);
-          results.add(result);
+          Iterable<Schema> schemasInOrder,
+          CompatibilityConfiguration configuration) {
+        return checkAll(this, check, toValidate, schemasInOrder, configuration);
+      }
+    },
+    /**
+     * Checks the schemas within the {@link CompatibilityConfiguration#getWindow() configured window}, as {@link #ALL}
+     * checks every schema. Indices in the results are relative to the window.
+     */
+    WINDOW() {
+      @Override
+      public ChronologyCompatibilityCheckResult check(
+          CheckType check,
+          Schema toValidate,
+          Iterable<Schema> schemasInOrder,
+          CompatibilityConfiguration configuration) {
+        ChronologyWindow window = configuration.getWindow();
+        if (window.equals(ChronologyWindow.ALL)) {
+          return checkAll(this, check, toValidate, schemasInOrder, configuration);
         }
-        return new ChronologyCompatibilityCheckResult(check, this, results);
+        // The window is applied once, so must not be applied again to the checks of equivalent or parallel schemas
+        return checkAll(this, check, toValidate, window.apply(SchemaChronology.from(schemasInOrder)),
+            configuration.toBuilder().window(ChronologyWindow.ALL).build());
       }
     },
     LATEST() {
@@ -199,18 +415,15 @@ public final class Compatibility {
       public ChronologyCompatibilityCheckResult check(
           CheckType check,
           Schema toValidate,
-          Iterable<Schema> schemasInOrder) {
-        Iterator<Schema> schemas = schemasInOrder.iterator();
-        Schema existing = null;
-        while (schemas.hasNext()) {
-          existing = schemas.next();
-        }
+          Iterable<Schema> schemasInOrder,
+          CompatibilityConfiguration configuration) {
+        Schema existing = SchemaChronology.latestOf(schemasInOrder);
         if (existing != null) {
-          SchemaPairCompatibility schemaPairCompatibility = check.validate(toValidate, existing);
+          SchemaPairCompatibility schemaPairCompatibility = check.validate(toValidate, existing, configuration);
           CompatibilityCheckResult result = new CompatibilityCheckResult(check, this, schemaPairCompatibility);
           return new ChronologyCompatibilityCheckResult(check, this, Collections.singletonList(result));
         }
-        return new ChronologyCompatibilityCheckResult(check, this, Collections.<CompatibilityCheckResult> emptyList());
+        return ChronologyCompatibilityCheckResult.empty(check, this);
       }
     };
 
@@ -220,39 +433,224 @@ public final class Compatibility {
     abstract ChronologyCompatibilityCheckResult check(
         CheckType check,
         Schema toValidate,
-        Iterable<Schema> schemasInOrder);
+        Iterable<Schema> schemasInOrder,
+        CompatibilityConfiguration configuration);
+  }
+
+  private static ChronologyCompatibilityCheckResult checkAll(
+      ChronologyType chronology,
+      CheckType check,
+      Schema toValidate,
+      Iterable<Schema> schemasInOrder,
+      CompatibilityConfiguration configuration) {
+    if (configuration.isDeduplicate()) {
+      return EquivalentSchemas.check(chronology, check, toValidate, asList(schemasInOrder), configuration);
+    }
+    if (configuration.getExecutor() != null) {
+      return ParallelPairChecks.check(chronology, check, toValidate, asList(schemasInOrder), configuration);
+    }
+    if (configuration.isFailFast()) {
+      return checkLatestFirst(chronology, check, toValidate, schemasInOrder, configuration);
+    }
+    List<CompatibilityCheckResult> results = schemasInOrder instanceof Collection
+        ? new ArrayList<CompatibilityCheckResult>(((Collection<Schema>) schemasInOrder).size())
+        : new ArrayList<CompatibilityCheckResult>();
+    Iterator<Schema> schemas = schemasInOrder.iterator();
+    while (schemas.hasNext()) {
+      Schema existing = schemas.next();
+      SchemaPairCompatibility schemaPairCompatibility = check.validate(toValidate, existing, configuration);
+      CompatibilityCheckResult result = new CompatibilityCheckResult(check, chronology, schemaPairCompatibility);
+      results.add(result);
+    }
+    if (results.isEmpty()) {
+      return ChronologyCompatibilityCheckResult.empty(check, chronology);
+    }
+    return new ChronologyCompatibilityCheckResult(check, chronology, results);
+  }
+
+  private static ChronologyCompatibilityCheckResult checkLatestFirst(
+      ChronologyType chronology,
+      CheckType check,
+      Schema toValidate,
+      Iterable<Schema> schemasInOrder,
+      CompatibilityConfiguration configuration) {
+    SchemaChronology schemas = SchemaChronology.from(schemasInOrder);
+    if (schemas.size() == 0) {
+      return ChronologyCompatibilityCheckResult.empty(check, chronology);
+    }
+    CompatibilityCheckResult[] results = new CompatibilityCheckResult[schemas.size()];
+    Iterator<Schema> latestFirst = schemas.latestFirst();
+    for (int i = results.length - 1; i >= 0; i--) {
+      Schema existing = latestFirst.next();
+      SchemaPairCompatibility schemaPairCompatibility = check.validate(toValidate, existing, configuration);
+      CompatibilityCheckResult result = new CompatibilityCheckResult(check, chronology, schemaPairCompatibility);
+      if (!result.isCompatible()) {
+        return new ChronologyCompatibilityCheckResult(check, chronology, result, i);
+      }
+      results[i] = result;
+    }
+    return new ChronologyCompatibilityCheckResult(check, chronology, Arrays.asList(results));
   }
 
   public enum CheckType {
     CAN_READ() {
       @Override
-      public SchemaPairCompatibility validate(Schema toValidate, Schema existing) {
-        return canRead(existing, toValidate);
+      SchemaPairCompatibility validate(
+          Schema toValidate,
+          Schema existing,
+          int maximumIncompatibilities,
+          SubtreeCache subtreeCache) {
+        return canRead(existing, toValidate, maximumIncompatibilities, subtreeCache);
       }
     },
     CAN_BE_READ_BY() {
       @Override
-      public SchemaPairCompatibility validate(Schema toValidate, Schema existing) {
-        return canRead(toValidate, existing);
+      SchemaPairCompatibility validate(
+          Schema toValidate,
+          Schema existing,
+          int maximumIncompatibilities,
+          SubtreeCache subtreeCache) {
+        return canRead(toValidate, existing, maximumIncompatibilities, subtreeCache);
       }
     },
     MUTUAL_READ() {
+      // Walks both directions together, so does not consult the subtree cache
       @Override
-      public SchemaPairCompatibility validate(Schema toValidate, Schema existing) {
-        SchemaPairCompatibility canBeRead = canRead(toValidate, existing);
-        if (canBeRead.getType() == SchemaCompatibilityType.INCOMPATIBLE) {
-          return canBeRead;
-        }
-        SchemaPairCompatibility canRead = canRead(existing, toValidate);
-        return canRead;
+      SchemaPairCompatibility validate(
+          Schema toValidate,
+          Schema existing,
+          int maximumIncompatibilities,
+          SubtreeCache subtreeCache) {
+        return MutualReadChecker.checkMutualRead(CompiledSchema.compile(toValidate), CompiledSchema.compile(existing),
+            maximumIncompatibilities);
       }
     };
 
-    abstract SchemaPairCompatibility validate(Schema toValidate, Schema existing);
+    /**
+     * @param maximumIncompatibilities see {@link CompatibilityConfiguration#getMaximumIncompatibilities()}.
+     * @param subtreeCache see {@link CompatibilityConfiguration#getSubtreeCache()}.
+     */
+    abstract SchemaPairCompatibility validate(
+        Schema toValidate,
+        Schema existing,
+        int maximumIncompatibilities,
+        SubtreeCache subtreeCache);
+
+    /**
+     * @param maximumIncompatibilities see {@link CompatibilityConfiguration#getMaximumIncompatibilities()}.
+     */
+    SchemaPairCompatibility validate(Schema toValidate, Schema existing, int maximumIncompatibilities) {
+      return validate(toValidate, existing, maximumIncompatibilities, null);
+    }
+
+    SchemaPairCompatibility validate(Schema toValidate, Schema existing) {
+      return validate(toValidate, existing, CompatibilityConfiguration.ALL_INCOMPATIBILITIES);
+    }
+
+    SchemaPairCompatibility validate(Schema toValidate, Schema existing, CompatibilityConfiguration configuration) {
+      configuration.throwIfCancelled();
+      CompatibilityListener listener = configuration.getListener();
+      if (listener == CompatibilityListener.NONE) {
+        return validate(toValidate, existing, configuration, listener);
+      }
+      long start = System.nanoTime();
+      SchemaPairCompatibility compatibility = validate(toValidate, existing, configuration, listener);
+      listener.pairChecked(this, compatibility, System.nanoTime() - start);
+      return compatibility;
+    }
+
+    private SchemaPairCompatibility validate(
+        Schema toValidate,
+        Schema existing,
+        CompatibilityConfiguration configuration,
+        CompatibilityListener listener) {
+      SchemaPairCompatibility compatibility = validateStatically(toValidate, existing, configuration, listener);
+      RoundTripVerifier verifier = configuration.getVerifier();
+      if (verifier == null) {
+        return compatibility;
+      }
+      return verifier.verify(this, compatibility, configuration.getMaximumIncompatibilities());
+    }
+
+    private SchemaPairCompatibility validateStatically(
+        Schema toValidate,
+        Schema existing,
+        CompatibilityConfiguration configuration,
+        CompatibilityListener listener) {
+      int maximumIncompatibilities = configuration.getMaximumIncompatibilities();
+      SubtreeCache subtreeCache = configuration.getSubtreeCache();
+      CompatibilityCache cache = configuration.getCache();
+      VerdictStore store = configuration.getVerdictStore();
+      if (cache == null && store == null) {
+        return validate(toValidate, existing, maximumIncompatibilities, subtreeCache);
+      }
+      SchemaPairCompatibility compatibility = cache == null
+          ? null
+          : cache.get(this, toValidate, existing, maximumIncompatibilities);
+      if (compatibility == null && store != null) {
+        compatibility = store.get(this, toValidate, existing, maximumIncompatibilities);
+        if (compatibility != null && cache != null) {
+          cache.put(this, toValidate, existing, maximumIncompatibilities, compatibility);
+        }
+      }
+      if (compatibility == null) {
+        listener.cacheMiss(this);
+        compatibility = validate(toValidate, existing, maximumIncompatibilities, subtreeCache);
+        if (store != null) {
+          store.put(this, toValidate, existing, maximumIncompatibilities, compatibility);
+        }
+        if (cache != null) {
+          cache.put(this, toValidate, existing, maximumIncompatibilities, compatibility);
+        }
+      } else {
+        listener.cacheHit(this);
+      }
+      return compatibility;
+    }
+
+    /**
+     * Binds a result of this check to schemas with the same {@link SchemaFingerprints fingerprint} as those that were
+     * checked.
+     */
+    SchemaPairCompatibility rebind(SchemaPairCompatibility compatibility, Schema toValidate, Schema existing) {
+      boolean toValidateReads = this == CAN_READ
+          || this == MUTUAL_READ && mutualReaderIsToValidate(compatibility, toValidate);
+      Schema reader = toValidateReads ? toValidate : existing;
+      Schema writer = toValidateReads ? existing : toValidate;
+      if (compatibility.getReader() == reader && compatibility.getWriter() == writer) {
+        return compatibility;
+      }
+      String description = compatibility.getDescription() == null
+          ? null
+          : ReaderWriterChecker.describe(compatibility.getType(), reader, writer);
+      return new SchemaPairCompatibility(compatibility.getResult(), reader, writer, description);
+    }
+
+    /**
+     * A mutual read result has the existing schema as its reader if the existing schema cannot read the data written
+     * by the schema being validated, and the schema being validated otherwise.
+     */
+    private static boolean mutualReaderIsToValidate(SchemaPairCompatibility compatibility, Schema toValidate) {
+      return compatibility.getType() == SchemaCompatibilityType.COMPATIBLE
+          || compatibility.getReader() == toValidate
+          || SchemaFingerprints.fingerprint(compatibility.getReader()) == SchemaFingerprints.fingerprint(toValidate);
+    }
+  }
+
+  static <T> List<T> asList(Iterable<T> iterable) {
+    if (iterable instanceof List) {
+      return (List<T>) iterable;
+    }
+    return Lists.newArrayList(iterable);
   }
 
-  private static SchemaPairCompatibility canRead(Schema writtenWith, Schema readUsing) {
-    return SchemaCompatibility.checkReaderWriterCompatibility(readUsing, writtenWith);
+  private static SchemaPairCompatibility canRead(
+      Schema writtenWith,
+      Schema readUsing,
+      int maximumIncompatibilities,
+      SubtreeCache subtreeCache) {
+    return ReaderWriterChecker.checkReaderWriterCompatibility(readUsing, writtenWith, maximumIncompatibilities,
+        subtreeCache);
   }
 
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+import com.google.common.base.Ticker;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+
+/**
+ * A bounded, thread safe cache of pairwise compatibility verdicts, keyed by the 64-bit {@link SchemaFingerprints
+ * fingerprints} of the schema being validated and the existing schema, together with the {@link CheckType} and the
+ * {@link CompatibilityConfiguration#getMaximumIncompatibilities() level of detail}. A cached verdict is returned bound
+ * to the schemas supplied by the caller.
+ * <p>
+ * Entries live in a fixed size, two-way set associative table so that lookups compare primitive keys in place and do
+ * not allocate. When both slots of a set are occupied the oldest entry is evicted. Entries may also be expired a fixed
+ * duration after they were written.
+ */
+public final class CompatibilityCache {
+
+  private final FingerprintTable<SchemaPairCompatibility> table;
+
+  /**
+   * @param maximumSize the maximum number of verdicts held, rounded up to a power of two.
+   */
+  public CompatibilityCache(int maximumSize) {
+    this(maximumSize, 0L, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param maximumSize the maximum number of verdicts held, rounded up to a power of two.
+   * @param expireAfterWrite duration after which a verdict is discarded, or zero to retain verdicts until evicted.
+   */
+  public CompatibilityCache(int maximumSize, long expireAfterWrite, TimeUnit unit) {
+    this(maximumSize, expireAfterWrite, unit, Ticker.systemTicker());
+  }
+
+  CompatibilityCache(int maximumSize, long expireAfterWrite, TimeUnit unit, Ticker ticker) {
+    checkArgument(expireAfterWrite >= 0L, "Expiry duration cannot be negative.");
+    checkNotNull(unit, "Time unit cannot be null.");
+    table = new FingerprintTable<>(maximumSize, unit.toNanos(expireAfterWrite), ticker);
+  }
+
+  SchemaPairCompatibility get(CheckType check, Schema toValidate, Schema existing, int maximumIncompatibilities) {
+    SchemaPairCompatibility compatibility = table.get(SchemaFingerprints.fingerprint(toValidate),
+        SchemaFingerprints.fingerprint(existing), discriminator(check, maximumIncompatibilities));
+    return compatibility == null ? null : check.rebind(compatibility, toValidate, existing);
+  }
+
+  void put(
+      CheckType check,
+      Schema toValidate,
+      Schema existing,
+      int maximumIncompatibilities,
+      SchemaPairCompatibility compatibility) {
+    table.put(SchemaFingerprints.fingerprint(toValidate), SchemaFingerprints.fingerprint(existing),
+        discriminator(check, maximumIncompatibilities), compatibility);
+  }
+
+  /** Discards all cached verdicts. */
+  public void invalidateAll() {
+    table.invalidateAll();
+  }
+
+  private static long discriminator(CheckType check, int maximumIncompatibilities) {
+    return (long) maximumIncompatibilities << 8 | check.ordinal();
+  }
+
+}
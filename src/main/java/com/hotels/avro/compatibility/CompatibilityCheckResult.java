@@ -15,6 +15,12 @@
  */
 package com.hotels.avro.compatibility;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.util.List;
+
 import org.apache.avro.Schema;
 
 import org.apache.avro.SchemaCompatibility.Incompatibility;
@@ -40,6 +46,10 @@ public class CompatibilityCheckResult {
     this.schemaPairCompatibility = schemaPairCompatibility;
   }
 
+  SchemaPairCompatibility getSchemaPairCompatibility() {
+    return schemaPairCompatibility;
+  }
+
   public SchemaCompatibilityType getType() {
     return schemaPairCompatibility.getType();
   }
@@ -61,25 +71,70 @@ public class CompatibilityCheckResult {
   }
 
   public String asMessage() {
+    return asMessage(MessageLimits.UNLIMITED);
+  }
+
+  /**
+   * @return the message, omitting incompatibilities beyond the given limits.
+   */
+  public String asMessage(MessageLimits limits) {
+    StringBuilder message = new StringBuilder();
+    try {
+      appendMessage(message, limits);
+    } catch (IOException e) {
+      throw new IllegalStateException("StringBuilder cannot fail to append.", e);
+    }
+    return message.toString();
+  }
+
+  /**
+   * Writes the message that {@link #asMessage()} returns without building it in memory first.
+   */
+  public void appendMessage(Appendable out) throws IOException {
+    appendMessage(out, MessageLimits.UNLIMITED);
+  }
+
+  /**
+   * Writes the message, omitting incompatibilities beyond the given limits.
+   */
+  public void appendMessage(Appendable out, MessageLimits limits) throws IOException {
+    MessageRenderer renderer = new MessageRenderer(out, limits);
     if (isCompatible()) {
-      return String.format("Compatibility type '%s' holds between schemas.", compatibility, chronology);
+      renderer.append("Compatibility type '").append(compatibility).append("' holds between schemas");
     } else {
-      StringBuilder message = new StringBuilder();
-      message.append(String.format("Compatibility type '%s' does not hold between schemas, incompatibilities: [",
-          getCompatibility()));
-      boolean first = true;
-      for (Incompatibility incompatibility : getResult().getIncompatibilities()) {
-        if (first) {
-          first = false;
-        } else {
-          message.append(',');
-        }
-        message.append(String.format("'%s: %s' at '%s'", incompatibility.getType(),
-            incompatibility.getMessage(), incompatibility.getLocation()));
-      }
-      message.append("].");
-      return message.toString();
+      renderer
+          .append("Compatibility type '")
+          .append(compatibility)
+          .append("' does not hold between schemas, incompatibilities: ")
+          .appendIncompatibilities(getMessageIncompatibilities());
     }
+    renderer.finish('.');
+  }
+
+  /** @return the incompatibilities that are described in the message. */
+  List<Incompatibility> getMessageIncompatibilities() {
+    return getResult().getIncompatibilities();
+  }
+
+  /**
+   * Creates an equivalent result that retains the {@link SchemaFingerprints fingerprints} of the reader and writer
+   * rather than the schemas themselves, together with a compact encoding of the incompatibilities. The verdict and the
+   * message are available without the schemas. The other getters resolve the schemas through the lookup each time they
+   * are called, and fail if either cannot be found.
+   */
+  public CompatibilityCheckResult compact(SchemaLookup lookup) {
+    checkNotNull(lookup, "Schema lookup cannot be null.");
+    return new CompactCompatibilityCheckResult(this, lookup);
+  }
+
+  /**
+   * @return the shared plan to read data written with the {@link #getWriter() writer} using the {@link #getReader()
+   *         reader}, through which consumers of a compatible pair can read without resolving the schemas again.
+   * @throws IllegalStateException if the schemas are incompatible.
+   */
+  public ResolutionPlan getResolutionPlan() {
+    checkState(isCompatible(), "Incompatible schemas have no resolution plan.");
+    return ResolutionPlan.of(getWriter(), getReader());
   }
 
   @Override
@@ -123,6 +178,15 @@ public class CompatibilityCheckResult {
     }
   }
 
+  /**
+   * @param limits bounds the message of the exception.
+   */
+  public void throwIfIncompatible(MessageLimits limits) throws SchemaCompatibilityException {
+    if (!isCompatible()) {
+      throw new SchemaCompatibilityException(this, limits);
+    }
+  }
+
   public CheckType getCompatibility() {
     return compatibility;
   }
@@ -0,0 +1,311 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Options that control how compatibility checks are carried out.
+ */
+public final class CompatibilityConfiguration {
+
+  /** Checks every pair of schemas directly, retaining nothing between calls. */
+  public static final CompatibilityConfiguration DEFAULT = builder().build();
+
+  /** Collects only the verdict of each check, without incompatibility messages or locations. */
+  public static final int VERDICT_ONLY = 0;
+  /** Collects every incompatibility found by each check. */
+  public static final int ALL_INCOMPATIBILITIES = Integer.MAX_VALUE;
+
+  private final CompatibilityCache cache;
+  private final SubtreeCache subtreeCache;
+  private final VerdictStore verdictStore;
+  private final boolean failFast;
+  private final Executor executor;
+  private final boolean deduplicate;
+  private final int maximumIncompatibilities;
+  private final CompatibilityListener listener;
+  private final AtomicBoolean cancelled;
+  private final SchemaInterner interner;
+  private final ChronologyWindow window;
+  private final RoundTripVerifier verifier;
+
+  private CompatibilityConfiguration(Builder builder) {
+    cache = builder.cache;
+    subtreeCache = builder.subtreeCache;
+    verdictStore = builder.verdictStore;
+    failFast = builder.failFast;
+    executor = builder.executor;
+    deduplicate = builder.deduplicate;
+    maximumIncompatibilities = builder.maximumIncompatibilities;
+    listener = builder.listener;
+    cancelled = builder.cancelled;
+    interner = builder.interner;
+    window = builder.window;
+    verifier = builder.verifier;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Builder toBuilder() {
+    return new Builder()
+        .cache(cache)
+        .subtreeCache(subtreeCache)
+        .verdictStore(verdictStore)
+        .failFast(failFast)
+        .executor(executor)
+        .deduplicate(deduplicate)
+        .maximumIncompatibilities(maximumIncompatibilities)
+        .listener(listener)
+        .cancelled(cancelled)
+        .interner(interner)
+        .window(window)
+        .verifier(verifier);
+  }
+
+  /**
+   * @return the cache in which pairwise verdicts are retained, or {@code null} if verdicts are not cached.
+   */
+  public CompatibilityCache getCache() {
+    return cache;
+  }
+
+  /**
+   * @return the cache in which verdicts of pairs of nested named types are shared between checks, or {@code null} if
+   *         they are not shared.
+   */
+  public SubtreeCache getSubtreeCache() {
+    return subtreeCache;
+  }
+
+  /**
+   * @return the persistent store of pairwise verdicts consulted when a verdict is not cached, or {@code null} if
+   *         verdicts are not stored.
+   */
+  public VerdictStore getVerdictStore() {
+    return verdictStore;
+  }
+
+  /**
+   * @return {@code true} if transitive checks stop at the first incompatible schema, scanning from the latest.
+   */
+  public boolean isFailFast() {
+    return failFast;
+  }
+
+  /**
+   * @return the executor over which the pair checks of a transitive check are run, or {@code null} if they are run
+   *         sequentially on the calling thread.
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * @return {@code true} if schemas in a chronology that are equivalent for the purposes of compatibility are checked
+   *         only once.
+   */
+  public boolean isDeduplicate() {
+    return deduplicate;
+  }
+
+  /**
+   * @return the number of incompatibilities collected by each pair check, {@link #VERDICT_ONLY} if only the verdict is
+   *         collected, or {@link #ALL_INCOMPATIBILITIES}.
+   */
+  public int getMaximumIncompatibilities() {
+    return maximumIncompatibilities;
+  }
+
+  /**
+   * @return the listener that receives measurements of checks, {@link CompatibilityListener#NONE} by default.
+   */
+  public CompatibilityListener getListener() {
+    return listener;
+  }
+
+  /**
+   * @return the interner through which the schemas supplied to a check are replaced by canonical instances, or
+   *         {@code null} if schemas are checked as supplied.
+   */
+  public SchemaInterner getInterner() {
+    return interner;
+  }
+
+  /**
+   * @return the window of the chronology checked by {@link Compatibility.ChronologyType#WINDOW windowed} checks,
+   *         {@link ChronologyWindow#ALL} by default.
+   */
+  public ChronologyWindow getWindow() {
+    return window;
+  }
+
+  /**
+   * @return the verifier that confirms compatible verdicts by writing and reading random datums, or {@code null} if
+   *         verdicts are not verified.
+   */
+  public RoundTripVerifier getVerifier() {
+    return verifier;
+  }
+
+  /**
+   * @throws CancellationException if the {@link AsyncCheck asynchronous check} to which this configuration belongs has
+   *           been cancelled.
+   */
+  void throwIfCancelled() {
+    if (cancelled != null && cancelled.get()) {
+      throw new CancellationException("Compatibility check cancelled.");
+    }
+  }
+
+  public static final class Builder {
+
+    private CompatibilityCache cache;
+    private SubtreeCache subtreeCache;
+    private VerdictStore verdictStore;
+    private boolean failFast;
+    private Executor executor;
+    private boolean deduplicate;
+    private int maximumIncompatibilities = ALL_INCOMPATIBILITIES;
+    private CompatibilityListener listener = CompatibilityListener.NONE;
+    private AtomicBoolean cancelled;
+    private SchemaInterner interner;
+    private ChronologyWindow window = ChronologyWindow.ALL;
+    private RoundTripVerifier verifier;
+
+    private Builder() {}
+
+    /**
+     * @param cache retains pairwise verdicts between checks, or {@code null} to disable caching.
+     */
+    public Builder cache(CompatibilityCache cache) {
+      this.cache = cache;
+      return this;
+    }
+
+    /**
+     * @param subtreeCache shares the verdicts of pairs of nested named types between checks, so that types embedded in
+     *          many schemas are walked once, or {@code null} to walk them in every check.
+     */
+    public Builder subtreeCache(SubtreeCache subtreeCache) {
+      this.subtreeCache = subtreeCache;
+      return this;
+    }
+
+    /**
+     * @param verdictStore persists pairwise verdicts across restarts, consulted after the cache if one is configured,
+     *          or {@code null} to disable storage.
+     */
+    public Builder verdictStore(VerdictStore verdictStore) {
+      this.verdictStore = verdictStore;
+      return this;
+    }
+
+    /**
+     * @param failFast stop transitive checks at the first incompatible schema, scanning from the latest.
+     */
+    public Builder failFast(boolean failFast) {
+      this.failFast = failFast;
+      return this;
+    }
+
+    /**
+     * @param executor runs the pair checks of transitive checks in parallel, for example a
+     *          {@link java.util.concurrent.ForkJoinPool}, or {@code null} to run them sequentially.
+     */
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * @param deduplicate check schemas in a chronology that differ only in documentation, formatting, property order or
+     *          default values once, and share the result between them.
+     */
+    public Builder deduplicate(boolean deduplicate) {
+      this.deduplicate = deduplicate;
+      return this;
+    }
+
+    /**
+     * @param maximumIncompatibilities stop each pair check once this many incompatibilities have been found. Use
+     *          {@link CompatibilityConfiguration#VERDICT_ONLY} when only {@code isCompatible()} is of interest, so that
+     *          no incompatibility messages or locations are built, or
+     *          {@link CompatibilityConfiguration#ALL_INCOMPATIBILITIES}, the default.
+     */
+    public Builder maximumIncompatibilities(int maximumIncompatibilities) {
+      checkArgument(maximumIncompatibilities >= 0, "Maximum incompatibilities cannot be negative.");
+      this.maximumIncompatibilities = maximumIncompatibilities;
+      return this;
+    }
+
+    /**
+     * @param listener receives measurements of checks, which must be safe to call from many threads if an executor is
+     *          configured.
+     */
+    public Builder listener(CompatibilityListener listener) {
+      this.listener = checkNotNull(listener, "Listener cannot be null.");
+      return this;
+    }
+
+    /**
+     * @param interner replaces the schemas supplied to each check with canonical instances, so that equal schemas
+     *          parsed separately share fingerprints and compiled forms, or {@code null} to check schemas as supplied.
+     */
+    public Builder interner(SchemaInterner interner) {
+      this.interner = interner;
+      return this;
+    }
+
+    /**
+     * @param window bounds the schemas against which {@link Compatibility.ChronologyType#WINDOW windowed} checks are
+     *          made, for example to the last few versions or to those registered within a retention period.
+     */
+    public Builder window(ChronologyWindow window) {
+      this.window = checkNotNull(window, "Window cannot be null.");
+      return this;
+    }
+
+    /**
+     * @param verifier confirms each compatible verdict by writing random datums with the writer schema and reading
+     *          them with the reader schema, reporting any that cannot be read, or {@code null} to trust static checks.
+     */
+    public Builder verifier(RoundTripVerifier verifier) {
+      this.verifier = verifier;
+      return this;
+    }
+
+    /**
+     * @param cancelled set when the asynchronous check to which the configuration belongs is cancelled.
+     */
+    Builder cancelled(AtomicBoolean cancelled) {
+      this.cancelled = cancelled;
+      return this;
+    }
+
+    public CompatibilityConfiguration build() {
+      return new CompatibilityConfiguration(this);
+    }
+  }
+
+}
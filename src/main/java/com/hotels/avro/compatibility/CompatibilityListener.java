@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+
+/**
+ * Receives measurements of compatibility checks, for example to publish them to a metrics library. Every method does
+ * nothing unless overridden. A listener is {@link CompatibilityConfiguration.Builder#listener(CompatibilityListener)
+ * configured} per check; when none is configured no measurements are taken.
+ * <p>
+ * Listeners are called on the threads that carry out the checks, which with a configured executor may be many threads
+ * at once. They should return quickly and must not throw.
+ */
+public abstract class CompatibilityListener {
+
+  /** Receives nothing, and is configured by default. */
+  public static final CompatibilityListener NONE = new CompatibilityListener() {};
+
+  protected CompatibilityListener() {}
+
+  /**
+   * Called once a schema has been checked against a chronology.
+   *
+   * @param result the result, which names the check and chronology types.
+   * @param toValidate the schema that was checked.
+   * @param schemaSize the {@link CompiledSchema#getSize() number of types} in the schema that was checked.
+   * @param pairChecks the number of schema pairs checked, including those whose verdicts were cached. Fewer pairs than
+   *          there are schemas in the chronology are checked when failing fast or deduplicating.
+   * @param elapsedNanos the time taken by the check.
+   */
+  public void chronologyChecked(
+      ChronologyCompatibilityCheckResult result,
+      Schema toValidate,
+      int schemaSize,
+      int pairChecks,
+      long elapsedNanos) {}
+
+  /**
+   * Called once a pair of schemas has been checked, whether or not its verdict was cached. The incompatibilities
+   * found, by type, are those of {@code compatibility.getResult()}.
+   *
+   * @param elapsedNanos the time taken by the check, including any cache lookup.
+   */
+  public void pairChecked(CheckType check, SchemaPairCompatibility compatibility, long elapsedNanos) {}
+
+  /** Called when the verdict for a pair of schemas is found in the {@link CompatibilityCache} or the store. */
+  public void cacheHit(CheckType check) {}
+
+  /** Called when the verdict for a pair of schemas is found in neither the cache nor the store, if configured. */
+  public void cacheMiss(CheckType check) {}
+
+}
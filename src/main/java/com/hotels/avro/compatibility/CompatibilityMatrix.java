@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+
+import com.google.common.collect.Lists;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+
+/**
+ * Which schemas in a chronology can read the data written by which others. {@code MUTUAL_READ} is derived from the two
+ * directions of {@code CAN_READ}, so each ordered pair is checked at most once.
+ * <p>
+ * Schemas that are {@link SchemaFingerprints equivalent} for the purposes of compatibility are checked once, as a
+ * class, and every schema can read itself, so only ordered pairs of distinct classes are checked. Only verdicts are
+ * collected, through the {@link CompatibilityConfiguration#getCache() configured cache} if there is one, and the rows
+ * of the matrix are checked in parallel over the {@link CompatibilityConfiguration#getExecutor() configured executor}
+ * if there is one. Verdicts are held as one bit per ordered pair of classes.
+ */
+public final class CompatibilityMatrix {
+
+  /** The largest number of distinct schemas whose pairs can be indexed in a {@link BitSet}. */
+  private static final int MAXIMUM_CLASSES = 46340;
+
+  private final List<Schema> schemasInOrder;
+  private final int[] classes;
+  private final int classCount;
+  /** Bit {@code reader * classCount + writer} is set if the reader class can read the writer class. */
+  private final BitSet canRead;
+
+  private CompatibilityMatrix(List<Schema> schemasInOrder, int[] classes, int classCount, BitSet canRead) {
+    this.schemasInOrder = schemasInOrder;
+    this.classes = classes;
+    this.classCount = classCount;
+    this.canRead = canRead;
+  }
+
+  /**
+   * @param schemasInOrder schemas, latest last.
+   */
+  public static CompatibilityMatrix of(Iterable<Schema> schemasInOrder) {
+    return of(schemasInOrder, CompatibilityConfiguration.DEFAULT);
+  }
+
+  /**
+   * @param schemasInOrder schemas, latest last.
+   */
+  public static CompatibilityMatrix of(Iterable<Schema> schemasInOrder, CompatibilityConfiguration configuration) {
+    checkNotNull(schemasInOrder, "Schemas cannot be null.");
+    checkNotNull(configuration, "Configuration cannot be null.");
+    List<Schema> schemas = Collections.unmodifiableList(new ArrayList<>(Compatibility.asList(schemasInOrder)));
+    for (Schema schema : schemas) {
+      checkNotNull(schema, "Schemas cannot contain null.");
+    }
+    SchemaInterner interner = configuration.getInterner();
+    EquivalentSchemas equivalentSchemas = EquivalentSchemas.of(interner == null
+        ? schemas
+        : Lists.newArrayList(SchemaChronology.interned(schemas, interner)));
+    int[] classes = new int[schemas.size()];
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = equivalentSchemas.classOf(i);
+    }
+    List<Schema> representatives = equivalentSchemas.getRepresentatives();
+    CompatibilityConfiguration verdictOnly = configuration
+        .toBuilder()
+        .maximumIncompatibilities(CompatibilityConfiguration.VERDICT_ONLY)
+        .build();
+    BitSet canRead = checkClasses(representatives, verdictOnly);
+    return new CompatibilityMatrix(schemas, classes, representatives.size(), canRead);
+  }
+
+  private static BitSet checkClasses(List<Schema> representatives, CompatibilityConfiguration configuration) {
+    int classCount = representatives.size();
+    checkArgument(classCount <= MAXIMUM_CLASSES, "Chronology has more than %s distinct schemas.", MAXIMUM_CLASSES);
+    List<FutureTask<BitSet>> rows = new ArrayList<>(classCount);
+    for (int reader = 0; reader < classCount; reader++) {
+      rows.add(new FutureTask<>(new RowCheck(representatives, reader, configuration)));
+    }
+    Executor executor = configuration.getExecutor();
+    if (executor != null) {
+      for (FutureTask<BitSet> row : rows) {
+        try {
+          executor.execute(row);
+        } catch (RejectedExecutionException e) {
+          // Left for the calling thread
+        }
+      }
+    }
+    BitSet canRead = new BitSet(classCount * classCount);
+    try {
+      for (FutureTask<BitSet> row : rows) {
+        row.run();
+      }
+      for (int reader = 0; reader < classCount; reader++) {
+        BitSet row = ParallelPairChecks.getResult(rows.get(reader));
+        for (int writer = row.nextSetBit(0); writer >= 0; writer = row.nextSetBit(writer + 1)) {
+          canRead.set(reader * classCount + writer);
+        }
+      }
+    } finally {
+      for (FutureTask<BitSet> row : rows) {
+        row.cancel(false);
+      }
+    }
+    return canRead;
+  }
+
+  /** @return the number of schemas in the chronology. */
+  public int size() {
+    return classes.length;
+  }
+
+  public List<Schema> getSchemas() {
+    return schemasInOrder;
+  }
+
+  /**
+   * @return {@code true} if the schema at {@code readerIndex} can read the data written by the schema at
+   *         {@code writerIndex}.
+   */
+  public boolean canRead(int readerIndex, int writerIndex) {
+    checkElementIndex(readerIndex, classes.length, "Reader index");
+    checkElementIndex(writerIndex, classes.length, "Writer index");
+    return canRead.get(classes[readerIndex] * classCount + classes[writerIndex]);
+  }
+
+  /**
+   * @return {@code true} if the data written by the schema at {@code writerIndex} can be read by the schema at
+   *         {@code readerIndex}.
+   */
+  public boolean canBeReadBy(int writerIndex, int readerIndex) {
+    return canRead(readerIndex, writerIndex);
+  }
+
+  /**
+   * @return {@code true} if each of the two schemas can read the data written by the other.
+   */
+  public boolean mutualRead(int index, int otherIndex) {
+    return canRead(index, otherIndex) && canRead(otherIndex, index);
+  }
+
+  /**
+   * @return {@code true} if the pair of schemas passes the given check, the schema at {@code toValidateIndex} taking
+   *         the role of the schema to be validated.
+   */
+  public boolean isCompatible(CheckType check, int toValidateIndex, int existingIndex) {
+    checkNotNull(check, "Check type cannot be null.");
+    switch (check) {
+    case CAN_READ:
+      return canRead(toValidateIndex, existingIndex);
+    case CAN_BE_READ_BY:
+      return canBeReadBy(toValidateIndex, existingIndex);
+    case MUTUAL_READ:
+      return mutualRead(toValidateIndex, existingIndex);
+    default:
+      throw new IllegalArgumentException("Unknown check type: " + check);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("CompatibilityMatrix [size=").append(size()).append(", canRead=[");
+    for (int reader = 0; reader < size(); reader++) {
+      builder.append(reader == 0 ? "" : ", ").append(reader).append(" reads {");
+      String separator = "";
+      for (int writer = 0; writer < size(); writer++) {
+        if (canRead(reader, writer)) {
+          builder.append(separator).append(writer);
+          separator = ", ";
+        }
+      }
+      builder.append('}');
+    }
+    return builder.append("]]").toString();
+  }
+
+  /** Checks whether one class can read each of the classes. */
+  private static final class RowCheck implements Callable<BitSet> {
+    private final List<Schema> representatives;
+    private final int reader;
+    private final CompatibilityConfiguration configuration;
+
+    private RowCheck(List<Schema> representatives, int reader, CompatibilityConfiguration configuration) {
+      this.representatives = representatives;
+      this.reader = reader;
+      this.configuration = configuration;
+    }
+
+    @Override
+    public BitSet call() {
+      Schema readerSchema = representatives.get(reader);
+      BitSet row = new BitSet(representatives.size());
+      row.set(reader);
+      for (int writer = 0; writer < representatives.size(); writer++) {
+        if (writer != reader && CheckType.CAN_READ
+            .validate(readerSchema, representatives.get(writer), configuration)
+            .getType() == SchemaCompatibilityType.COMPATIBLE) {
+          row.set(writer);
+        }
+      }
+      return row;
+    }
+  }
+
+}
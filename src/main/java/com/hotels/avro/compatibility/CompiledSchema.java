@@ -0,0 +1,305 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.Schema.Type;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * A schema prepared for repeated compatibility checks, typically a candidate that is checked against every schema in
+ * a long chronology. Names are interned so that they can be compared by identity, record fields are indexed by name,
+ * enum symbols are held in sets, and the branches of each union are indexed by the types of data they can read.
+ * <p>
+ * Compiled forms are retained per {@link Schema} instance while they are held, and the most recently compiled forms are
+ * retained up to a bound on the number of types they hold, so schemas that are supplied directly to a check are also
+ * compiled only once while they are in use. Holding a {@link CompiledSchema} guarantees that its compiled form is
+ * reused.
+ */
+public final class CompiledSchema {
+
+  /** The number of types held by the most recently compiled forms, beyond which the least recent are released. */
+  private static final int MAXIMUM_RECENT_TYPES = 1 << 18;
+
+  /** Every compiled form that is still held. Values reference their keys, so are weak to let both be collected. */
+  private static final LoadingCache<Schema, CompiledSchema> COMPILED = CacheBuilder
+      .newBuilder()
+      .weakKeys()
+      .weakValues()
+      .build(new CacheLoader<Schema, CompiledSchema>() {
+        @Override
+        public CompiledSchema load(Schema schema) {
+          return new CompiledSchema(schema);
+        }
+      });
+
+  /**
+   * Holds the most recently compiled forms. Keys are weak only to be compared by identity: values reference their keys,
+   * so entries are released by the bound alone.
+   */
+  private static final LoadingCache<Schema, CompiledSchema> RECENT = CacheBuilder
+      .newBuilder()
+      .weakKeys()
+      .maximumWeight(MAXIMUM_RECENT_TYPES)
+      .weigher(new Weigher<Schema, CompiledSchema>() {
+        @Override
+        public int weigh(Schema schema, CompiledSchema compiled) {
+          return compiled.size;
+        }
+      })
+      .build(new CacheLoader<Schema, CompiledSchema>() {
+        @Override
+        public CompiledSchema load(Schema schema) {
+          return COMPILED.getUnchecked(schema);
+        }
+      });
+
+  private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+  private final Schema schema;
+  private final Node root;
+  private final int size;
+
+  private CompiledSchema(Schema schema) {
+    this.schema = schema;
+    Compiler compiler = new Compiler();
+    root = compiler.compile(schema);
+    size = compiler.nodes;
+  }
+
+  /**
+   * @return the compiled form of the schema, which is shared with any other caller that compiles the same instance.
+   */
+  public static CompiledSchema compile(Schema schema) {
+    checkNotNull(schema, "Schema to be compiled cannot be null.");
+    return RECENT.getUnchecked(schema);
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * @return the number of types in the schema, counting each named type once however often it is used.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  Node getRoot() {
+    return root;
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledSchema [schema=" + schema + "]";
+  }
+
+  /** A compiled schema, or any schema nested within it. Named types are compiled once however often they are used. */
+  static final class Node {
+    final Schema schema;
+    final Type type;
+    /** The interned full name of a named type, otherwise {@code null}. */
+    final String name;
+    /** The interned full name aliases of a named type. */
+    final Set<String> aliases;
+    Node elementType;
+    Node valueType;
+    List<Node> branches;
+    /** For each writer type, by ordinal, the positions of the branches of this union that might read it. */
+    int[][] branchesReading;
+    List<CompiledField> fields;
+    Map<String, CompiledField> fieldsByName;
+    Set<String> symbols;
+    String enumDefault;
+    int fixedSize;
+
+    private Node(Schema schema, String name, Set<String> aliases) {
+      this.schema = schema;
+      type = schema.getType();
+      this.name = name;
+      this.aliases = aliases;
+    }
+
+    boolean isNamed() {
+      return name != null;
+    }
+  }
+
+  static final class CompiledField {
+    final Field field;
+    final String name;
+    final Set<String> aliases;
+    final boolean hasDefaultValue;
+    Node schema;
+
+    private CompiledField(Field field) {
+      this.field = field;
+      name = NAMES.intern(field.name());
+      aliases = intern(field.aliases());
+      hasDefaultValue = field.hasDefaultValue();
+    }
+  }
+
+  private static final class Compiler {
+    private final Map<Schema, Node> named = new IdentityHashMap<>();
+    private int nodes;
+
+    private Node compile(Schema schema) {
+      switch (schema.getType()) {
+      case RECORD:
+      case ENUM:
+      case FIXED:
+        Node node = named.get(schema);
+        if (node == null) {
+          node = new Node(schema, NAMES.intern(schema.getFullName()), intern(schema.getAliases()));
+          nodes++;
+          named.put(schema, node);
+          compileNamed(node);
+        }
+        return node;
+      default:
+        node = new Node(schema, null, Collections.<String> emptySet());
+        nodes++;
+        compileUnnamed(node);
+        return node;
+      }
+    }
+
+    private void compileNamed(Node node) {
+      Schema schema = node.schema;
+      switch (node.type) {
+      case RECORD:
+        List<CompiledField> fields = new ArrayList<>(schema.getFields().size());
+        Map<String, CompiledField> fieldsByName = new HashMap<>();
+        for (Field field : schema.getFields()) {
+          CompiledField compiledField = new CompiledField(field);
+          fields.add(compiledField);
+          fieldsByName.put(compiledField.name, compiledField);
+        }
+        node.fields = fields;
+        node.fieldsByName = fieldsByName;
+        for (CompiledField field : fields) {
+          field.schema = compile(field.field.schema());
+        }
+        return;
+      case ENUM:
+        node.symbols = new HashSet<>(schema.getEnumSymbols());
+        node.enumDefault = schema.getEnumDefault();
+        return;
+      case FIXED:
+        node.fixedSize = schema.getFixedSize();
+        return;
+      default:
+        throw new IllegalStateException("Unexpected named type: " + node.type);
+      }
+    }
+
+    private void compileUnnamed(Node node) {
+      Schema schema = node.schema;
+      switch (node.type) {
+      case ARRAY:
+        node.elementType = compile(schema.getElementType());
+        return;
+      case MAP:
+        node.valueType = compile(schema.getValueType());
+        return;
+      case UNION:
+        List<Node> branches = new ArrayList<>(schema.getTypes().size());
+        for (Schema branch : schema.getTypes()) {
+          branches.add(compile(branch));
+        }
+        node.branches = branches;
+        node.branchesReading = indexBranches(branches);
+        return;
+      default:
+        return;
+      }
+    }
+  }
+
+  private static int[][] indexBranches(List<Node> branches) {
+    Type[] types = Type.values();
+    int[][] branchesReading = new int[types.length][];
+    for (Type writerType : types) {
+      int[] positions = new int[branches.size()];
+      int count = 0;
+      for (int i = 0; i < branches.size(); i++) {
+        if (mightRead(branches.get(i).type, writerType)) {
+          positions[count++] = i;
+        }
+      }
+      int[] trimmed = new int[count];
+      System.arraycopy(positions, 0, trimmed, 0, count);
+      branchesReading[writerType.ordinal()] = trimmed;
+    }
+    return branchesReading;
+  }
+
+  /**
+   * @return {@code false} if data of the writer type can never be read as the reader type, whatever the detail of the
+   *         schemas.
+   */
+  static boolean mightRead(Type readerType, Type writerType) {
+    if (readerType == writerType) {
+      return true;
+    }
+    switch (readerType) {
+    case LONG:
+      return writerType == Type.INT;
+    case FLOAT:
+      return writerType == Type.INT || writerType == Type.LONG;
+    case DOUBLE:
+      return writerType == Type.INT || writerType == Type.LONG || writerType == Type.FLOAT;
+    case BYTES:
+      return writerType == Type.STRING;
+    case STRING:
+      return writerType == Type.BYTES;
+    default:
+      return false;
+    }
+  }
+
+  private static Set<String> intern(Set<String> names) {
+    if (names.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<String> interned = new HashSet<>(names.size() * 2);
+    for (String name : names) {
+      interned.add(NAMES.intern(name));
+    }
+    return interned;
+  }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+import com.google.common.collect.Lists;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+import com.hotels.avro.compatibility.Compatibility.ChronologyType;
+
+/**
+ * Groups a chronology into classes of schemas with the same {@link SchemaFingerprints fingerprint}, so that each class
+ * is checked once. Results are expanded back onto every schema in the chronology.
+ */
+final class EquivalentSchemas {
+
+  /** One schema from each class, ordered by the latest occurrence of the class in the chronology. */
+  private final List<Schema> representatives;
+  /** The class of each schema in the chronology. */
+  private final int[] classes;
+  /** The index in the chronology of the latest occurrence of each class. */
+  private final int[] latestIndices;
+
+  private EquivalentSchemas(List<Schema> representatives, int[] classes, int[] latestIndices) {
+    this.representatives = representatives;
+    this.classes = classes;
+    this.latestIndices = latestIndices;
+  }
+
+  /**
+   * Classes are discovered latest first, so that the order of the representatives matches the order of the latest
+   * occurrences in the chronology. A fail fast check of the representatives then stops at the class holding the latest
+   * incompatible schema.
+   */
+  static EquivalentSchemas of(List<Schema> schemasInOrder) {
+    int size = schemasInOrder.size();
+    Map<Long, Integer> classesByFingerprint = new HashMap<>();
+    List<Schema> representatives = new ArrayList<>();
+    List<Integer> latestIndices = new ArrayList<>();
+    int[] classes = new int[size];
+    for (int i = size - 1; i >= 0; i--) {
+      Schema schema = schemasInOrder.get(i);
+      Long fingerprint = SchemaFingerprints.fingerprint(schema);
+      Integer latestFirstClass = classesByFingerprint.get(fingerprint);
+      if (latestFirstClass == null) {
+        latestFirstClass = representatives.size();
+        classesByFingerprint.put(fingerprint, latestFirstClass);
+        representatives.add(schema);
+        latestIndices.add(i);
+      }
+      classes[i] = latestFirstClass;
+    }
+    int classCount = representatives.size();
+    int[] latestIndicesInOrder = new int[classCount];
+    for (int c = 0; c < classCount; c++) {
+      latestIndicesInOrder[c] = latestIndices.get(classCount - 1 - c);
+    }
+    for (int i = 0; i < size; i++) {
+      classes[i] = classCount - 1 - classes[i];
+    }
+    return new EquivalentSchemas(Lists.reverse(representatives), classes, latestIndicesInOrder);
+  }
+
+  /** @return one schema from each class, ordered by the latest occurrence of the class in the chronology. */
+  List<Schema> getRepresentatives() {
+    return representatives;
+  }
+
+  /** @return the class of the schema at the given index in the chronology. */
+  int classOf(int index) {
+    return classes[index];
+  }
+
+  /**
+   * @param schemasInOrder existing schemas, latest last.
+   */
+  static ChronologyCompatibilityCheckResult check(
+      ChronologyType chronology,
+      CheckType check,
+      Schema toValidate,
+      List<Schema> schemasInOrder,
+      CompatibilityConfiguration configuration) {
+    return of(schemasInOrder).checkClasses(chronology, check, toValidate, schemasInOrder, configuration);
+  }
+
+  /**
+   * Checks one schema from each class, so that classes found once can be shared by the checks of many schemas.
+   *
+   * @param schemasInOrder the existing schemas from which the classes were found, latest last.
+   */
+  ChronologyCompatibilityCheckResult checkClasses(
+      ChronologyType chronology,
+      CheckType check,
+      Schema toValidate,
+      List<Schema> schemasInOrder,
+      CompatibilityConfiguration configuration) {
+    ChronologyCompatibilityCheckResult classResults = chronology.check(check, toValidate, representatives,
+        configuration.toBuilder().deduplicate(false).build());
+    return expand(classResults, toValidate, schemasInOrder);
+  }
+
+  private ChronologyCompatibilityCheckResult expand(
+      ChronologyCompatibilityCheckResult classResults,
+      Schema toValidate,
+      List<Schema> schemasInOrder) {
+    CheckType check = classResults.getCompatibility();
+    ChronologyType chronology = classResults.getChronology();
+    if (classes.length == 0) {
+      return ChronologyCompatibilityCheckResult.empty(check, chronology);
+    }
+    if (classResults.isTruncated()) {
+      int failedIndex = latestIndices[classResults.getFailedIndex()];
+      CompatibilityCheckResult failure = bind(classResults.getResults().get(0), toValidate,
+          schemasInOrder.get(failedIndex));
+      return new ChronologyCompatibilityCheckResult(check, chronology, failure, failedIndex);
+    }
+    List<CompatibilityCheckResult> results = new ArrayList<>(classes.length);
+    for (int i = 0; i < classes.length; i++) {
+      results.add(bind(classResults.getResults().get(classes[i]), toValidate, schemasInOrder.get(i)));
+    }
+    return new ChronologyCompatibilityCheckResult(check, chronology, results);
+  }
+
+  private static CompatibilityCheckResult bind(CompatibilityCheckResult result, Schema toValidate, Schema existing) {
+    CheckType check = result.getCompatibility();
+    SchemaPairCompatibility compatibility = result.getSchemaPairCompatibility();
+    SchemaPairCompatibility bound = check.rebind(compatibility, toValidate, existing);
+    if (bound == compatibility) {
+      return result;
+    }
+    return new CompatibilityCheckResult(check, result.getChronology(), bound);
+  }
+
+}
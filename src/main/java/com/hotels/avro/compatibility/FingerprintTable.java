@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Ticker;
+
+/**
+ * A bounded, thread safe table of values keyed by a pair of 64-bit {@link SchemaFingerprints fingerprints} and a
+ * discriminator, such as the kind or detail of a check, that backs the caches of verdicts.
+ * <p>
+ * Entries live in a fixed size, two-way set associative table so that lookups compare primitive keys in place and do
+ * not allocate. When both slots of a set are occupied the oldest entry is evicted. Entries may also be expired a fixed
+ * duration after they were written.
+ */
+final class FingerprintTable<V> {
+
+  private final AtomicReferenceArray<Entry<V>> table;
+  private final int mask;
+  private final long expireAfterWriteNanos;
+  private final Ticker ticker;
+
+  /**
+   * @param maximumSize the maximum number of values held, rounded up to a power of two.
+   * @param expireAfterWriteNanos duration after which a value is discarded, or zero to retain values until evicted.
+   */
+  FingerprintTable(int maximumSize, long expireAfterWriteNanos, Ticker ticker) {
+    checkArgument(maximumSize > 0 && maximumSize <= 1 << 30, "Maximum size must be in the range [1, 2^30].");
+    checkArgument(expireAfterWriteNanos >= 0L, "Expiry duration cannot be negative.");
+    checkNotNull(ticker, "Ticker cannot be null.");
+    int capacity = Math.max(2, Integer.highestOneBit(maximumSize - 1) << 1);
+    table = new AtomicReferenceArray<>(capacity);
+    mask = capacity - 1;
+    this.expireAfterWriteNanos = expireAfterWriteNanos;
+    this.ticker = ticker;
+  }
+
+  V get(long first, long second, long discriminator) {
+    int set = indexOf(first, second, discriminator);
+    for (int slot = set; slot <= set + 1; slot++) {
+      Entry<V> entry = table.get(slot);
+      if (entry != null && entry.matches(first, second, discriminator)) {
+        if (expireAfterWriteNanos > 0L && isExpired(entry, ticker.read())) {
+          table.compareAndSet(slot, entry, null);
+          return null;
+        }
+        return entry.value;
+      }
+    }
+    return null;
+  }
+
+  void put(long first, long second, long discriminator, V value) {
+    int set = indexOf(first, second, discriminator);
+    long now = ticker.read();
+    Entry<V> entry = new Entry<>(first, second, discriminator, value, now);
+
+    int victim = set;
+    Entry<V> oldest = null;
+    for (int slot = set; slot <= set + 1; slot++) {
+      Entry<V> current = table.get(slot);
+      if (current == null || current.matches(first, second, discriminator) || isExpired(current, now)) {
+        table.set(slot, entry);
+        return;
+      }
+      if (oldest == null || current.writtenAt - oldest.writtenAt < 0) {
+        oldest = current;
+        victim = slot;
+      }
+    }
+    table.set(victim, entry);
+  }
+
+  void invalidateAll() {
+    for (int slot = 0; slot < table.length(); slot++) {
+      table.set(slot, null);
+    }
+  }
+
+  private boolean isExpired(Entry<V> entry, long now) {
+    return expireAfterWriteNanos > 0L && now - entry.writtenAt >= expireAfterWriteNanos;
+  }
+
+  private int indexOf(long first, long second, long discriminator) {
+    long hash = first * 0x9E3779B97F4A7C15L;
+    hash ^= Long.rotateLeft(second, 31) * 0xC2B2AE3D27D4EB4FL;
+    hash ^= discriminator;
+    hash ^= hash >>> 29;
+    return (int) hash & mask & ~1;
+  }
+
+  private static final class Entry<V> {
+    private final long first;
+    private final long second;
+    private final long discriminator;
+    private final V value;
+    private final long writtenAt;
+
+    private Entry(long first, long second, long discriminator, V value, long writtenAt) {
+      this.first = first;
+      this.second = second;
+      this.discriminator = discriminator;
+      this.value = value;
+      this.writtenAt = writtenAt;
+    }
+
+    private boolean matches(long first, long second, long discriminator) {
+      return this.first == first && this.second == second && this.discriminator == discriminator;
+    }
+  }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounds the size of a rendered compatibility message. Incompatibilities beyond either bound are not rendered but are
+ * counted in a closing {@code "... and N more"}. The character bound is checked before each incompatibility, so the
+ * incompatibility that reaches it is cut short, and the closing punctuation and count are written beyond it.
+ */
+public final class MessageLimits {
+
+  /** Renders every incompatibility in full. */
+  public static final MessageLimits UNLIMITED = of(Integer.MAX_VALUE, Integer.MAX_VALUE);
+  /** The bounds of the message of a {@link SchemaCompatibilityException}. */
+  public static final MessageLimits DEFAULT = of(100, 64 * 1024);
+
+  private final int maximumIncompatibilities;
+  private final int maximumCharacters;
+
+  private MessageLimits(int maximumIncompatibilities, int maximumCharacters) {
+    this.maximumIncompatibilities = maximumIncompatibilities;
+    this.maximumCharacters = maximumCharacters;
+  }
+
+  /**
+   * @param maximumIncompatibilities the number of incompatibilities rendered, over all schemas in a chronology.
+   * @param maximumCharacters the number of characters after which no further incompatibilities are rendered.
+   */
+  public static MessageLimits of(int maximumIncompatibilities, int maximumCharacters) {
+    checkArgument(maximumIncompatibilities >= 0, "Maximum incompatibilities cannot be negative.");
+    checkArgument(maximumCharacters >= 0, "Maximum characters cannot be negative.");
+    return new MessageLimits(maximumIncompatibilities, maximumCharacters);
+  }
+
+  public int getMaximumIncompatibilities() {
+    return maximumIncompatibilities;
+  }
+
+  public int getMaximumCharacters() {
+    return maximumCharacters;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * maximumIncompatibilities + maximumCharacters;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof MessageLimits))
+      return false;
+    MessageLimits other = (MessageLimits) obj;
+    return maximumIncompatibilities == other.maximumIncompatibilities
+        && maximumCharacters == other.maximumCharacters;
+  }
+
+  @Override
+  public String toString() {
+    return "MessageLimits [maximumIncompatibilities="
+        + maximumIncompatibilities
+        + ", maximumCharacters="
+        + maximumCharacters
+        + "]";
+  }
+
+}
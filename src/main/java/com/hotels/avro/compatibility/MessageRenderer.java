@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.avro.SchemaCompatibility.Incompatibility;
+
+/**
+ * Writes compatibility messages piece by piece to an {@link Appendable}, within {@link MessageLimits}, so that no
+ * intermediate strings are built for a message however many incompatibilities it holds.
+ */
+final class MessageRenderer {
+
+  private final Appendable out;
+  private final int maximumIncompatibilities;
+  private final int maximumCharacters;
+  private int characters;
+  private int rendered;
+  private int omitted;
+
+  MessageRenderer(Appendable out, MessageLimits limits) {
+    this.out = checkNotNull(out, "Appendable cannot be null.");
+    checkNotNull(limits, "Message limits cannot be null.");
+    maximumIncompatibilities = limits.getMaximumIncompatibilities();
+    maximumCharacters = limits.getMaximumCharacters();
+  }
+
+  /** Writes as much of the text as the character limit allows. */
+  MessageRenderer append(CharSequence text) throws IOException {
+    int length = text.length();
+    int remaining = maximumCharacters - characters;
+    if (length <= remaining) {
+      out.append(text);
+      characters += length;
+    } else if (remaining > 0) {
+      out.append(text, 0, remaining);
+      characters = maximumCharacters;
+    }
+    return this;
+  }
+
+  MessageRenderer append(char c) throws IOException {
+    if (characters < maximumCharacters) {
+      out.append(c);
+      characters++;
+    }
+    return this;
+  }
+
+  MessageRenderer append(Object value) throws IOException {
+    return append(String.valueOf(value));
+  }
+
+  MessageRenderer append(int value) throws IOException {
+    return append(Integer.toString(value));
+  }
+
+  /** @return {@code true} if no further incompatibilities will be rendered. */
+  boolean isFull() {
+    return rendered >= maximumIncompatibilities || characters >= maximumCharacters;
+  }
+
+  /** Counts incompatibilities that are not rendered. */
+  void omit(int count) {
+    omitted += count;
+  }
+
+  /** Writes the incompatibilities in brackets, counting those beyond the limits as omitted. */
+  void appendIncompatibilities(List<Incompatibility> incompatibilities) throws IOException {
+    append('[');
+    boolean first = true;
+    for (Incompatibility incompatibility : incompatibilities) {
+      if (isFull()) {
+        omitted++;
+        continue;
+      }
+      if (first) {
+        first = false;
+      } else {
+        append(',');
+      }
+      append('\'')
+          .append(incompatibility.getType())
+          .append(": ")
+          .append(incompatibility.getMessage())
+          .append("' at '")
+          .append(incompatibility.getLocation())
+          .append('\'');
+      rendered++;
+    }
+    out.append(']');
+  }
+
+  /** Writes the number of omitted incompatibilities, if any, and the terminator, whatever the limits. */
+  void finish(char terminator) throws IOException {
+    if (omitted > 0) {
+      out.append(" ... and ").append(Integer.toString(omitted)).append(" more");
+    }
+    out.append(terminator);
+  }
+
+}
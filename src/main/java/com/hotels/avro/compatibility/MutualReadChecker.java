@@ -0,0 +1,424 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.hotels.avro.compatibility.ReaderWriterChecker.COMPATIBLE;
+import static com.hotels.avro.compatibility.ReaderWriterChecker.RECURSION_IN_PROGRESS;
+import static com.hotels.avro.compatibility.ReaderWriterChecker.ROOT_REFERENCE_TOKEN;
+import static com.hotels.avro.compatibility.ReaderWriterChecker.enter;
+import static com.hotels.avro.compatibility.ReaderWriterChecker.exit;
+import static com.hotels.avro.compatibility.ReaderWriterChecker.lookupWriterField;
+import static com.hotels.avro.compatibility.ReaderWriterChecker.merge;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+import com.hotels.avro.compatibility.CompiledSchema.CompiledField;
+import com.hotels.avro.compatibility.CompiledSchema.Node;
+import com.hotels.avro.compatibility.ReaderWriterChecker.Incompatible;
+import com.hotels.avro.compatibility.ReaderWriterChecker.ReaderWriter;
+
+/**
+ * Checks that each of two schemas can read the data written by the other in a single walk of the pair. Each direction
+ * keeps its own {@link ReaderWriterChecker} state, locations and memo, so that the incompatibilities of each direction
+ * are those that a one way check would find; a walk of both directions is shared wherever the two directions visit the
+ * same pair of types, and each direction is walked alone where they do not.
+ * <p>
+ * Incompatibilities found when the existing schema reads the schema being validated are reported first, followed by
+ * those found when the schema being validated reads the existing schema. The walk is shared when every
+ * incompatibility or only the verdict is requested. When a limited number are requested the two directions are
+ * checked in turn, the second only for those incompatibilities that the first leaves room for.
+ */
+final class MutualReadChecker {
+
+  private static final Both BOTH_COMPATIBLE = new Both(COMPATIBLE, COMPATIBLE);
+
+  /** The existing schema reading the schema being validated; its nodes are on the left of each pair. */
+  private final ReaderWriterChecker existingReads;
+  /** The schema being validated reading the existing schema; its nodes are on the right of each pair. */
+  private final ReaderWriterChecker toValidateReads;
+
+  private MutualReadChecker(int maximumIncompatibilities) {
+    existingReads = new ReaderWriterChecker(maximumIncompatibilities);
+    toValidateReads = new ReaderWriterChecker(maximumIncompatibilities);
+  }
+
+  /**
+   * @param maximumIncompatibilities the number of incompatibilities to collect, or zero to collect only the verdict.
+   * @return a result whose reader is the existing schema if it cannot read the data of the schema being validated,
+   *         otherwise the schema being validated.
+   */
+  static SchemaPairCompatibility checkMutualRead(
+      CompiledSchema toValidate,
+      CompiledSchema existing,
+      int maximumIncompatibilities) {
+    List<Incompatible> existingReadsIncompatibilities;
+    List<Incompatible> toValidateReadsIncompatibilities;
+    if (maximumIncompatibilities == CompatibilityConfiguration.VERDICT_ONLY
+        || maximumIncompatibilities == CompatibilityConfiguration.ALL_INCOMPATIBILITIES) {
+      MutualReadChecker checker = new MutualReadChecker(maximumIncompatibilities);
+      Both both = checker.getCompatibility(existing.getRoot(), toValidate.getRoot());
+      existingReadsIncompatibilities = both.left;
+      toValidateReadsIncompatibilities = both.right;
+    } else {
+      existingReadsIncompatibilities = new ReaderWriterChecker(maximumIncompatibilities)
+          .getCompatibility(existing.getRoot(), toValidate.getRoot());
+      int remaining = maximumIncompatibilities - existingReadsIncompatibilities.size();
+      toValidateReadsIncompatibilities = remaining > 0
+          ? new ReaderWriterChecker(remaining).getCompatibility(toValidate.getRoot(), existing.getRoot())
+          : COMPATIBLE;
+    }
+
+    if (existingReadsIncompatibilities.isEmpty()) {
+      return ReaderWriterChecker.toPairCompatibility(toValidateReadsIncompatibilities, toValidate.getSchema(),
+          existing.getSchema(), maximumIncompatibilities);
+    }
+    List<Incompatible> incompatibilities = existingReadsIncompatibilities;
+    if (maximumIncompatibilities != CompatibilityConfiguration.VERDICT_ONLY) {
+      incompatibilities = merge(existingReadsIncompatibilities, toValidateReadsIncompatibilities);
+    }
+    return ReaderWriterChecker.toPairCompatibility(incompatibilities, existing.getSchema(), toValidate.getSchema(),
+        maximumIncompatibilities);
+  }
+
+  /** Checks a pair from a fresh root location in both directions. */
+  private Both getCompatibility(Node left, Node right) {
+    return getCompatibility(ROOT_REFERENCE_TOKEN, left, right, newLocation(existingReads),
+        newLocation(toValidateReads));
+  }
+
+  private Both getCompatibility(
+      String token,
+      Node left,
+      Node right,
+      Deque<String> leftLocation,
+      Deque<String> rightLocation) {
+    if (!left.isNamed() || !right.isNamed()) {
+      enter(leftLocation, token);
+      enter(rightLocation, token);
+      Both result = calculateCompatibility(left, right, leftLocation, rightLocation);
+      exit(leftLocation);
+      exit(rightLocation);
+      return result;
+    }
+    Map<ReaderWriter, List<Incompatible>> leftMemo = existingReads.memo();
+    Map<ReaderWriter, List<Incompatible>> rightMemo = toValidateReads.memo();
+    ReaderWriter leftPair = new ReaderWriter(left, right);
+    ReaderWriter rightPair = new ReaderWriter(right, left);
+    if (leftMemo.containsKey(leftPair) || rightMemo.containsKey(rightPair)) {
+      // Already met by at least one direction alone, so each direction carries on from its own state
+      return new Both(existingReads.getCompatibility(token, left, right, leftLocation),
+          toValidateReads.getCompatibility(token, right, left, rightLocation));
+    }
+    enter(leftLocation, token);
+    enter(rightLocation, token);
+    leftMemo.put(leftPair, RECURSION_IN_PROGRESS);
+    rightMemo.put(rightPair, RECURSION_IN_PROGRESS);
+    Both result = calculateCompatibility(left, right, leftLocation, rightLocation);
+    leftMemo.put(leftPair, result.left);
+    rightMemo.put(rightPair, result.right);
+    exit(leftLocation);
+    exit(rightLocation);
+    return result;
+  }
+
+  private Both calculateCompatibility(
+      Node left,
+      Node right,
+      Deque<String> leftLocation,
+      Deque<String> rightLocation) {
+    if (left.type == right.type) {
+      switch (left.type) {
+      case ARRAY:
+        return getCompatibility("items", left.elementType, right.elementType, leftLocation, rightLocation);
+      case MAP:
+        return getCompatibility("values", left.valueType, right.valueType, leftLocation, rightLocation);
+      case FIXED:
+        return new Both(existingReads.checkFixed(left, right, leftLocation),
+            toValidateReads.checkFixed(right, left, rightLocation));
+      case ENUM:
+        return new Both(existingReads.checkEnum(left, right, leftLocation),
+            toValidateReads.checkEnum(right, left, rightLocation));
+      case RECORD:
+        return checkRecordFields(left, right, existingReads.checkSchemaNames(left, right, leftLocation),
+            toValidateReads.checkSchemaNames(right, left, rightLocation), leftLocation, rightLocation);
+      case UNION:
+        return checkUnions(left, right, leftLocation, rightLocation);
+      default:
+        return BOTH_COMPATIBLE;
+      }
+    }
+    if (right.type == Type.UNION) {
+      return checkUnionAndBranch(right, left, rightLocation, false);
+    }
+    if (left.type == Type.UNION) {
+      return checkUnionAndBranch(left, right, leftLocation, true);
+    }
+    // Distinct types that are neither unions nor hold other types
+    return new Both(existingReads.calculateCompatibility(left, right, leftLocation),
+        toValidateReads.calculateCompatibility(right, left, rightLocation));
+  }
+
+  /**
+   * Fields that each direction matches to one another are walked together. The rest are walked by one direction alone.
+   * Each direction collects its incompatibilities in the order of its own reader's fields.
+   */
+  private Both checkRecordFields(
+      Node left,
+      Node right,
+      List<Incompatible> leftResult,
+      List<Incompatible> rightResult,
+      Deque<String> leftLocation,
+      Deque<String> rightLocation) {
+    boolean leftDone = existingReads.isDone(leftResult);
+    boolean rightDone = toValidateReads.isDone(rightResult);
+    if (leftDone || rightDone) {
+      if (!leftDone) {
+        leftResult = merge(leftResult, existingReads.checkReaderWriterRecordFields(left, right, leftLocation));
+      }
+      if (!rightDone) {
+        rightResult = merge(rightResult, toValidateReads.checkReaderWriterRecordFields(right, left, rightLocation));
+      }
+      return new Both(leftResult, rightResult);
+    }
+
+    List<Incompatible>[] rightFieldResults = null;
+    boolean rightFound = false;
+    enter(leftLocation, "fields");
+    enter(rightLocation, "fields");
+    for (CompiledField leftField : left.fields) {
+      enter(leftLocation, leftField.field.pos());
+      CompiledField rightField = lookupWriterField(right, leftField);
+      if (rightField == null) {
+        leftResult = merge(leftResult, existingReads.checkReaderFieldDefault(left, right, leftField, leftLocation));
+      } else if (!rightFound && lookupWriterField(left, rightField) == leftField) {
+        enter(rightLocation, rightField.field.pos());
+        Both fieldResult = getCompatibility("type", leftField.schema, rightField.schema, leftLocation, rightLocation);
+        exit(rightLocation);
+        if (rightFieldResults == null) {
+          rightFieldResults = newResults(right.fields.size());
+        }
+        rightFieldResults[rightField.field.pos()] = fieldResult.right;
+        rightFound = toValidateReads.isDone(fieldResult.right);
+        leftResult = merge(leftResult, fieldResult.left);
+      } else {
+        leftResult = merge(leftResult,
+            existingReads.getCompatibility("type", leftField.schema, rightField.schema, leftLocation));
+      }
+      exit(leftLocation);
+      if (existingReads.isDone(leftResult)) {
+        break;
+      }
+    }
+    exit(leftLocation);
+
+    for (CompiledField rightField : right.fields) {
+      int position = rightField.field.pos();
+      enter(rightLocation, position);
+      if (rightFieldResults != null && rightFieldResults[position] != null) {
+        rightResult = merge(rightResult, rightFieldResults[position]);
+      } else {
+        CompiledField leftField = lookupWriterField(left, rightField);
+        if (leftField == null) {
+          rightResult = merge(rightResult,
+              toValidateReads.checkReaderFieldDefault(right, left, rightField, rightLocation));
+        } else {
+          rightResult = merge(rightResult,
+              toValidateReads.getCompatibility("type", rightField.schema, leftField.schema, rightLocation));
+        }
+      }
+      exit(rightLocation);
+      if (toValidateReads.isDone(rightResult)) {
+        break;
+      }
+    }
+    exit(rightLocation);
+    return new Both(leftResult, rightResult);
+  }
+
+  /**
+   * Each direction looks for a reader branch that can read each writer branch. Branches of the same type are checked
+   * together, once, for whichever direction first needs them.
+   */
+  private Both checkUnions(Node left, Node right, Deque<String> leftLocation, Deque<String> rightLocation) {
+    Both[][] branchResults = new Both[left.branches.size()][right.branches.size()];
+
+    List<Incompatible> leftResult = COMPATIBLE;
+    int i = 0;
+    for (Node rightBranch : right.branches) {
+      enter(leftLocation, i);
+      if (!leftBranchReads(left, rightBranch, i, branchResults)) {
+        leftResult = merge(leftResult,
+            existingReads.missingUnionBranch(left, right, rightBranch.type, leftLocation));
+      }
+      exit(leftLocation);
+      i++;
+      if (existingReads.isDone(leftResult)) {
+        break;
+      }
+    }
+
+    List<Incompatible> rightResult = COMPATIBLE;
+    int j = 0;
+    for (Node leftBranch : left.branches) {
+      enter(rightLocation, j);
+      if (!rightBranchReads(right, leftBranch, j, branchResults)) {
+        rightResult = merge(rightResult,
+            toValidateReads.missingUnionBranch(right, left, leftBranch.type, rightLocation));
+      }
+      exit(rightLocation);
+      j++;
+      if (toValidateReads.isDone(rightResult)) {
+        break;
+      }
+    }
+    return new Both(leftResult, rightResult);
+  }
+
+  /** @return {@code true} if a branch of the left union can read the right branch at {@code i}. */
+  private boolean leftBranchReads(Node left, Node rightBranch, int i, Both[][] branchResults) {
+    for (int j : left.branchesReading[rightBranch.type.ordinal()]) {
+      Node leftBranch = left.branches.get(j);
+      boolean compatible = leftBranch.type == rightBranch.type
+          ? speculate(branchResults, j, i, leftBranch, rightBranch).left.isEmpty()
+          : existingReads.isCompatible(leftBranch, rightBranch);
+      if (compatible) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** @return {@code true} if a branch of the right union can read the left branch at {@code j}. */
+  private boolean rightBranchReads(Node right, Node leftBranch, int j, Both[][] branchResults) {
+    for (int i : right.branchesReading[leftBranch.type.ordinal()]) {
+      Node rightBranch = right.branches.get(i);
+      boolean compatible = leftBranch.type == rightBranch.type
+          ? speculate(branchResults, j, i, leftBranch, rightBranch).right.isEmpty()
+          : toValidateReads.isCompatible(rightBranch, leftBranch);
+      if (compatible) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Checks a pair of union branches of the same type in both directions, for the verdicts only. */
+  private Both speculate(Both[][] branchResults, int j, int i, Node leftBranch, Node rightBranch) {
+    Both result = branchResults[j][i];
+    if (result == null) {
+      existingReads.speculating++;
+      toValidateReads.speculating++;
+      try {
+        result = getCompatibility(leftBranch, rightBranch);
+      } finally {
+        existingReads.speculating--;
+        toValidateReads.speculating--;
+      }
+      branchResults[j][i] = result;
+    }
+    return result;
+  }
+
+  /**
+   * Checks a union against a schema that is not a union. The union is the writer in one direction, in which each of its
+   * branches is checked in full against the other schema, and the reader in the other, in which only the verdict of
+   * each branch is of interest. Branches of the same type as the other schema are checked in both directions at once.
+   *
+   * @param unionOnLeft {@code true} if the union is from the existing schema.
+   */
+  private Both checkUnionAndBranch(
+      Node union,
+      Node other,
+      Deque<String> unionReadsLocation,
+      boolean unionOnLeft) {
+    ReaderWriterChecker otherReads = unionOnLeft ? toValidateReads : existingReads;
+    ReaderWriterChecker unionReads = unionOnLeft ? existingReads : toValidateReads;
+    Both[] branchResults = new Both[union.branches.size()];
+
+    List<Incompatible> otherReadsResult = COMPATIBLE;
+    int i = 0;
+    for (Node branch : union.branches) {
+      if (branch.type == other.type) {
+        unionReads.speculating++;
+        try {
+          branchResults[i] = unionOnLeft ? getCompatibility(branch, other) : getCompatibility(other, branch);
+        } finally {
+          unionReads.speculating--;
+        }
+        otherReadsResult = merge(otherReadsResult, otherSide(branchResults[i], unionOnLeft));
+      } else {
+        otherReadsResult = merge(otherReadsResult, otherReads.getCompatibility(other, branch));
+      }
+      i++;
+      if (otherReads.isDone(otherReadsResult)) {
+        break;
+      }
+    }
+
+    List<Incompatible> unionReadsResult = null;
+    for (int b : union.branchesReading[other.type.ordinal()]) {
+      boolean compatible = branchResults[b] != null
+          ? unionSide(branchResults[b], unionOnLeft).isEmpty()
+          : unionReads.isCompatible(union.branches.get(b), other);
+      if (compatible) {
+        unionReadsResult = COMPATIBLE;
+        break;
+      }
+    }
+    if (unionReadsResult == null) {
+      unionReadsResult = unionReads.missingUnionBranch(union, other, other.type, unionReadsLocation);
+    }
+    return unionOnLeft ? new Both(unionReadsResult, otherReadsResult) : new Both(otherReadsResult, unionReadsResult);
+  }
+
+  private static List<Incompatible> otherSide(Both result, boolean unionOnLeft) {
+    return unionOnLeft ? result.right : result.left;
+  }
+
+  private static List<Incompatible> unionSide(Both result, boolean unionOnLeft) {
+    return unionOnLeft ? result.left : result.right;
+  }
+
+  private static Deque<String> newLocation(ReaderWriterChecker checker) {
+    return checker.verdictOnly ? null : new ArrayDeque<String>();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Incompatible>[] newResults(int size) {
+    return (List<Incompatible>[]) new List<?>[size];
+  }
+
+  /** The incompatibilities found in each direction for a pair of types. */
+  private static final class Both {
+    /** Found when the existing schema reads the schema being validated. */
+    private final List<Incompatible> left;
+    /** Found when the schema being validated reads the existing schema. */
+    private final List<Incompatible> right;
+
+    private Both(List<Incompatible> left, List<Incompatible> right) {
+      this.left = left;
+      this.right = right;
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+
+/**
+ * Counts the pairs checked for one chronology check, on any thread, and passes every measurement on to the configured
+ * listener.
+ */
+final class PairCountingListener extends CompatibilityListener {
+
+  private final CompatibilityListener listener;
+  private final AtomicInteger pairChecks = new AtomicInteger();
+  private final long startNanos = System.nanoTime();
+
+  private PairCountingListener(CompatibilityListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * @return the configuration with a listener that counts pair checks, or {@code null} if no listener is configured.
+   */
+  static CompatibilityConfiguration instrument(CompatibilityConfiguration configuration) {
+    if (configuration.getListener() == CompatibilityListener.NONE) {
+      return null;
+    }
+    return configuration.toBuilder().listener(new PairCountingListener(configuration.getListener())).build();
+  }
+
+  /** Reports a chronology check made with an {@link #instrument instrumented} configuration. */
+  static void chronologyChecked(
+      CompatibilityConfiguration instrumented,
+      ChronologyCompatibilityCheckResult result,
+      Schema toValidate) {
+    PairCountingListener counter = (PairCountingListener) instrumented.getListener();
+    long elapsedNanos = System.nanoTime() - counter.startNanos;
+    counter.listener.chronologyChecked(result, toValidate, CompiledSchema.compile(toValidate).getSize(),
+        counter.pairChecks.get(), elapsedNanos);
+  }
+
+  @Override
+  public void pairChecked(CheckType check, SchemaPairCompatibility compatibility, long elapsedNanos) {
+    pairChecks.incrementAndGet();
+    listener.pairChecked(check, compatibility, elapsedNanos);
+  }
+
+  @Override
+  public void cacheHit(CheckType check) {
+    listener.cacheHit(check);
+  }
+
+  @Override
+  public void cacheMiss(CheckType check) {
+    listener.cacheMiss(check);
+  }
+
+}
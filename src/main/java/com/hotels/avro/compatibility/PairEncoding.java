@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.SchemaCompatibility.Incompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityResult;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+/**
+ * Encodes the outcome of a pairwise check without the schemas that were checked. Each incompatibility is held as its
+ * type, message and location, and its reader and writer fragments as paths of child indices into the schemas checked,
+ * so that an outcome can be decoded against any schemas with the same structure.
+ */
+final class PairEncoding {
+
+  private static final byte INCOMPATIBLE = 1;
+  private static final byte TO_VALIDATE_READS = 2;
+  private static final byte DESCRIBED = 4;
+
+  private static final byte TO_VALIDATE_SIDE = 0;
+  private static final byte EXISTING_SIDE = 1;
+  private static final byte NO_FRAGMENT = -1;
+
+  private static final SchemaIncompatibilityType[] INCOMPATIBILITY_TYPES = SchemaIncompatibilityType.values();
+
+  /** Compatible outcomes differ only in which schema reads, so their encodings are shared. */
+  private static final byte[] COMPATIBLE_TO_VALIDATE_READS = { TO_VALIDATE_READS | DESCRIBED, 0, 0, 0, 0 };
+  private static final byte[] COMPATIBLE_EXISTING_READS = { DESCRIBED, 0, 0, 0, 0 };
+
+  private PairEncoding() {}
+
+  /**
+   * @return the encoded outcome, which may be shared and must not be modified.
+   */
+  static byte[] encode(SchemaPairCompatibility compatibility, Schema toValidate, Schema existing) {
+    if (compatibility.getType() == SchemaCompatibilityType.COMPATIBLE) {
+      return compatibility.getReader() == toValidate ? COMPATIBLE_TO_VALIDATE_READS : COMPATIBLE_EXISTING_READS;
+    }
+    Encoder encoder = new Encoder();
+    byte flags = INCOMPATIBLE;
+    if (compatibility.getReader() == toValidate) {
+      flags |= TO_VALIDATE_READS;
+    }
+    if (compatibility.getDescription() != null) {
+      flags |= DESCRIBED;
+    }
+    encoder.buffer.put(flags);
+    List<Incompatibility> incompatibilities = compatibility.getResult().getIncompatibilities();
+    encoder.buffer.putInt(incompatibilities.size());
+    for (Incompatibility incompatibility : incompatibilities) {
+      encoder.ensure(1);
+      encoder.buffer.put((byte) incompatibility.getType().ordinal());
+      encoder.putString(incompatibility.getMessage());
+      encoder.putString(incompatibility.getLocation());
+      encoder.putFragment(incompatibility.getReaderFragment(), toValidate, existing);
+      encoder.putFragment(incompatibility.getWriterFragment(), toValidate, existing);
+    }
+    return encoder.toByteArray();
+  }
+
+  /** @return the verdict of an encoded outcome, read without decoding the incompatibilities. */
+  static SchemaCompatibilityType getType(byte[] encoded) {
+    return (encoded[0] & INCOMPATIBLE) != 0 ? SchemaCompatibilityType.INCOMPATIBLE : SchemaCompatibilityType.COMPATIBLE;
+  }
+
+  /**
+   * @param buffer positioned at the start of an encoded outcome, and left positioned at its end.
+   * @return the outcome, bound to the schemas supplied, which must have the fingerprints of the schemas encoded.
+   */
+  static SchemaPairCompatibility decode(ByteBuffer buffer, Schema toValidate, Schema existing) {
+    byte flags = buffer.get();
+    Schema reader = (flags & TO_VALIDATE_READS) != 0 ? toValidate : existing;
+    Schema writer = reader == toValidate ? existing : toValidate;
+    int count = buffer.getInt();
+    if ((flags & INCOMPATIBLE) == 0) {
+      return new SchemaPairCompatibility(SchemaCompatibilityResult.compatible(), reader, writer,
+          SchemaCompatibility.READER_WRITER_COMPATIBLE_MESSAGE);
+    }
+    SchemaCompatibilityResult result = decodeResult(buffer, count, toValidate, existing);
+    String description = (flags & DESCRIBED) == 0
+        ? null
+        : ReaderWriterChecker.describe(SchemaCompatibilityType.INCOMPATIBLE, reader, writer);
+    return new SchemaPairCompatibility(result, reader, writer, description);
+  }
+
+  /**
+   * Decodes the incompatibilities of an outcome without the schemas that were checked, so that it can be described
+   * without resolving them. The incompatibilities have no reader or writer fragments.
+   */
+  static List<Incompatibility> decodeIncompatibilities(byte[] encoded) {
+    ByteBuffer buffer = ByteBuffer.wrap(encoded);
+    byte flags = buffer.get();
+    int count = buffer.getInt();
+    if ((flags & INCOMPATIBLE) == 0) {
+      return SchemaCompatibilityResult.compatible().getIncompatibilities();
+    }
+    return decodeResult(buffer, count, null, null).getIncompatibilities();
+  }
+
+  /** Fragments are skipped rather than located if the schemas checked are {@code null}. */
+  private static SchemaCompatibilityResult decodeResult(
+      ByteBuffer buffer,
+      int count,
+      Schema toValidate,
+      Schema existing) {
+    SchemaCompatibilityResult result = null;
+    for (int i = 0; i < count; i++) {
+      SchemaIncompatibilityType type = INCOMPATIBILITY_TYPES[buffer.get()];
+      String message = getString(buffer);
+      List<String> location = toTokens(getString(buffer));
+      Schema readerFragment = getFragment(buffer, toValidate, existing);
+      Schema writerFragment = getFragment(buffer, toValidate, existing);
+      SchemaCompatibilityResult incompatibility = SchemaCompatibilityResult.incompatible(type, readerFragment,
+          writerFragment, message, location);
+      result = result == null ? incompatibility : result.mergedWith(incompatibility);
+    }
+    return result;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Reverses {@link Incompatibility#getLocation()}, which omits the root token and escapes each token. */
+  private static List<String> toTokens(String location) {
+    List<String> tokens = new ArrayList<>();
+    tokens.add(ReaderWriterChecker.ROOT_REFERENCE_TOKEN);
+    if (location.length() > 1) {
+      for (String token : location.substring(1).split("/", -1)) {
+        tokens.add(token.replace("~1", "/").replace("~0", "~"));
+      }
+    }
+    return Collections.unmodifiableList(tokens);
+  }
+
+  private static Schema getFragment(ByteBuffer buffer, Schema toValidate, Schema existing) {
+    byte side = buffer.get();
+    if (side == NO_FRAGMENT) {
+      return null;
+    }
+    Schema fragment = side == TO_VALIDATE_SIDE ? toValidate : existing;
+    int depth = buffer.getInt();
+    if (fragment == null) {
+      buffer.position(buffer.position() + 4 * depth);
+      return null;
+    }
+    for (int i = 0; i < depth; i++) {
+      fragment = children(fragment).get(buffer.getInt());
+    }
+    return fragment;
+  }
+
+  /** @return the schema found by following a path of child indices from the root. */
+  static Schema follow(Schema root, int[] path) {
+    Schema fragment = root;
+    for (int index : path) {
+      fragment = children(fragment).get(index);
+    }
+    return fragment;
+  }
+
+  /** The schemas nested directly within a schema, through which fragments are located. */
+  private static List<Schema> children(Schema schema) {
+    switch (schema.getType()) {
+    case RECORD:
+      List<Schema> fields = new ArrayList<>(schema.getFields().size());
+      for (Schema.Field field : schema.getFields()) {
+        fields.add(field.schema());
+      }
+      return fields;
+    case ARRAY:
+      return Collections.singletonList(schema.getElementType());
+    case MAP:
+      return Collections.singletonList(schema.getValueType());
+    case UNION:
+      return schema.getTypes();
+    default:
+      return Collections.emptyList();
+    }
+  }
+
+  /** @return the shortest path of child indices from the root to the fragment, or {@code null} if it is not found. */
+  static int[] pathTo(Schema fragment, Schema root) {
+    Map<Schema, int[]> paths = new IdentityHashMap<>();
+    Deque<Schema> queue = new ArrayDeque<>();
+    paths.put(root, new int[0]);
+    queue.add(root);
+    while (!queue.isEmpty()) {
+      Schema schema = queue.poll();
+      int[] path = paths.get(schema);
+      if (schema == fragment) {
+        return path;
+      }
+      List<Schema> children = children(schema);
+      for (int i = 0; i < children.size(); i++) {
+        Schema child = children.get(i);
+        if (!paths.containsKey(child)) {
+          int[] childPath = new int[path.length + 1];
+          System.arraycopy(path, 0, childPath, 0, path.length);
+          childPath[path.length] = i;
+          paths.put(child, childPath);
+          queue.add(child);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static final class Encoder {
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+    private void ensure(int bytes) {
+      if (buffer.remaining() < bytes) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+      }
+    }
+
+    private void putString(String value) {
+      if (value == null) {
+        ensure(4);
+        buffer.putInt(-1);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      ensure(4 + bytes.length);
+      buffer.putInt(bytes.length);
+      buffer.put(bytes);
+    }
+
+    private void putFragment(Schema fragment, Schema toValidate, Schema existing) {
+      int[] path = fragment == null ? null : pathTo(fragment, toValidate);
+      byte side = TO_VALIDATE_SIDE;
+      if (fragment != null && path == null) {
+        path = pathTo(fragment, existing);
+        side = EXISTING_SIDE;
+      }
+      if (path == null) {
+        ensure(1);
+        buffer.put(NO_FRAGMENT);
+        return;
+      }
+      ensure(5 + 4 * path.length);
+      buffer.put(side);
+      buffer.putInt(path.length);
+      for (int index : path) {
+        buffer.putInt(index);
+      }
+    }
+
+    private byte[] toByteArray() {
+      byte[] bytes = new byte[buffer.position()];
+      buffer.flip();
+      buffer.get(bytes);
+      return bytes;
+    }
+  }
+
+
+}
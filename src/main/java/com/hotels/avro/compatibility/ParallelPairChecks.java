@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.avro.Schema;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+import com.hotels.avro.compatibility.Compatibility.ChronologyType;
+
+/**
+ * Fans the pair checks of a chronology out over the {@link CompatibilityConfiguration#getExecutor() configured
+ * executor}. The calling thread also runs any checks that the executor has not yet started, so progress does not
+ * depend on the executor having free threads.
+ */
+final class ParallelPairChecks {
+
+  private ParallelPairChecks() {}
+
+  /**
+   * @param schemasInOrder existing schemas, latest last.
+   */
+  static ChronologyCompatibilityCheckResult check(
+      ChronologyType chronology,
+      CheckType check,
+      Schema toValidate,
+      List<Schema> schemasInOrder,
+      CompatibilityConfiguration configuration) {
+    int size = schemasInOrder.size();
+    if (size == 0) {
+      return ChronologyCompatibilityCheckResult.empty(check, chronology);
+    }
+    boolean failFast = configuration.isFailFast();
+    BlockingQueue<PairCheckTask> completed = new LinkedBlockingQueue<>();
+    PairCheckTask[] tasks = new PairCheckTask[size];
+    for (int i = 0; i < size; i++) {
+      PairCheck pairCheck = new PairCheck(chronology, check, toValidate, schemasInOrder.get(i), configuration);
+      tasks[i] = new PairCheckTask(i, pairCheck, completed);
+    }
+    Executor executor = configuration.getExecutor();
+    for (int i = 0; i < size; i++) {
+      try {
+        executor.execute(tasks[failFast ? size - 1 - i : i]);
+      } catch (RejectedExecutionException e) {
+        // Left for the calling thread
+      }
+    }
+    try {
+      if (failFast) {
+        return awaitLatestFailure(chronology, check, tasks, completed);
+      }
+      return awaitAll(chronology, check, tasks);
+    } finally {
+      for (PairCheckTask task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  private static ChronologyCompatibilityCheckResult awaitAll(
+      ChronologyType chronology,
+      CheckType check,
+      PairCheckTask[] tasks) {
+    for (PairCheckTask task : tasks) {
+      task.run();
+    }
+    List<CompatibilityCheckResult> results = new ArrayList<>(tasks.length);
+    for (PairCheckTask task : tasks) {
+      results.add(getResult(task));
+    }
+    return new ChronologyCompatibilityCheckResult(check, chronology, results);
+  }
+
+  /**
+   * Checks are consumed as they complete. When an incompatibility is found all checks of earlier schemas are cancelled,
+   * and only later schemas are awaited, so that the reported failure is the latest in the chronology just as it is
+   * for a sequential fail fast check.
+   */
+  private static ChronologyCompatibilityCheckResult awaitLatestFailure(
+      ChronologyType chronology,
+      CheckType check,
+      PairCheckTask[] tasks,
+      BlockingQueue<PairCheckTask> completed) {
+    CompatibilityCheckResult[] results = new CompatibilityCheckResult[tasks.length];
+    int failedIndex = -1;
+    int next = tasks.length - 1;
+    int remaining = tasks.length;
+    while (remaining > 0) {
+      PairCheckTask task = completed.poll();
+      if (task == null) {
+        if (next >= 0) {
+          tasks[next--].run();
+          continue;
+        }
+        task = Uninterruptibles.takeUninterruptibly(completed);
+      }
+      remaining--;
+      if (task.isCancelled()) {
+        continue;
+      }
+      CompatibilityCheckResult result = getResult(task);
+      results[task.index] = result;
+      if (!result.isCompatible() && task.index > failedIndex) {
+        failedIndex = task.index;
+        for (int i = 0; i < failedIndex; i++) {
+          tasks[i].cancel(false);
+        }
+      }
+    }
+    if (failedIndex >= 0) {
+      return new ChronologyCompatibilityCheckResult(check, chronology, results[failedIndex], failedIndex);
+    }
+    return new ChronologyCompatibilityCheckResult(check, chronology, Arrays.asList(results));
+  }
+
+  /** Awaits a task, rethrowing any failure of the task unchecked. */
+  static <T> T getResult(Future<T> task) {
+    try {
+      return Uninterruptibles.getUninterruptibly(task);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new UncheckedExecutionException(e.getCause());
+    }
+  }
+
+  private static final class PairCheck implements Callable<CompatibilityCheckResult> {
+    private final ChronologyType chronology;
+    private final CheckType check;
+    private final Schema toValidate;
+    private final Schema existing;
+    private final CompatibilityConfiguration configuration;
+
+    private PairCheck(
+        ChronologyType chronology,
+        CheckType check,
+        Schema toValidate,
+        Schema existing,
+        CompatibilityConfiguration configuration) {
+      this.chronology = chronology;
+      this.check = check;
+      this.toValidate = toValidate;
+      this.existing = existing;
+      this.configuration = configuration;
+    }
+
+    @Override
+    public CompatibilityCheckResult call() {
+      return new CompatibilityCheckResult(check, chronology, check.validate(toValidate, existing, configuration));
+    }
+  }
+
+  private static final class PairCheckTask extends FutureTask<CompatibilityCheckResult> {
+    private final int index;
+    private final BlockingQueue<PairCheckTask> completed;
+
+    private PairCheckTask(int index, PairCheck pairCheck, BlockingQueue<PairCheckTask> completed) {
+      super(pairCheck);
+      this.index = index;
+      this.completed = completed;
+    }
+
+    @Override
+    protected void done() {
+      completed.add(this);
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericData.EnumSymbol;
+import org.apache.avro.generic.GenericData.Fixed;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Generates random generic datums for a schema, reusing the records, arrays, maps, strings and buffers of the previous
+ * datum where their schemas match so that a stream of datums allocates little beyond boxed primitives. Values of
+ * logical types lie within the range that the logical type accepts.
+ */
+final class RandomDatumGenerator {
+
+  /** Containers below this depth are generated empty, and unions choose their null branch where they have one. */
+  private static final int SHALLOW_DEPTH = 8;
+  /** Schemas that cannot be completed within this depth, such as records that require themselves, are unbounded. */
+  private static final int MAXIMUM_DEPTH = 64;
+  private static final int MAXIMUM_LENGTH = 16;
+  private static final byte[] ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".getBytes();
+  private static final long MILLIS_PER_DAY = 86_400_000L;
+
+  private final Random random;
+
+  RandomDatumGenerator(Random random) {
+    this.random = random;
+  }
+
+  /**
+   * @param reuse the previous datum generated for the schema, or {@code null}.
+   * @throws UnboundedSchemaException if no finite datum of the schema can be generated.
+   */
+  Object next(Schema schema, Object reuse) {
+    return next(schema, reuse, 0);
+  }
+
+  private Object next(Schema schema, Object reuse, int depth) {
+    if (depth > MAXIMUM_DEPTH) {
+      throw UnboundedSchemaException.INSTANCE;
+    }
+    LogicalType logicalType = schema.getLogicalType();
+    String logicalName = logicalType == null ? null : logicalType.getName();
+    switch (schema.getType()) {
+    case NULL:
+      return null;
+    case BOOLEAN:
+      return random.nextBoolean();
+    case INT:
+      return "time-millis".equals(logicalName) ? random.nextInt((int) MILLIS_PER_DAY) : random.nextInt();
+    case LONG:
+      return "time-micros".equals(logicalName)
+          ? (random.nextLong() >>> 1) % (MILLIS_PER_DAY * 1000L)
+          : random.nextLong();
+    case FLOAT:
+      return random.nextFloat();
+    case DOUBLE:
+      return random.nextDouble();
+    case STRING:
+      return "uuid".equals(logicalName) ? new UUID(random.nextLong(), random.nextLong()).toString() : nextString(reuse);
+    case BYTES:
+      return nextBytes(reuse, "decimal".equals(logicalName) ? 1 : 0);
+    case FIXED:
+      Fixed fixed = reuse instanceof Fixed && ((Fixed) reuse).getSchema() == schema
+          ? (Fixed) reuse
+          : new Fixed(schema);
+      random.nextBytes(fixed.bytes());
+      return fixed;
+    case ENUM:
+      List<String> enumSymbols = schema.getEnumSymbols();
+      return new EnumSymbol(schema, enumSymbols.get(random.nextInt(enumSymbols.size())));
+    case ARRAY:
+      return nextArray(schema, reuse, depth);
+    case MAP:
+      return nextMap(schema, reuse, depth);
+    case UNION:
+      List<Schema> branches = schema.getTypes();
+      return next(branches.get(chooseBranch(branches, depth)), reuse, depth + 1);
+    case RECORD:
+      Record record = reuse instanceof Record && ((Record) reuse).getSchema() == schema
+          ? (Record) reuse
+          : new Record(schema);
+      for (Field field : schema.getFields()) {
+        record.put(field.pos(), next(field.schema(), record.get(field.pos()), depth + 1));
+      }
+      return record;
+    default:
+      throw new IllegalStateException("Unexpected type: " + schema.getType());
+    }
+  }
+
+  private Utf8 nextString(Object reuse) {
+    Utf8 string = reuse instanceof Utf8 ? (Utf8) reuse : new Utf8();
+    int length = random.nextInt(MAXIMUM_LENGTH + 1);
+    string.setByteLength(length);
+    byte[] bytes = string.getBytes();
+    for (int i = 0; i < length; i++) {
+      bytes[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+    }
+    return string;
+  }
+
+  private ByteBuffer nextBytes(Object reuse, int minimumLength) {
+    int length = minimumLength + random.nextInt(MAXIMUM_LENGTH + 1 - minimumLength);
+    ByteBuffer bytes = reuse instanceof ByteBuffer && ((ByteBuffer) reuse).capacity() >= MAXIMUM_LENGTH
+        ? (ByteBuffer) reuse
+        : ByteBuffer.allocate(MAXIMUM_LENGTH);
+    bytes.clear();
+    for (int i = 0; i < length; i++) {
+      bytes.put((byte) random.nextInt());
+    }
+    bytes.flip();
+    return bytes;
+  }
+
+  private GenericData.Array<Object> nextArray(Schema schema, Object reuse, int depth) {
+    @SuppressWarnings("unchecked")
+    GenericData.Array<Object> array = reuse instanceof GenericData.Array
+        && ((GenericData.Array<Object>) reuse).getSchema() == schema
+            ? (GenericData.Array<Object>) reuse
+            : new GenericData.Array<>(MAXIMUM_LENGTH, schema);
+    array.clear();
+    int size = depth < SHALLOW_DEPTH ? random.nextInt(MAXIMUM_LENGTH + 1) : 0;
+    for (int i = 0; i < size; i++) {
+      array.add(next(schema.getElementType(), array.peek(), depth + 1));
+    }
+    return array;
+  }
+
+  private Map<Utf8, Object> nextMap(Schema schema, Object reuse, int depth) {
+    @SuppressWarnings("unchecked")
+    Map<Utf8, Object> map = reuse instanceof GeneratedMap ? (Map<Utf8, Object>) reuse : new GeneratedMap();
+    map.clear();
+    int size = depth < SHALLOW_DEPTH ? random.nextInt(MAXIMUM_LENGTH + 1) : 0;
+    for (int i = 0; i < size; i++) {
+      map.put(nextString(null), next(schema.getValueType(), null, depth + 1));
+    }
+    return map;
+  }
+
+  private int chooseBranch(List<Schema> branches, int depth) {
+    if (depth < SHALLOW_DEPTH) {
+      return random.nextInt(branches.size());
+    }
+    for (int i = 0; i < branches.size(); i++) {
+      if (branches.get(i).getType() == Schema.Type.NULL) {
+        return i;
+      }
+    }
+    return random.nextInt(branches.size());
+  }
+
+  /** Marks maps created by the generator, which may be cleared and refilled. */
+  private static final class GeneratedMap extends HashMap<Utf8, Object> {
+    private static final long serialVersionUID = 1L;
+  }
+
+  /** Thrown when a schema has no finite datum within the maximum depth. */
+  static final class UnboundedSchemaException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private static final UnboundedSchemaException INSTANCE = new UnboundedSchemaException();
+
+    private UnboundedSchemaException() {
+      super("Schema has no datum within the maximum depth.", null, false, false);
+    }
+  }
+
+}
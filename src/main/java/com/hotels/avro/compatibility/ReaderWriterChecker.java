@@ -0,0 +1,712 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType.FIXED_SIZE_MISMATCH;
+import static org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType.MISSING_ENUM_SYMBOLS;
+import static org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType.MISSING_UNION_BRANCH;
+import static org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType.NAME_MISMATCH;
+import static org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType.READER_FIELD_MISSING_DEFAULT_VALUE;
+import static org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType.TYPE_MISMATCH;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityResult;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+import com.hotels.avro.compatibility.CompiledSchema.CompiledField;
+import com.hotels.avro.compatibility.CompiledSchema.Node;
+
+/**
+ * The compatibility engine behind every {@link Compatibility.CheckType}. Determines whether data written with one
+ * schema can be read with another, applying the same rules, and reporting the same incompatibilities at the same
+ * locations, as {@link SchemaCompatibility#checkReaderWriterCompatibility}.
+ * <p>
+ * Verdicts are memoized only for pairs of named types, the only types that can be shared or recursive, so each such
+ * pair is walked once per check and no lookups are made for unnamed types. Collection stops once the requested number
+ * of incompatibilities has been found. When only the verdict is requested, locations and messages are not built, and
+ * the walk stops at the first incompatibility.
+ * <p>
+ * Both schemas are walked in their {@link CompiledSchema compiled} form. Reader union branches that cannot read the
+ * type of the writer are skipped without being checked.
+ * <p>
+ * If a {@link SubtreeCache} is supplied, verdicts of named type pairs are also shared between checks, keyed by the
+ * fingerprints of the types. A pair found in the cache is not walked, and its incompatibilities are re-based onto the
+ * location at which it is met.
+ */
+final class ReaderWriterChecker {
+
+  static final String ROOT_REFERENCE_TOKEN = "";
+  private static final List<String> ROOT_LOCATION = Collections.singletonList(ROOT_REFERENCE_TOKEN);
+
+  static final List<Incompatible> COMPATIBLE = Collections.emptyList();
+  /** Marks a pair whose check has started but not finished; compared by identity. */
+  static final List<Incompatible> RECURSION_IN_PROGRESS = Collections.unmodifiableList(
+      new ArrayList<Incompatible>(0));
+  /** Verdict only results, which carry nothing but the type of the first incompatibility. */
+  private static final Map<SchemaIncompatibilityType, List<Incompatible>> VERDICTS = new EnumMap<>(
+      SchemaIncompatibilityType.class);
+
+  static {
+    for (SchemaIncompatibilityType type : SchemaIncompatibilityType.values()) {
+      VERDICTS.put(type, Collections.singletonList(new Incompatible(type, null, null, null, ROOT_LOCATION)));
+    }
+  }
+
+  private final int maximumIncompatibilities;
+  final boolean verdictOnly;
+  /** Verdicts of named type pairs shared between checks, or {@code null}. */
+  private final SubtreeCache subtreeCache;
+  /** Verdicts of named type pairs, created when the first such pair is met. */
+  Map<ReaderWriter, List<Incompatible>> memo;
+  /** Depth of union branch checks whose incompatibilities are discarded rather than reported. */
+  int speculating;
+  /** Incompatibilities found so far that will be reported. */
+  private int reported;
+  /** Number of times a verdict that depends on a pair still being checked has been used. */
+  private int recursions;
+  /** Named type pairs whose verdicts depend on a pair that was being checked, created when the first is found. */
+  private Set<ReaderWriter> provisional;
+
+  ReaderWriterChecker(int maximumIncompatibilities) {
+    this(maximumIncompatibilities, null);
+  }
+
+  ReaderWriterChecker(int maximumIncompatibilities, SubtreeCache subtreeCache) {
+    this.maximumIncompatibilities = maximumIncompatibilities;
+    verdictOnly = maximumIncompatibilities == 0;
+    this.subtreeCache = subtreeCache;
+  }
+
+  /**
+   * @param maximumIncompatibilities the number of incompatibilities to collect, or zero to collect only the verdict.
+   */
+  static SchemaPairCompatibility checkReaderWriterCompatibility(
+      Schema reader,
+      Schema writer,
+      int maximumIncompatibilities) {
+    return checkReaderWriterCompatibility(reader, writer, maximumIncompatibilities, null);
+  }
+
+  /**
+   * @param maximumIncompatibilities the number of incompatibilities to collect, or zero to collect only the verdict.
+   * @param subtreeCache verdicts of named type pairs shared between checks, or {@code null}.
+   */
+  static SchemaPairCompatibility checkReaderWriterCompatibility(
+      Schema reader,
+      Schema writer,
+      int maximumIncompatibilities,
+      SubtreeCache subtreeCache) {
+    return checkReaderWriterCompatibility(CompiledSchema.compile(reader), CompiledSchema.compile(writer),
+        maximumIncompatibilities, subtreeCache);
+  }
+
+  /**
+   * @param maximumIncompatibilities the number of incompatibilities to collect, or zero to collect only the verdict.
+   */
+  static SchemaPairCompatibility checkReaderWriterCompatibility(
+      CompiledSchema compiledReader,
+      CompiledSchema compiledWriter,
+      int maximumIncompatibilities) {
+    return checkReaderWriterCompatibility(compiledReader, compiledWriter, maximumIncompatibilities, null);
+  }
+
+  private static SchemaPairCompatibility checkReaderWriterCompatibility(
+      CompiledSchema compiledReader,
+      CompiledSchema compiledWriter,
+      int maximumIncompatibilities,
+      SubtreeCache subtreeCache) {
+    ReaderWriterChecker checker = new ReaderWriterChecker(maximumIncompatibilities, subtreeCache);
+    List<Incompatible> incompatibilities = checker.getCompatibility(compiledReader.getRoot(),
+        compiledWriter.getRoot());
+    return toPairCompatibility(incompatibilities, compiledReader.getSchema(), compiledWriter.getSchema(),
+        maximumIncompatibilities);
+  }
+
+  /**
+   * @param incompatibilities incompatibilities in the order found, of which at most {@code maximumIncompatibilities}
+   *          are reported, or only the type of the first if {@code maximumIncompatibilities} is zero.
+   */
+  static SchemaPairCompatibility toPairCompatibility(
+      List<Incompatible> incompatibilities,
+      Schema reader,
+      Schema writer,
+      int maximumIncompatibilities) {
+    if (incompatibilities.isEmpty()) {
+      return new SchemaPairCompatibility(SchemaCompatibilityResult.compatible(), reader, writer,
+          SchemaCompatibility.READER_WRITER_COMPATIBLE_MESSAGE);
+    }
+    if (maximumIncompatibilities == 0) {
+      SchemaCompatibilityResult result = SchemaCompatibilityResult.incompatible(incompatibilities.get(0).type, reader,
+          writer, null, ROOT_LOCATION);
+      return new SchemaPairCompatibility(result, reader, writer, null);
+    }
+    int count = Math.min(incompatibilities.size(), maximumIncompatibilities);
+    SchemaCompatibilityResult result = incompatibilities.get(0).toResult();
+    for (int i = 1; i < count; i++) {
+      result = result.mergedWith(incompatibilities.get(i).toResult());
+    }
+    return new SchemaPairCompatibility(result, reader, writer,
+        describe(SchemaCompatibilityType.INCOMPATIBLE, reader, writer));
+  }
+
+  /** Describes a verdict in the same terms as {@link SchemaCompatibility#checkReaderWriterCompatibility}. */
+  static String describe(SchemaCompatibilityType type, Schema reader, Schema writer) {
+    if (type == SchemaCompatibilityType.COMPATIBLE) {
+      return SchemaCompatibility.READER_WRITER_COMPATIBLE_MESSAGE;
+    }
+    return String.format("Data encoded using writer schema:%n%s%nwill or may fail to decode using reader schema:%n%s%n",
+        writer.toString(true), reader.toString(true));
+  }
+
+  /** Checks a pair from a fresh root location, as Avro does for the root and for every union branch. */
+  List<Incompatible> getCompatibility(Node reader, Node writer) {
+    return getCompatibility(ROOT_REFERENCE_TOKEN, reader, writer, verdictOnly ? null : new ArrayDeque<String>());
+  }
+
+  List<Incompatible> getCompatibility(String token, Node reader, Node writer, Deque<String> location) {
+    enter(location, token);
+    if (!reader.isNamed() || !writer.isNamed()) {
+      List<Incompatible> result = calculateCompatibility(reader, writer, location);
+      exit(location);
+      return result;
+    }
+    ReaderWriter pair = new ReaderWriter(reader, writer);
+    List<Incompatible> result = memo().get(pair);
+    if (result == null && subtreeCache != null) {
+      result = getShared(reader, writer, location);
+      if (result != null) {
+        memo.put(pair, result);
+      }
+    }
+    if (result == null) {
+      memo.put(pair, RECURSION_IN_PROGRESS);
+      int recursionsBefore = recursions;
+      result = calculateCompatibility(reader, writer, location);
+      memo.put(pair, result);
+      if (recursions != recursionsBefore) {
+        provisional().add(pair);
+      } else if (subtreeCache != null) {
+        share(reader, writer, result, location);
+      }
+    } else if (result == RECURSION_IN_PROGRESS) {
+      recursions++;
+      result = COMPATIBLE;
+    } else {
+      if (provisional != null && provisional.contains(pair)) {
+        recursions++;
+      }
+      if (speculating == 0) {
+        reported += result.size();
+      }
+    }
+    exit(location);
+    return result;
+  }
+
+  /** Verdicts of named type pairs, created when the first such pair is met. */
+  Map<ReaderWriter, List<Incompatible>> memo() {
+    if (memo == null) {
+      memo = new HashMap<>();
+    }
+    return memo;
+  }
+
+  private Set<ReaderWriter> provisional() {
+    if (provisional == null) {
+      provisional = new HashSet<>();
+    }
+    return provisional;
+  }
+
+  /** @return the shared verdict of the pair, re-based onto the current location, or {@code null} if there is none. */
+  private List<Incompatible> getShared(Node reader, Node writer, Deque<String> location) {
+    SharedSubtree shared = subtreeCache.get(SchemaFingerprints.fingerprint(reader.schema),
+        SchemaFingerprints.fingerprint(writer.schema), verdictOnly);
+    return shared == null ? null : shared.rebase(reader.schema, writer.schema, location);
+  }
+
+  /**
+   * Shares the verdict of a pair unless it may differ where the pair is met elsewhere: because collection stopped at
+   * the level of detail, or because it includes the verdict of a pair met earlier at another location.
+   */
+  private void share(Node reader, Node writer, List<Incompatible> result, Deque<String> location) {
+    SharedSubtree shared;
+    if (verdictOnly || result.isEmpty()) {
+      shared = new SharedSubtree(result, null);
+    } else {
+      if (reported >= maximumIncompatibilities) {
+        return;
+      }
+      shared = SharedSubtree.relativeTo(result, reader.schema, writer.schema, location);
+      if (shared == null) {
+        return;
+      }
+    }
+    subtreeCache.put(SchemaFingerprints.fingerprint(reader.schema), SchemaFingerprints.fingerprint(writer.schema),
+        verdictOnly, shared);
+  }
+
+  List<Incompatible> calculateCompatibility(Node reader, Node writer, Deque<String> location) {
+    List<Incompatible> result = COMPATIBLE;
+    if (reader.type == writer.type) {
+      switch (reader.type) {
+      case NULL:
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BYTES:
+      case STRING:
+        return COMPATIBLE;
+      case ARRAY:
+        return getCompatibility("items", reader.elementType, writer.elementType, location);
+      case MAP:
+        return getCompatibility("values", reader.valueType, writer.valueType, location);
+      case FIXED:
+        return checkFixed(reader, writer, location);
+      case ENUM:
+        return checkEnum(reader, writer, location);
+      case RECORD:
+        result = checkSchemaNames(reader, writer, location);
+        if (isDone(result)) {
+          return result;
+        }
+        return merge(result, checkReaderWriterRecordFields(reader, writer, location));
+      case UNION:
+        int i = 0;
+        for (Node writerBranch : writer.branches) {
+          enter(location, i++);
+          if (!isCompatible(reader, writerBranch)) {
+            result = merge(result, missingUnionBranch(reader, writer, writerBranch.type, location));
+          }
+          exit(location);
+          if (isDone(result)) {
+            break;
+          }
+        }
+        return result;
+      default:
+        throw new AvroRuntimeException("Unknown schema type: " + reader.type);
+      }
+    }
+
+    if (writer.type == Type.UNION) {
+      for (Node writerBranch : writer.branches) {
+        result = merge(result, getCompatibility(reader, writerBranch));
+        if (isDone(result)) {
+          break;
+        }
+      }
+      return result;
+    }
+
+    switch (reader.type) {
+    case NULL:
+    case BOOLEAN:
+    case INT:
+    case LONG:
+    case FLOAT:
+    case DOUBLE:
+    case BYTES:
+    case STRING:
+      return CompiledSchema.mightRead(reader.type, writer.type) ? COMPATIBLE : typeMismatch(reader, writer, location);
+    case ARRAY:
+    case MAP:
+    case FIXED:
+    case ENUM:
+    case RECORD:
+      return typeMismatch(reader, writer, location);
+    case UNION:
+      for (int branch : reader.branchesReading[writer.type.ordinal()]) {
+        if (isCompatible(reader.branches.get(branch), writer)) {
+          return COMPATIBLE;
+        }
+      }
+      return missingUnionBranch(reader, writer, writer.type, location);
+    default:
+      throw new AvroRuntimeException("Unknown schema type: " + reader.type);
+    }
+  }
+
+  List<Incompatible> checkFixed(Node reader, Node writer, Deque<String> location) {
+    List<Incompatible> result = checkSchemaNames(reader, writer, location);
+    if (isDone(result)) {
+      return result;
+    }
+    return merge(result, checkFixedSize(reader, writer, location));
+  }
+
+  List<Incompatible> checkEnum(Node reader, Node writer, Deque<String> location) {
+    List<Incompatible> result = checkSchemaNames(reader, writer, location);
+    if (isDone(result)) {
+      return result;
+    }
+    return merge(result, checkReaderEnumContainsAllWriterEnumSymbols(reader, writer, location));
+  }
+
+  /** Checks a union branch for which only the verdict is reported, whatever the level of detail requested. */
+  boolean isCompatible(Node reader, Node writer) {
+    speculating++;
+    try {
+      return getCompatibility(reader, writer).isEmpty();
+    } finally {
+      speculating--;
+    }
+  }
+
+  List<Incompatible> checkReaderWriterRecordFields(Node reader, Node writer, Deque<String> location) {
+    List<Incompatible> result = COMPATIBLE;
+    enter(location, "fields");
+    for (CompiledField readerField : reader.fields) {
+      enter(location, readerField.field.pos());
+      CompiledField writerField = lookupWriterField(writer, readerField);
+      if (writerField != null) {
+        result = merge(result, getCompatibility("type", readerField.schema, writerField.schema, location));
+      } else {
+        result = merge(result, checkReaderFieldDefault(reader, writer, readerField, location));
+      }
+      exit(location);
+      if (isDone(result)) {
+        break;
+      }
+    }
+    exit(location);
+    return result;
+  }
+
+  /** Checks a reader field that has no counterpart in the writer. */
+  List<Incompatible> checkReaderFieldDefault(
+      Node reader,
+      Node writer,
+      CompiledField readerField,
+      Deque<String> location) {
+    if (readerField.hasDefaultValue) {
+      return COMPATIBLE;
+    }
+    if (verdictOnly) {
+      return VERDICTS.get(READER_FIELD_MISSING_DEFAULT_VALUE);
+    }
+    return incompatible(READER_FIELD_MISSING_DEFAULT_VALUE, reader, writer, readerField.name, location);
+  }
+
+  /** Matches a reader field by name or alias, as {@link SchemaCompatibility#lookupWriterField} does. */
+  static CompiledField lookupWriterField(Node writer, CompiledField readerField) {
+    CompiledField writerField = writer.fieldsByName.get(readerField.name);
+    int matches = writerField == null ? 0 : 1;
+    for (String alias : readerField.aliases) {
+      CompiledField aliased = writer.fieldsByName.get(alias);
+      if (aliased != null) {
+        if (writerField == null) {
+          writerField = aliased;
+        }
+        matches++;
+      }
+    }
+    if (matches > 1) {
+      throw new AvroRuntimeException(
+          String.format("Reader record field %s matches multiple fields in writer record schema %s", readerField.field,
+              writer.schema));
+    }
+    return writerField;
+  }
+
+  private List<Incompatible> checkReaderEnumContainsAllWriterEnumSymbols(
+      Node reader,
+      Node writer,
+      Deque<String> location) {
+    Set<String> missing = null;
+    for (String symbol : writer.schema.getEnumSymbols()) {
+      if (!reader.symbols.contains(symbol)) {
+        if (missing == null) {
+          missing = new TreeSet<>();
+        }
+        missing.add(symbol);
+        if (verdictOnly) {
+          break;
+        }
+      }
+    }
+    if (missing == null) {
+      return COMPATIBLE;
+    }
+    if (reader.enumDefault != null && reader.symbols.contains(reader.enumDefault)) {
+      return COMPATIBLE;
+    }
+    if (verdictOnly) {
+      return VERDICTS.get(MISSING_ENUM_SYMBOLS);
+    }
+    enter(location, "symbols");
+    List<Incompatible> result = incompatible(MISSING_ENUM_SYMBOLS, reader, writer, missing.toString(), location);
+    exit(location);
+    return result;
+  }
+
+  private List<Incompatible> checkFixedSize(Node reader, Node writer, Deque<String> location) {
+    int actual = reader.fixedSize;
+    int expected = writer.fixedSize;
+    if (actual == expected) {
+      return COMPATIBLE;
+    }
+    if (verdictOnly) {
+      return VERDICTS.get(FIXED_SIZE_MISMATCH);
+    }
+    enter(location, "size");
+    List<Incompatible> result = incompatible(FIXED_SIZE_MISMATCH, reader, writer,
+        "expected: " + expected + ", found: " + actual, location);
+    exit(location);
+    return result;
+  }
+
+  /** Compares interned names by identity, otherwise as {@link SchemaCompatibility#schemaNameEquals} does. */
+  List<Incompatible> checkSchemaNames(Node reader, Node writer, Deque<String> location) {
+    if (reader.name == writer.name || reader.aliases.contains(writer.name)) {
+      return COMPATIBLE;
+    }
+    if (verdictOnly) {
+      return VERDICTS.get(NAME_MISMATCH);
+    }
+    enter(location, "name");
+    List<Incompatible> result = incompatible(NAME_MISMATCH, reader, writer, "expected: " + writer.name,
+        location);
+    exit(location);
+    return result;
+  }
+
+  private List<Incompatible> typeMismatch(Node reader, Node writer, Deque<String> location) {
+    if (verdictOnly) {
+      return VERDICTS.get(TYPE_MISMATCH);
+    }
+    return incompatible(TYPE_MISMATCH, reader, writer,
+        "reader type: " + reader.type + " not compatible with writer type: " + writer.type, location);
+  }
+
+  List<Incompatible> missingUnionBranch(Node reader, Node writer, Type missing, Deque<String> location) {
+    if (verdictOnly) {
+      return VERDICTS.get(MISSING_UNION_BRANCH);
+    }
+    return incompatible(MISSING_UNION_BRANCH, reader, writer, "reader union lacking writer type: " + missing,
+        location);
+  }
+
+  private List<Incompatible> incompatible(
+      SchemaIncompatibilityType type,
+      Node reader,
+      Node writer,
+      String message,
+      Deque<String> location) {
+    if (speculating == 0) {
+      reported++;
+    }
+    List<String> path = new ArrayList<>(location.size());
+    for (Iterator<String> tokens = location.descendingIterator(); tokens.hasNext();) {
+      path.add(tokens.next());
+    }
+    return Collections.singletonList(new Incompatible(type, reader.schema, writer.schema, message,
+        Collections.unmodifiableList(path)));
+  }
+
+  /** @return {@code true} if no further incompatibilities need be collected. */
+  boolean isDone(List<Incompatible> result) {
+    if (verdictOnly) {
+      return !result.isEmpty();
+    }
+    return reported >= maximumIncompatibilities;
+  }
+
+  static List<Incompatible> merge(List<Incompatible> first, List<Incompatible> second) {
+    if (second.isEmpty()) {
+      return first;
+    }
+    if (first.isEmpty()) {
+      return second;
+    }
+    List<Incompatible> merged = new ArrayList<>(first.size() + second.size());
+    merged.addAll(first);
+    merged.addAll(second);
+    return merged;
+  }
+
+  static void enter(Deque<String> location, String token) {
+    if (location != null) {
+      location.addFirst(token);
+    }
+  }
+
+  static void enter(Deque<String> location, int index) {
+    if (location != null) {
+      location.addFirst(Integer.toString(index));
+    }
+  }
+
+  static void exit(Deque<String> location) {
+    if (location != null) {
+      location.removeFirst();
+    }
+  }
+
+  /** An incompatibility that has been found but not yet converted to Avro's representation. */
+  static final class Incompatible {
+    private final SchemaIncompatibilityType type;
+    private final Schema reader;
+    private final Schema writer;
+    private final String message;
+    private final List<String> location;
+
+    private Incompatible(
+        SchemaIncompatibilityType type,
+        Schema reader,
+        Schema writer,
+        String message,
+        List<String> location) {
+      this.type = type;
+      this.reader = reader;
+      this.writer = writer;
+      this.message = message;
+      this.location = location;
+    }
+
+    private SchemaCompatibilityResult toResult() {
+      return SchemaCompatibilityResult.incompatible(type, reader, writer, message, location);
+    }
+  }
+
+  /**
+   * The verdict of a pair of named types, held relative to the pair so that it can be re-based onto any pair with the
+   * same fingerprints. Locations omit the tokens leading to the pair, and fragments are held as paths of child indices
+   * from the reader or writer type.
+   */
+  static final class SharedSubtree {
+    /** The verdict when there are no locations or fragments to re-base. */
+    private final List<Incompatible> result;
+    private final List<SharedIncompatible> incompatibilities;
+
+    private SharedSubtree(List<Incompatible> result, List<SharedIncompatible> incompatibilities) {
+      this.result = result;
+      this.incompatibilities = incompatibilities;
+    }
+
+    /** @return the relative form of the result, or {@code null} if it cannot be re-based. */
+    private static SharedSubtree relativeTo(
+        List<Incompatible> result,
+        Schema reader,
+        Schema writer,
+        Deque<String> location) {
+      List<String> prefix = new ArrayList<>(location.size());
+      for (Iterator<String> tokens = location.descendingIterator(); tokens.hasNext();) {
+        prefix.add(tokens.next());
+      }
+      List<SharedIncompatible> incompatibilities = new ArrayList<>(result.size());
+      for (Incompatible incompatible : result) {
+        List<String> path = incompatible.location;
+        if (path.size() < prefix.size() || !path.subList(0, prefix.size()).equals(prefix)) {
+          return null;
+        }
+        int[] readerPath = PairEncoding.pathTo(incompatible.reader, reader);
+        int[] writerPath = PairEncoding.pathTo(incompatible.writer, writer);
+        if (readerPath == null || writerPath == null) {
+          return null;
+        }
+        incompatibilities.add(new SharedIncompatible(incompatible.type, incompatible.message,
+            new ArrayList<>(path.subList(prefix.size(), path.size())), readerPath, writerPath));
+      }
+      return new SharedSubtree(null, incompatibilities);
+    }
+
+    private List<Incompatible> rebase(Schema reader, Schema writer, Deque<String> location) {
+      if (incompatibilities == null) {
+        return result;
+      }
+      List<Incompatible> rebased = new ArrayList<>(incompatibilities.size());
+      for (SharedIncompatible incompatibility : incompatibilities) {
+        List<String> path = new ArrayList<>(location.size() + incompatibility.relativeLocation.size());
+        for (Iterator<String> tokens = location.descendingIterator(); tokens.hasNext();) {
+          path.add(tokens.next());
+        }
+        path.addAll(incompatibility.relativeLocation);
+        rebased.add(new Incompatible(incompatibility.type, PairEncoding.follow(reader, incompatibility.readerPath),
+            PairEncoding.follow(writer, incompatibility.writerPath), incompatibility.message,
+            Collections.unmodifiableList(path)));
+      }
+      return rebased;
+    }
+  }
+
+  private static final class SharedIncompatible {
+    private final SchemaIncompatibilityType type;
+    private final String message;
+    private final List<String> relativeLocation;
+    private final int[] readerPath;
+    private final int[] writerPath;
+
+    private SharedIncompatible(
+        SchemaIncompatibilityType type,
+        String message,
+        List<String> relativeLocation,
+        int[] readerPath,
+        int[] writerPath) {
+      this.type = type;
+      this.message = message;
+      this.relativeLocation = relativeLocation;
+      this.readerPath = readerPath;
+      this.writerPath = writerPath;
+    }
+  }
+
+  /** A pair of named schemas, compared by identity. */
+  static final class ReaderWriter {
+    private final Node reader;
+    private final Node writer;
+
+    ReaderWriter(Node reader, Node writer) {
+      this.reader = reader;
+      this.writer = writer;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(reader) ^ System.identityHashCode(writer);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ReaderWriter)) {
+        return false;
+      }
+      ReaderWriter other = (ReaderWriter) obj;
+      return reader == other.reader && writer == other.writer;
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Instant;
+
+import org.apache.avro.Schema;
+
+/**
+ * A schema with the instant at which it was registered, from which {@link SchemaChronology#ofRegistered(java.util.List)
+ * chronologies} that can be {@link ChronologyWindow windowed} by registration time are built.
+ */
+public final class RegisteredSchema {
+
+  private final Schema schema;
+  private final Instant registeredAt;
+
+  private RegisteredSchema(Schema schema, Instant registeredAt) {
+    this.schema = schema;
+    this.registeredAt = registeredAt;
+  }
+
+  public static RegisteredSchema of(Schema schema, Instant registeredAt) {
+    checkNotNull(schema, "Schema cannot be null.");
+    checkNotNull(registeredAt, "Registration instant cannot be null.");
+    return new RegisteredSchema(schema, registeredAt);
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  public Instant getRegisteredAt() {
+    return registeredAt;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * schema.hashCode() + registeredAt.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof RegisteredSchema))
+      return false;
+    RegisteredSchema other = (RegisteredSchema) obj;
+    return schema.equals(other.schema) && registeredAt.equals(other.registeredAt);
+  }
+
+  @Override
+  public String toString() {
+    return "RegisteredSchema [schema=" + schema + ", registeredAt=" + registeredAt + "]";
+  }
+
+}
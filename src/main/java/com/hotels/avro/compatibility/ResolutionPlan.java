@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.ResolvingDecoder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The means to read data written with one schema using another, shared by every consumer of the same pair of schemas.
+ * Plans are retained while memory allows, keyed by the {@link SchemaFingerprints#structuralHash(Schema) structural
+ * hashes} of the writer and reader, so that a consumer that has checked a pair obtains the plan for that pair without
+ * walking the schemas again.
+ * <p>
+ * Avro resolves a writer against a reader by building a {@link ResolvingDecoder}, which walks both schemas. A plan
+ * holds the resolving decoders that it has built and hands idle ones to any thread that reads through it, so the
+ * schemas are walked once for each thread that reads concurrently rather than once for each reader created.
+ * Structural hashes cover default values, which resolution depends on, unlike the compatibility fingerprint.
+ */
+public final class ResolutionPlan {
+
+  private static final Cache<Key, ResolutionPlan> PLANS = CacheBuilder.newBuilder().softValues().build();
+
+  private final Schema writer;
+  private final Schema reader;
+  private final Queue<ResolvingDecoder> idleDecoders = new ConcurrentLinkedQueue<>();
+
+  private ResolutionPlan(Schema writer, Schema reader) {
+    this.writer = writer;
+    this.reader = reader;
+  }
+
+  /**
+   * @return the plan to read data written with the writer schema using the reader schema, which is shared with any
+   *         other caller that requests the plan for structurally equal schemas.
+   */
+  public static ResolutionPlan of(final Schema writer, final Schema reader) {
+    checkNotNull(writer, "Writer schema cannot be null.");
+    checkNotNull(reader, "Reader schema cannot be null.");
+    Key key = new Key(SchemaFingerprints.structuralHash(writer), SchemaFingerprints.structuralHash(reader));
+    try {
+      return PLANS.get(key, new Callable<ResolutionPlan>() {
+        @Override
+        public ResolutionPlan call() {
+          return new ResolutionPlan(writer, reader);
+        }
+      });
+    } catch (ExecutionException e) {
+      throw new UncheckedExecutionException(e.getCause());
+    }
+  }
+
+  public Schema getWriter() {
+    return writer;
+  }
+
+  public Schema getReader() {
+    return reader;
+  }
+
+  /**
+   * @return a reader of generic data that resolves through this plan. Like any {@link GenericDatumReader}, it should
+   *         be used by one thread at a time, but any number may be created. It may be given to a
+   *         {@link org.apache.avro.file.DataFileReader}, which sets the writer schema of the file: this must be
+   *         structurally equal to the writer of the plan.
+   */
+  public <D> DatumReader<D> newDatumReader() {
+    return newDatumReader(GenericData.get());
+  }
+
+  /**
+   * @param data the model through which data is read, for example one with logical type conversions.
+   */
+  public <D> DatumReader<D> newDatumReader(GenericData data) {
+    checkNotNull(data, "Data model cannot be null.");
+    return new PlannedDatumReader<>(this, data);
+  }
+
+  private ResolvingDecoder acquire() {
+    ResolvingDecoder decoder = idleDecoders.poll();
+    if (decoder != null) {
+      return decoder;
+    }
+    try {
+      return DecoderFactory.get().resolvingDecoder(writer, reader, null);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot resolve writer schema against reader schema.", e);
+    }
+  }
+
+  private void release(ResolvingDecoder decoder) {
+    idleDecoders.offer(decoder);
+  }
+
+  @Override
+  public String toString() {
+    return "ResolutionPlan [writer=" + writer + ", reader=" + reader + "]";
+  }
+
+  /** Reads as {@link GenericDatumReader} does, with a resolving decoder borrowed from the plan for each datum. */
+  private static final class PlannedDatumReader<D> extends GenericDatumReader<D> {
+    private final ResolutionPlan plan;
+
+    private PlannedDatumReader(ResolutionPlan plan, GenericData data) {
+      super(plan.writer, plan.reader, data);
+      this.plan = plan;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public D read(D reuse, Decoder in) throws IOException {
+      ResolvingDecoder resolver = plan.acquire();
+      resolver.configure(in);
+      D result = (D) read(reuse, plan.reader, resolver);
+      resolver.drain();
+      // A decoder is returned only once it has read a whole datum, so that idle decoders are never part way through
+      plan.release(resolver);
+      return result;
+    }
+
+    @Override
+    public void setSchema(Schema writer) {
+      // Data files set the writer schema from their header, which is accepted if it is the writer of the plan
+      if (SchemaFingerprints.structuralHash(writer) != SchemaFingerprints.structuralHash(plan.writer)) {
+        throw new UnsupportedOperationException("The writer schema of a planned reader is fixed by its plan.");
+      }
+    }
+
+    @Override
+    public void setExpected(Schema reader) {
+      throw new UnsupportedOperationException("The reader schema of a planned reader is fixed by its plan.");
+    }
+  }
+
+  private static final class Key {
+    private final long writerHash;
+    private final long readerHash;
+
+    private Key(long writerHash, long readerHash) {
+      this.writerHash = writerHash;
+      this.readerHash = readerHash;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(writerHash * 0x9E3779B97F4A7C15L ^ readerHash);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return writerHash == other.writerHash && readerHash == other.readerHash;
+    }
+  }
+
+}
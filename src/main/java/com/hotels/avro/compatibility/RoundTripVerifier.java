@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.avro.Conversions;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityResult;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+import com.hotels.avro.compatibility.RandomDatumGenerator.UnboundedSchemaException;
+
+/**
+ * Confirms compatible verdicts empirically: random datums are written with the writer schema of each pair and read
+ * back with the reader schema, and any datum that cannot be read is reported as an incompatibility at the root of the
+ * pair. This catches behaviour that static checks do not model, for example values of the writer type that fall
+ * outside the range of a logical type of the reader.
+ * <p>
+ * Each thread holds its own encoder, decoder, generator and direct buffer, which are reused for every datum, so
+ * verification allocates little beyond the datums themselves. Datums are seeded by the fingerprints of each pair, so
+ * a pair is verified with the same datums however often, and on whichever thread, it is checked. Verification runs
+ * after any {@link CompatibilityCache cache} or {@link VerdictStore store} is consulted, which hold static verdicts
+ * only.
+ */
+public final class RoundTripVerifier {
+
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private static final GenericData WRITER_DATA = GenericData.get();
+  /** Reads logical types as their converted values, so that out of range values are found. */
+  private static final GenericData READER_DATA = new GenericData();
+
+  static {
+    READER_DATA.addLogicalTypeConversion(new Conversions.DecimalConversion());
+    READER_DATA.addLogicalTypeConversion(new Conversions.UUIDConversion());
+    READER_DATA.addLogicalTypeConversion(new TimeConversions.DateConversion());
+    READER_DATA.addLogicalTypeConversion(new TimeConversions.TimeMillisConversion());
+    READER_DATA.addLogicalTypeConversion(new TimeConversions.TimeMicrosConversion());
+    READER_DATA.addLogicalTypeConversion(new TimeConversions.TimestampMillisConversion());
+    READER_DATA.addLogicalTypeConversion(new TimeConversions.TimestampMicrosConversion());
+  }
+
+  private static final ThreadLocal<Codec> CODECS = new ThreadLocal<Codec>() {
+    @Override
+    protected Codec initialValue() {
+      return new Codec();
+    }
+  };
+
+  private final int datumsPerPair;
+  private final long seed;
+
+  /**
+   * @param datumsPerPair the number of random datums written and read for each compatible pair.
+   */
+  public RoundTripVerifier(int datumsPerPair) {
+    this(datumsPerPair, 0L);
+  }
+
+  /**
+   * @param datumsPerPair the number of random datums written and read for each compatible pair.
+   * @param seed combined with the fingerprints of each pair to seed its datums.
+   */
+  public RoundTripVerifier(int datumsPerPair, long seed) {
+    checkArgument(datumsPerPair > 0, "Datums per pair must be positive.");
+    this.datumsPerPair = datumsPerPair;
+    this.seed = seed;
+  }
+
+  public int getDatumsPerPair() {
+    return datumsPerPair;
+  }
+
+  /**
+   * @return the compatibility unchanged unless it is compatible and a datum cannot be read, in which case the pair is
+   *         incompatible. Both directions of a mutual read are verified.
+   */
+  SchemaPairCompatibility verify(CheckType check, SchemaPairCompatibility compatibility, int maximumIncompatibilities) {
+    if (compatibility.getType() != SchemaCompatibilityType.COMPATIBLE) {
+      return compatibility;
+    }
+    Schema reader = compatibility.getReader();
+    Schema writer = compatibility.getWriter();
+    String failure = verify(reader, writer);
+    if (failure == null && check == CheckType.MUTUAL_READ) {
+      failure = verify(writer, reader);
+      if (failure != null) {
+        reader = compatibility.getWriter();
+        writer = compatibility.getReader();
+      }
+    }
+    if (failure == null) {
+      return compatibility;
+    }
+    if (maximumIncompatibilities == CompatibilityConfiguration.VERDICT_ONLY) {
+      SchemaCompatibilityResult result = SchemaCompatibilityResult.incompatible(SchemaIncompatibilityType.TYPE_MISMATCH,
+          reader, writer, null, Collections.singletonList(ReaderWriterChecker.ROOT_REFERENCE_TOKEN));
+      return new SchemaPairCompatibility(result, reader, writer, null);
+    }
+    SchemaCompatibilityResult result = SchemaCompatibilityResult.incompatible(SchemaIncompatibilityType.TYPE_MISMATCH,
+        reader, writer, "datum written with the writer schema could not be read: " + failure,
+        Collections.singletonList(ReaderWriterChecker.ROOT_REFERENCE_TOKEN));
+    return new SchemaPairCompatibility(result, reader, writer,
+        ReaderWriterChecker.describe(SchemaCompatibilityType.INCOMPATIBLE, reader, writer));
+  }
+
+  /** @return a description of the first datum that could not be read, or {@code null} if every datum was read. */
+  private String verify(Schema reader, Schema writer) {
+    Codec codec = CODECS.get();
+    codec.random.setSeed(seed ^ SchemaFingerprints.fingerprint(writer) * 0x9E3779B97F4A7C15L
+        ^ SchemaFingerprints.fingerprint(reader));
+    GenericDatumWriter<Object> datumWriter = new GenericDatumWriter<>(writer, WRITER_DATA);
+    GenericDatumReader<Object> datumReader = new GenericDatumReader<>(writer, reader, READER_DATA);
+    Object written = null;
+    Object read = null;
+    for (int i = 0; i < datumsPerPair; i++) {
+      try {
+        written = codec.generator.next(writer, written);
+      } catch (UnboundedSchemaException e) {
+        return null;
+      }
+      try {
+        codec.write(datumWriter, written);
+      } catch (IOException | RuntimeException e) {
+        throw new IllegalStateException("Generated datum could not be written with schema " + writer + ".", e);
+      }
+      try {
+        read = codec.read(datumReader, read);
+        if (!codec.decoder.isEnd()) {
+          return "datum was not read to its end";
+        }
+      } catch (IOException | RuntimeException e) {
+        return e.toString();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "RoundTripVerifier [datumsPerPair=" + datumsPerPair + ", seed=" + seed + "]";
+  }
+
+  /** The encoder, decoder, generator and buffer of a thread. */
+  private static final class Codec {
+    private final Random random = new Random();
+    private final RandomDatumGenerator generator = new RandomDatumGenerator(random);
+    private final BufferOutputStream out = new BufferOutputStream();
+    private final BufferInputStream in = new BufferInputStream();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+    private BinaryEncoder encoder;
+    private BinaryDecoder decoder;
+
+    private void write(GenericDatumWriter<Object> datumWriter, Object datum) throws IOException {
+      buffer.clear();
+      encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+      datumWriter.write(datum, encoder);
+      encoder.flush();
+      buffer.flip();
+    }
+
+    private Object read(GenericDatumReader<Object> datumReader, Object reuse) throws IOException {
+      decoder = DecoderFactory.get().binaryDecoder(in, decoder);
+      return datumReader.read(reuse, decoder);
+    }
+
+    /** Writes into the buffer of the codec, which is replaced by one of twice the capacity when full. */
+    private final class BufferOutputStream extends OutputStream {
+      @Override
+      public void write(int b) {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        ensureRemaining(len);
+        buffer.put(b, off, len);
+      }
+
+      private void ensureRemaining(int length) {
+        if (buffer.remaining() < length) {
+          ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + length));
+          buffer.flip();
+          grown.put(buffer);
+          buffer = grown;
+        }
+      }
+    }
+
+    /** Reads the datum last written to the buffer of the codec. */
+    private final class BufferInputStream extends InputStream {
+      @Override
+      public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+          return 0;
+        }
+        if (!buffer.hasRemaining()) {
+          return -1;
+        }
+        int count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return buffer.remaining();
+      }
+    }
+  }
+
+}
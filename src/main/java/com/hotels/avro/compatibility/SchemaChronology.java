@@ -0,0 +1,363 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+
+import org.apache.avro.Schema;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+/**
+ * Existing schemas, latest last, that can also be traversed latest first without visiting earlier schemas. Extend this
+ * class to expose lazily loaded histories, so that checks against the latest schemas do not load the whole chronology.
+ */
+public abstract class SchemaChronology implements Iterable<Schema> {
+
+  /**
+   * @param schemasByVersion existing schemas keyed by an ascending version.
+   */
+  public static SchemaChronology of(NavigableMap<?, Schema> schemasByVersion) {
+    checkNotNull(schemasByVersion, "Schemas to compare against cannot be null.");
+    return new NavigableMapChronology(schemasByVersion);
+  }
+
+  /**
+   * @param schemasInOrder existing schemas with the instants at which they were registered, earliest first, which
+   *          supports {@link #registeredAfter(Instant)}.
+   */
+  public static SchemaChronology ofRegistered(List<RegisteredSchema> schemasInOrder) {
+    checkNotNull(schemasInOrder, "Schemas to compare against cannot be null.");
+    return new RegisteredChronology(schemasInOrder);
+  }
+
+  /**
+   * @return the number of schemas in the chronology.
+   */
+  public abstract int size();
+
+  /**
+   * @return an iterator over the schemas in the chronology, latest first.
+   */
+  public abstract Iterator<Schema> latestFirst();
+
+  /**
+   * @return the latest schema, or {@code null} if the chronology is empty.
+   */
+  public Schema latest() {
+    Iterator<Schema> schemas = latestFirst();
+    return schemas.hasNext() ? schemas.next() : null;
+  }
+
+  /**
+   * Override to find the latest schemas without traversing the chronology latest first.
+   *
+   * @return a view of the latest {@code count} schemas of the chronology.
+   */
+  public SchemaChronology last(int count) {
+    checkArgument(count >= 0, "Schema count cannot be negative.");
+    if (count >= size()) {
+      return this;
+    }
+    return new LastChronology(this, count);
+  }
+
+  /**
+   * Override in chronologies that know when their schemas were registered.
+   *
+   * @return a view of the schemas registered strictly after the given instant.
+   * @throws UnsupportedOperationException if the chronology does not know when its schemas were registered.
+   */
+  public SchemaChronology registeredAfter(Instant instant) {
+    throw new UnsupportedOperationException("Registration instants are not known for " + getClass().getName() + ".");
+  }
+
+  /**
+   * Views the supplied schemas as a chronology, copying them only when they cannot be traversed latest first.
+   */
+  static SchemaChronology from(Iterable<Schema> schemasInOrder) {
+    if (schemasInOrder instanceof SchemaChronology) {
+      return (SchemaChronology) schemasInOrder;
+    }
+    if (schemasInOrder instanceof Deque) {
+      return new DequeChronology((Deque<Schema>) schemasInOrder);
+    }
+    if (schemasInOrder instanceof List) {
+      return new ListChronology((List<Schema>) schemasInOrder);
+    }
+    return new ListChronology(Lists.newArrayList(schemasInOrder));
+  }
+
+  /**
+   * Views the supplied schemas as a chronology of their canonical instances, interning each schema as it is visited.
+   */
+  static SchemaChronology interned(Iterable<Schema> schemasInOrder, SchemaInterner interner) {
+    return new InternedChronology(from(schemasInOrder), interner);
+  }
+
+  /**
+   * @return the latest of the supplied schemas, or {@code null} if there are none.
+   */
+  static Schema latestOf(Iterable<Schema> schemasInOrder) {
+    if (schemasInOrder instanceof SchemaChronology
+        || schemasInOrder instanceof Deque
+        || schemasInOrder instanceof List) {
+      return from(schemasInOrder).latest();
+    }
+    Schema latest = null;
+    for (Schema schema : schemasInOrder) {
+      latest = schema;
+    }
+    return latest;
+  }
+
+  private static final class ListChronology extends SchemaChronology {
+    private final List<Schema> schemas;
+
+    private ListChronology(List<Schema> schemas) {
+      this.schemas = schemas;
+    }
+
+    @Override
+    public int size() {
+      return schemas.size();
+    }
+
+    @Override
+    public Iterator<Schema> iterator() {
+      return schemas.iterator();
+    }
+
+    @Override
+    public Iterator<Schema> latestFirst() {
+      return Lists.reverse(schemas).iterator();
+    }
+
+    @Override
+    public SchemaChronology last(int count) {
+      checkArgument(count >= 0, "Schema count cannot be negative.");
+      if (count >= schemas.size()) {
+        return this;
+      }
+      return new ListChronology(schemas.subList(schemas.size() - count, schemas.size()));
+    }
+  }
+
+  private static final class DequeChronology extends SchemaChronology {
+    private final Deque<Schema> schemas;
+
+    private DequeChronology(Deque<Schema> schemas) {
+      this.schemas = schemas;
+    }
+
+    @Override
+    public int size() {
+      return schemas.size();
+    }
+
+    @Override
+    public Iterator<Schema> iterator() {
+      return schemas.iterator();
+    }
+
+    @Override
+    public Iterator<Schema> latestFirst() {
+      return schemas.descendingIterator();
+    }
+
+    @Override
+    public Schema latest() {
+      return schemas.peekLast();
+    }
+  }
+
+  private static final class NavigableMapChronology extends SchemaChronology {
+    private final NavigableMap<?, Schema> schemas;
+
+    private NavigableMapChronology(NavigableMap<?, Schema> schemas) {
+      this.schemas = schemas;
+    }
+
+    @Override
+    public int size() {
+      return schemas.size();
+    }
+
+    @Override
+    public Iterator<Schema> iterator() {
+      return schemas.values().iterator();
+    }
+
+    @Override
+    public Iterator<Schema> latestFirst() {
+      return schemas.descendingMap().values().iterator();
+    }
+
+    @Override
+    public Schema latest() {
+      Entry<?, Schema> latest = schemas.lastEntry();
+      return latest == null ? null : latest.getValue();
+    }
+  }
+
+  private static final class InternedChronology extends SchemaChronology {
+    private final SchemaChronology schemas;
+    private final SchemaInterner interner;
+    private final Function<Schema, Schema> intern;
+
+    private InternedChronology(SchemaChronology schemas, final SchemaInterner interner) {
+      this.schemas = schemas;
+      this.interner = interner;
+      intern = new Function<Schema, Schema>() {
+        @Override
+        public Schema apply(Schema schema) {
+          return interner.intern(schema);
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return schemas.size();
+    }
+
+    @Override
+    public Iterator<Schema> iterator() {
+      return Iterators.transform(schemas.iterator(), intern);
+    }
+
+    @Override
+    public Iterator<Schema> latestFirst() {
+      return Iterators.transform(schemas.latestFirst(), intern);
+    }
+
+    @Override
+    public Schema latest() {
+      Schema latest = schemas.latest();
+      return latest == null ? null : intern.apply(latest);
+    }
+
+    @Override
+    public SchemaChronology last(int count) {
+      return new InternedChronology(schemas.last(count), interner);
+    }
+
+    @Override
+    public SchemaChronology registeredAfter(Instant instant) {
+      return new InternedChronology(schemas.registeredAfter(instant), interner);
+    }
+  }
+
+  private static final class LastChronology extends SchemaChronology {
+    private final SchemaChronology schemas;
+    private final int count;
+
+    private LastChronology(SchemaChronology schemas, int count) {
+      this.schemas = schemas;
+      this.count = count;
+    }
+
+    @Override
+    public int size() {
+      return count;
+    }
+
+    @Override
+    public Iterator<Schema> iterator() {
+      List<Schema> latestFirst = new ArrayList<>(count);
+      Iterators.addAll(latestFirst, latestFirst());
+      return Lists.reverse(latestFirst).iterator();
+    }
+
+    @Override
+    public Iterator<Schema> latestFirst() {
+      return Iterators.limit(schemas.latestFirst(), count);
+    }
+
+    @Override
+    public Schema latest() {
+      return count == 0 ? null : schemas.latest();
+    }
+  }
+
+  /** Registration instants are assumed to ascend, so that windows are found by binary search. */
+  private static final class RegisteredChronology extends SchemaChronology {
+    private final List<RegisteredSchema> schemas;
+
+    private RegisteredChronology(List<RegisteredSchema> schemas) {
+      this.schemas = schemas;
+    }
+
+    @Override
+    public int size() {
+      return schemas.size();
+    }
+
+    @Override
+    public Iterator<Schema> iterator() {
+      return Iterators.transform(schemas.iterator(), SCHEMA);
+    }
+
+    @Override
+    public Iterator<Schema> latestFirst() {
+      return Iterators.transform(Lists.reverse(schemas).iterator(), SCHEMA);
+    }
+
+    @Override
+    public SchemaChronology last(int count) {
+      checkArgument(count >= 0, "Schema count cannot be negative.");
+      if (count >= schemas.size()) {
+        return this;
+      }
+      return new RegisteredChronology(schemas.subList(schemas.size() - count, schemas.size()));
+    }
+
+    @Override
+    public SchemaChronology registeredAfter(Instant instant) {
+      checkNotNull(instant, "Instant cannot be null.");
+      int low = 0;
+      int high = schemas.size();
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (schemas.get(middle).getRegisteredAt().isAfter(instant)) {
+          high = middle;
+        } else {
+          low = middle + 1;
+        }
+      }
+      return low == 0 ? this : new RegisteredChronology(schemas.subList(low, schemas.size()));
+    }
+
+    private static final Function<RegisteredSchema, Schema> SCHEMA = new Function<RegisteredSchema, Schema>() {
+      @Override
+      public Schema apply(RegisteredSchema schema) {
+        return schema.getSchema();
+      }
+    };
+  }
+
+}
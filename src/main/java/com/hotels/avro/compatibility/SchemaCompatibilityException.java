@@ -15,31 +15,49 @@
  */
 package com.hotels.avro.compatibility;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.util.Collections;
 
+/**
+ * Thrown when a compatibility check fails. The message is rendered once, when first requested, within the
+ * {@link MessageLimits} given when the exception was thrown, {@link MessageLimits#DEFAULT} unless otherwise specified.
+ */
 public class SchemaCompatibilityException extends Exception {
 
   private static final long serialVersionUID = 1L;
 
   private final ChronologyCompatibilityCheckResult chronologyResult;
+  private final MessageLimits limits;
+  private String message;
 
   SchemaCompatibilityException(ChronologyCompatibilityCheckResult chronologyResult) {
+    this(chronologyResult, MessageLimits.DEFAULT);
+  }
+
+  SchemaCompatibilityException(ChronologyCompatibilityCheckResult chronologyResult, MessageLimits limits) {
     this.chronologyResult = chronologyResult;
+    this.limits = checkNotNull(limits, "Message limits cannot be null.");
   }
 
   SchemaCompatibilityException(CompatibilityCheckResult compatibilityResult) {
-    this(new ChronologyCompatibilityCheckResult(compatibilityResult.getCompatibility(), compatibilityResult.getChronology(),
-        Collections.singletonList(compatibilityResult)));
+    this(compatibilityResult, MessageLimits.DEFAULT);
+  }
+
+  SchemaCompatibilityException(CompatibilityCheckResult compatibilityResult, MessageLimits limits) {
+    this(new ChronologyCompatibilityCheckResult(compatibilityResult.getCompatibility(),
+        compatibilityResult.getChronology(), Collections.singletonList(compatibilityResult)), limits);
   }
 
+  @Override
   public String getMessage() {
-    switch (chronologyResult.getChronology()) {
-    case LATEST:
-      return chronologyResult.getResults().get(0).toString();
-    case ALL:
-      return chronologyResult.asMessage();
+    // Races only render the same message more than once
+    String rendered = message;
+    if (rendered == null) {
+      rendered = chronologyResult.asMessage(limits);
+      message = rendered;
     }
-    throw new IllegalStateException("Unexpected chronology: " + chronologyResult.getChronology()) ;
+    return rendered;
   }
 
 }
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.SchemaNormalization;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * 64-bit fingerprints of the compatibility canonical form of schemas, memoized per {@link Schema} instance. Schemas
+ * with the same fingerprint are interchangeable in any compatibility check.
+ * <p>
+ * The parsing canonical form cannot be used for this as it strips aliases, which affect compatibility. Instead the
+ * compatibility form retains full names, aliases, fields, symbols, sizes, enum defaults and whether each field has a
+ * default. Documentation, custom properties, logical types and default values are dropped as they play no part in a
+ * check.
+ * <p>
+ * Structural hashes of the full form of schemas are memoized alongside, so that schemas can be found by structure
+ * without Avro's {@link Schema#hashCode()} and {@link Schema#equals(Object)} walking each schema again.
+ */
+public final class SchemaFingerprints {
+
+  /** Weak keys are compared by identity, so equal but distinct schemas are fingerprinted separately. */
+  private static final LoadingCache<Schema, Long> FINGERPRINTS = CacheBuilder
+      .newBuilder()
+      .weakKeys()
+      .build(new CacheLoader<Schema, Long>() {
+        @Override
+        public Long load(Schema schema) {
+          String form = compatibilityForm(schema);
+          return SchemaNormalization.fingerprint64(form.getBytes(StandardCharsets.UTF_8));
+        }
+      });
+
+  /** Weak keys are compared by identity, as for fingerprints. */
+  private static final LoadingCache<Schema, Long> STRUCTURAL_HASHES = CacheBuilder
+      .newBuilder()
+      .weakKeys()
+      .build(new CacheLoader<Schema, Long>() {
+        @Override
+        public Long load(Schema schema) {
+          return SchemaNormalization.fingerprint64(schema.toString().getBytes(StandardCharsets.UTF_8));
+        }
+      });
+
+  private SchemaFingerprints() {}
+
+  /**
+   * @return the fingerprint of the compatibility form of the schema.
+   */
+  public static long fingerprint(Schema schema) {
+    checkNotNull(schema, "Schema to be fingerprinted cannot be null.");
+    return FINGERPRINTS.getUnchecked(schema);
+  }
+
+  /**
+   * @return a 64-bit hash of the full JSON form of the schema, including the documentation, custom properties and
+   *         default values that the fingerprint ignores.
+   */
+  public static long structuralHash(Schema schema) {
+    checkNotNull(schema, "Schema to be hashed cannot be null.");
+    return STRUCTURAL_HASHES.getUnchecked(schema);
+  }
+
+  static String compatibilityForm(Schema schema) {
+    StringBuilder form = new StringBuilder();
+    appendForm(form, schema, new HashSet<String>());
+    return form.toString();
+  }
+
+  private static void appendForm(StringBuilder form, Schema schema, Set<String> named) {
+    switch (schema.getType()) {
+    case RECORD:
+      if (appendName(form, schema, named)) {
+        form.append(",\"fields\":[");
+        boolean first = true;
+        for (Field field : schema.getFields()) {
+          if (first) {
+            first = false;
+          } else {
+            form.append(',');
+          }
+          form.append("{\"name\":\"").append(field.name()).append('"');
+          appendAliases(form, field.aliases());
+          form.append(",\"type\":");
+          appendForm(form, field.schema(), named);
+          if (field.hasDefaultValue()) {
+            form.append(",\"default\":true");
+          }
+          form.append('}');
+        }
+        form.append("]}");
+      }
+      return;
+    case ENUM:
+      if (appendName(form, schema, named)) {
+        form.append(",\"symbols\":[");
+        boolean first = true;
+        for (String symbol : schema.getEnumSymbols()) {
+          if (first) {
+            first = false;
+          } else {
+            form.append(',');
+          }
+          form.append('"').append(symbol).append('"');
+        }
+        form.append(']');
+        if (schema.getEnumDefault() != null) {
+          form.append(",\"default\":\"").append(schema.getEnumDefault()).append('"');
+        }
+        form.append('}');
+      }
+      return;
+    case FIXED:
+      if (appendName(form, schema, named)) {
+        form.append(",\"size\":").append(schema.getFixedSize()).append('}');
+      }
+      return;
+    case ARRAY:
+      form.append("{\"type\":\"array\",\"items\":");
+      appendForm(form, schema.getElementType(), named);
+      form.append('}');
+      return;
+    case MAP:
+      form.append("{\"type\":\"map\",\"values\":");
+      appendForm(form, schema.getValueType(), named);
+      form.append('}');
+      return;
+    case UNION:
+      form.append('[');
+      boolean first = true;
+      for (Schema branch : schema.getTypes()) {
+        if (first) {
+          first = false;
+        } else {
+          form.append(',');
+        }
+        appendForm(form, branch, named);
+      }
+      form.append(']');
+      return;
+    default:
+      form.append('"').append(schema.getName()).append('"');
+    }
+  }
+
+  /**
+   * Appends the opening of a named type, or a reference if the type has already been written.
+   *
+   * @return {@code true} if the body of the type must follow.
+   */
+  private static boolean appendName(StringBuilder form, Schema schema, Set<String> named) {
+    if (!named.add(schema.getFullName())) {
+      form.append('"').append(schema.getFullName()).append('"');
+      return false;
+    }
+    form
+        .append("{\"name\":\"")
+        .append(schema.getFullName())
+        .append("\",\"type\":\"")
+        .append(schema.getType().getName())
+        .append('"');
+    appendAliases(form, schema.getAliases());
+    return true;
+  }
+
+  private static void appendAliases(StringBuilder form, Collection<String> aliases) {
+    if (aliases.isEmpty()) {
+      return;
+    }
+    form.append(",\"aliases\":[");
+    boolean first = true;
+    for (String alias : new TreeSet<>(aliases)) {
+      if (first) {
+        first = false;
+      } else {
+        form.append(',');
+      }
+      form.append('"').append(alias).append('"');
+    }
+    form.append(']');
+  }
+
+}
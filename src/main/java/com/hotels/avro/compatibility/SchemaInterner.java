@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.avro.Schema;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Replaces schemas with one canonical instance per structure, so that schemas parsed repeatedly, for example from
+ * registry payloads, share one instance rather than each holding its own copy. Schemas are identified by their
+ * {@link SchemaFingerprints#structuralHash(Schema) structural hash}, which covers documentation and custom properties,
+ * so the canonical instance can always stand in for the schemas it replaces.
+ * <p>
+ * The fingerprint and structural hash of each canonical instance are computed when it is interned and memoized for
+ * that instance, as is its {@link CompiledSchema compiled form} once checked, so that every check of an interned schema
+ * reuses them. Canonical instances are held weakly, and are discarded once no longer used elsewhere. Configure an
+ * interner with {@link CompatibilityConfiguration.Builder#interner(SchemaInterner)} to intern the schemas supplied to
+ * every check.
+ */
+public final class SchemaInterner {
+
+  private final ConcurrentMap<Long, Schema> canonical = CacheBuilder
+      .newBuilder()
+      .weakValues()
+      .<Long, Schema> build()
+      .asMap();
+
+  /**
+   * @return the canonical instance of the schema, which is the schema itself if no equal schema has been interned.
+   */
+  public Schema intern(Schema schema) {
+    checkNotNull(schema, "Schema to be interned cannot be null.");
+    long structuralHash = SchemaFingerprints.structuralHash(schema);
+    Schema existing = canonical.putIfAbsent(structuralHash, schema);
+    if (existing == null) {
+      SchemaFingerprints.fingerprint(schema);
+      return schema;
+    }
+    if (existing == schema || existing.equals(schema)) {
+      return existing;
+    }
+    // A hash collision, so the schema is used as supplied
+    return schema;
+  }
+
+  /**
+   * @return the approximate number of canonical instances held.
+   */
+  public int size() {
+    return canonical.size();
+  }
+
+}
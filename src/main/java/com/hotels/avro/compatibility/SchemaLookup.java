@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+
+/**
+ * Resolves schemas by their {@link SchemaFingerprints fingerprints}, typically from a registry or other store that
+ * already holds them. {@link CompatibilityCheckResult#compact(SchemaLookup) Compact results} use a lookup to resolve
+ * the schemas that they do not retain.
+ */
+public interface SchemaLookup {
+
+  /**
+   * @return a schema with the given fingerprint, or {@code null} if none is known.
+   */
+  Schema lookup(long fingerprint);
+
+  /**
+   * @return a lookup of the given schemas, which are held strongly by the lookup.
+   */
+  static SchemaLookup of(Iterable<Schema> schemas) {
+    checkNotNull(schemas, "Schemas cannot be null.");
+    final Map<Long, Schema> schemasByFingerprint = new HashMap<>();
+    for (Schema schema : schemas) {
+      checkNotNull(schema, "Schema cannot be null.");
+      schemasByFingerprint.put(SchemaFingerprints.fingerprint(schema), schema);
+    }
+    return new SchemaLookup() {
+      @Override
+      public Schema lookup(long fingerprint) {
+        return schemasByFingerprint.get(fingerprint);
+      }
+    };
+  }
+
+}
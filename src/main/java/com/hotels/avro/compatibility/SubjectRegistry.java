@@ -0,0 +1,372 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.avro.Schema;
+
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+/**
+ * A thread safe, in memory registry of versioned schema histories, keyed by subject. Each subject has a {@link Mode}
+ * against which new schemas are checked before they are registered. The fingerprint of each registered schema is
+ * retained with it, so that it is computed once however often the history is checked.
+ * <p>
+ * Each subject is held as an immutable snapshot, so reads take no locks and see a consistent history. Registration is
+ * optimistic: a schema is checked against the current snapshot without blocking other threads, and registered only if
+ * the snapshot is unchanged, otherwise it is checked again against the new snapshot. A schema is therefore never
+ * registered without having been checked against every version that precedes it.
+ * <p>
+ * The instant at which each version was registered is retained, so that subjects may be checked with a
+ * {@link ChronologyWindow} bounded by registration time.
+ */
+public final class SubjectRegistry {
+
+  private final ConcurrentMap<String, Subject> subjects = new ConcurrentHashMap<>();
+  private final Mode defaultMode;
+  private final CompatibilityConfiguration configuration;
+  private final Clock clock;
+
+  /**
+   * @param defaultMode the mode of subjects for which no other mode has been set.
+   */
+  public SubjectRegistry(Mode defaultMode) {
+    this(defaultMode, CompatibilityConfiguration.DEFAULT);
+  }
+
+  /**
+   * @param defaultMode the mode of subjects for which no other mode has been set.
+   * @param configuration the configuration of every check made by the registry.
+   */
+  public SubjectRegistry(Mode defaultMode, CompatibilityConfiguration configuration) {
+    this(defaultMode, configuration, Clock.systemUTC());
+  }
+
+  SubjectRegistry(Mode defaultMode, CompatibilityConfiguration configuration, Clock clock) {
+    this.defaultMode = checkNotNull(defaultMode, "Default mode cannot be null.");
+    this.configuration = checkNotNull(configuration, "Configuration cannot be null.");
+    this.clock = checkNotNull(clock, "Clock cannot be null.");
+  }
+
+  /**
+   * Checks the schema against the history of the subject using the mode of the subject and registers it as the next
+   * version if it is compatible. A schema equal to one already registered is not checked again, and keeps its version.
+   */
+  public Registration register(String subject, Schema schema) {
+    checkNotNull(subject, "Subject cannot be null.");
+    checkNotNull(schema, "Schema to be registered cannot be null.");
+    SchemaInterner interner = configuration.getInterner();
+    if (interner != null) {
+      schema = interner.intern(schema);
+    }
+    while (true) {
+      Subject current = subjects.get(subject);
+      Subject snapshot = current == null ? new Subject(defaultMode, Subject.NO_VERSIONS) : current;
+      int existingVersion = snapshot.find(schema);
+      if (existingVersion > 0) {
+        return new Registration(existingVersion, false, null);
+      }
+      ChronologyCompatibilityCheckResult result = snapshot.mode.check(schema, snapshot.chronology, configuration);
+      if (!result.isCompatible()) {
+        return new Registration(-1, false, result);
+      }
+      Subject updated = snapshot.append(schema, clock.instant());
+      boolean swapped = current == null
+          ? subjects.putIfAbsent(subject, updated) == null
+          : subjects.replace(subject, current, updated);
+      if (swapped) {
+        return new Registration(updated.versions.length, true, result);
+      }
+    }
+  }
+
+  /**
+   * Checks the schema against the history of the subject using the mode of the subject, without registering it.
+   */
+  public ChronologyCompatibilityCheckResult check(String subject, Schema schema) {
+    checkNotNull(subject, "Subject cannot be null.");
+    checkNotNull(schema, "Schema to be checked cannot be null.");
+    Subject snapshot = subjects.get(subject);
+    if (snapshot == null) {
+      return defaultMode.check(schema, Collections.<Schema> emptyList(), configuration);
+    }
+    return snapshot.mode.check(schema, snapshot.chronology, configuration);
+  }
+
+  /**
+   * Sets the mode against which future registrations to the subject are checked. Schemas already registered are not
+   * checked again.
+   */
+  public void setMode(String subject, Mode mode) {
+    checkNotNull(subject, "Subject cannot be null.");
+    checkNotNull(mode, "Mode cannot be null.");
+    while (true) {
+      Subject current = subjects.get(subject);
+      if (current == null) {
+        if (subjects.putIfAbsent(subject, new Subject(mode, Subject.NO_VERSIONS)) == null) {
+          return;
+        }
+      } else if (current.mode == mode || subjects.replace(subject, current, new Subject(mode, current.versions))) {
+        return;
+      }
+    }
+  }
+
+  public Mode getMode(String subject) {
+    checkNotNull(subject, "Subject cannot be null.");
+    Subject snapshot = subjects.get(subject);
+    return snapshot == null ? defaultMode : snapshot.mode;
+  }
+
+  /**
+   * @return the subjects for which a schema has been registered or a mode set.
+   */
+  public Set<String> getSubjects() {
+    return Collections.unmodifiableSet(subjects.keySet());
+  }
+
+  /**
+   * @return an immutable snapshot of the schemas registered to the subject, earliest version first, which is empty if
+   *         none have been registered.
+   */
+  public SchemaChronology getChronology(String subject) {
+    checkNotNull(subject, "Subject cannot be null.");
+    Subject snapshot = subjects.get(subject);
+    return snapshot == null ? new VersionChronology(Subject.NO_VERSIONS) : snapshot.chronology;
+  }
+
+  /**
+   * @return the latest version registered to the subject, or {@code 0} if none has been registered.
+   */
+  public int getLatestVersion(String subject) {
+    checkNotNull(subject, "Subject cannot be null.");
+    Subject snapshot = subjects.get(subject);
+    return snapshot == null ? 0 : snapshot.versions.length;
+  }
+
+  /**
+   * @param version a version number, starting from {@code 1}.
+   * @return the schema registered as the version, or {@code null} if there is no such version.
+   */
+  public Schema getSchema(String subject, int version) {
+    checkNotNull(subject, "Subject cannot be null.");
+    checkArgument(version > 0, "Version must be positive.");
+    Subject snapshot = subjects.get(subject);
+    if (snapshot == null || version > snapshot.versions.length) {
+      return null;
+    }
+    return snapshot.versions[version - 1].schema;
+  }
+
+  /**
+   * @return the version with which a schema equal to the given schema was registered, or {@code 0} if there is none.
+   */
+  public int getVersion(String subject, Schema schema) {
+    checkNotNull(subject, "Subject cannot be null.");
+    checkNotNull(schema, "Schema cannot be null.");
+    Subject snapshot = subjects.get(subject);
+    return snapshot == null ? 0 : snapshot.find(schema);
+  }
+
+  /** The outcome of a registration. */
+  public static final class Registration {
+    private final int version;
+    private final boolean added;
+    private final ChronologyCompatibilityCheckResult result;
+
+    private Registration(int version, boolean added, ChronologyCompatibilityCheckResult result) {
+      this.version = version;
+      this.added = added;
+      this.result = result;
+    }
+
+    /**
+     * @return {@code true} if the schema was registered by this call or had already been registered.
+     */
+    public boolean isRegistered() {
+      return version > 0;
+    }
+
+    /**
+     * @return {@code true} if the schema was registered as a new version by this call.
+     */
+    public boolean isAdded() {
+      return added;
+    }
+
+    /**
+     * @return the version of the schema, or {@code -1} if it was rejected as incompatible.
+     */
+    public int getVersion() {
+      return version;
+    }
+
+    /**
+     * @return the result of checking the schema, or {@code null} if the schema had already been registered and so was
+     *         not checked.
+     */
+    public ChronologyCompatibilityCheckResult getResult() {
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "Registration [version=" + version + ", added=" + added + ", result=" + result + "]";
+    }
+  }
+
+  /** An immutable snapshot of the history and mode of a subject. */
+  private static final class Subject {
+    private static final Version[] NO_VERSIONS = new Version[0];
+
+    private final Mode mode;
+    private final Version[] versions;
+    private final SchemaChronology chronology;
+
+    private Subject(Mode mode, Version[] versions) {
+      this.mode = mode;
+      this.versions = versions;
+      chronology = new VersionChronology(versions);
+    }
+
+    /** @return the version of an equal schema, or {@code 0} if there is none. */
+    private int find(Schema schema) {
+      long fingerprint = SchemaFingerprints.fingerprint(schema);
+      for (int i = versions.length - 1; i >= 0; i--) {
+        Version version = versions[i];
+        if (version.fingerprint == fingerprint && version.schema.equals(schema)) {
+          return i + 1;
+        }
+      }
+      return 0;
+    }
+
+    /** Registration instants never precede that of the previous version, even if the clock is set back. */
+    private Subject append(Schema schema, Instant now) {
+      Version[] appended = Arrays.copyOf(versions, versions.length + 1);
+      Instant registeredAt = versions.length == 0 || now.isAfter(versions[versions.length - 1].registeredAt)
+          ? now
+          : versions[versions.length - 1].registeredAt;
+      appended[versions.length] = new Version(schema, registeredAt);
+      return new Subject(mode, appended);
+    }
+  }
+
+  /** A registered schema, with its fingerprint and registration instant. */
+  private static final class Version {
+    private final Schema schema;
+    private final long fingerprint;
+    private final Instant registeredAt;
+
+    private Version(Schema schema, Instant registeredAt) {
+      this.schema = schema;
+      this.registeredAt = registeredAt;
+      fingerprint = SchemaFingerprints.fingerprint(schema);
+    }
+  }
+
+  private static final class VersionChronology extends SchemaChronology {
+    private final Version[] versions;
+
+    private VersionChronology(Version[] versions) {
+      this.versions = versions;
+    }
+
+    @Override
+    public int size() {
+      return versions.length;
+    }
+
+    @Override
+    public Iterator<Schema> iterator() {
+      return new VersionIterator(versions, 0, 1);
+    }
+
+    @Override
+    public Iterator<Schema> latestFirst() {
+      return new VersionIterator(versions, versions.length - 1, -1);
+    }
+
+    @Override
+    public Schema latest() {
+      return versions.length == 0 ? null : versions[versions.length - 1].schema;
+    }
+
+    @Override
+    public SchemaChronology last(int count) {
+      checkArgument(count >= 0, "Schema count cannot be negative.");
+      if (count >= versions.length) {
+        return this;
+      }
+      return new VersionChronology(Arrays.copyOfRange(versions, versions.length - count, versions.length));
+    }
+
+    @Override
+    public SchemaChronology registeredAfter(Instant instant) {
+      checkNotNull(instant, "Instant cannot be null.");
+      int first = versions.length;
+      while (first > 0 && versions[first - 1].registeredAt.isAfter(instant)) {
+        first--;
+      }
+      return first == 0 ? this : new VersionChronology(Arrays.copyOfRange(versions, first, versions.length));
+    }
+  }
+
+  private static final class VersionIterator implements Iterator<Schema> {
+    private final Version[] versions;
+    private final int step;
+    private int next;
+
+    private VersionIterator(Version[] versions, int first, int step) {
+      this.versions = versions;
+      next = first;
+      this.step = step;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next >= 0 && next < versions.length;
+    }
+
+    @Override
+    public Schema next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Schema schema = versions[next].schema;
+      next += step;
+      return schema;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
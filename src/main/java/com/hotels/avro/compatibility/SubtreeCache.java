@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import com.google.common.base.Ticker;
+
+import com.hotels.avro.compatibility.ReaderWriterChecker.SharedSubtree;
+
+/**
+ * A bounded, thread safe cache of the verdicts of pairs of named types nested within the schemas checked, keyed by the
+ * 64-bit {@link SchemaFingerprints fingerprints} of the reader and writer types. Shared types that are embedded in
+ * many schemas, such as a common money or address record, are then walked once across all checks, rather than once in
+ * every check. A cached verdict is re-based onto the location at which the pair is met in the enclosing schemas.
+ * <p>
+ * Only verdicts that do not depend on where the pair is met are cached: those of pairs that do not refer back to an
+ * enclosing pair through recursion, and that were not cut short by the
+ * {@link CompatibilityConfiguration#getMaximumIncompatibilities() level of detail}. Entries live in a fixed size,
+ * two-way set associative table, and the oldest entry of a full set is evicted.
+ * <p>
+ * The cache is consulted by {@link Compatibility.CheckType#CAN_READ} and {@link Compatibility.CheckType#CAN_BE_READ_BY}
+ * checks. Mutual read checks walk both directions together, and do not consult it.
+ */
+public final class SubtreeCache {
+
+  private final FingerprintTable<SharedSubtree> table;
+
+  /**
+   * @param maximumSize the maximum number of verdicts held, rounded up to a power of two.
+   */
+  public SubtreeCache(int maximumSize) {
+    table = new FingerprintTable<>(maximumSize, 0L, Ticker.systemTicker());
+  }
+
+  SharedSubtree get(long readerFingerprint, long writerFingerprint, boolean verdictOnly) {
+    return table.get(readerFingerprint, writerFingerprint, verdictOnly ? 1L : 0L);
+  }
+
+  void put(long readerFingerprint, long writerFingerprint, boolean verdictOnly, SharedSubtree subtree) {
+    table.put(readerFingerprint, writerFingerprint, verdictOnly ? 1L : 0L, subtree);
+  }
+
+  /** Discards all cached verdicts. */
+  public void invalidateAll() {
+    table.invalidateAll();
+  }
+
+}
@@ -0,0 +1,429 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+
+/**
+ * A persistent store of pairwise compatibility verdicts, keyed like a {@link CompatibilityCache} by the
+ * {@link SchemaFingerprints fingerprints} of the schemas checked, the {@link CheckType} and the level of detail.
+ * Configured alongside a cache it serves as a second tier, so that verdicts survive restarts and a store built once
+ * can be shared, for example between build agents.
+ * <p>
+ * Verdicts are appended to a memory mapped file, each record carrying a checksum, and are never overwritten. When the
+ * store is opened the file is scanned to rebuild the index, and anything after the last intact record, such as a
+ * record torn by a crash, is discarded. The file grows in steps as records are appended; {@link #compact()} rewrites
+ * the records to a new file, without the space reserved for further records, that replaces the original atomically.
+ * <p>
+ * A store opened for writing holds an exclusive lock on its file until it is closed, so one process at a time may
+ * append to the file. Stores {@link #openReadOnly(Path) opened read only} hold a shared lock instead, so any number of
+ * processes may read a file that none is writing to. File locks are held on behalf of the whole JVM, so within a JVM a
+ * file may be held by only one store at a time.
+ * <p>
+ * Verdicts are {@link PairEncoding encoded compactly}, without the schemas checked. A stored verdict is returned bound
+ * to the schemas supplied by the caller.
+ */
+public final class VerdictStore implements Closeable {
+
+  private static final int MAGIC = 0x41564353;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  /** The length and checksum that precede each record. */
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int INITIAL_CAPACITY = 1 << 20;
+
+  private static final CheckType[] CHECK_TYPES = CheckType.values();
+
+  private final Path file;
+  private final boolean readOnly;
+  /** The open file, whose lock is held until the store is closed, guarded by this. */
+  private FileChannel channel;
+  /** The mapped file and the offsets of the records in it, replaced together when the file is compacted. */
+  private volatile Mapping mapping;
+  /** The offset at which the next record is appended, guarded by this. */
+  private int end;
+  private boolean closed;
+
+  private VerdictStore(Path file, boolean readOnly, FileChannel channel, Mapping mapping, int end) {
+    this.file = file;
+    this.readOnly = readOnly;
+    this.channel = channel;
+    this.mapping = mapping;
+    this.end = end;
+  }
+
+  /**
+   * Opens the store held in the file for reading and writing, creating the file if it does not exist.
+   *
+   * @throws IOException if the file is not a verdict store, or is locked by another store.
+   */
+  public static VerdictStore open(Path file) throws IOException {
+    checkNotNull(file, "File cannot be null.");
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      lock(channel, false, file);
+      ConcurrentMap<Key, Integer> index = new ConcurrentHashMap<>();
+      int end = HEADER_SIZE;
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Verdict store is too large: " + file);
+      }
+      if (size >= HEADER_SIZE) {
+        end = scan(channel.map(MapMode.READ_ONLY, 0, size), (int) size, index, file);
+      }
+      // Discards any torn record, and the unused tail of the previous mapping
+      channel.truncate(end);
+      Mapping mapping = Mapping.map(file, end, index);
+      if (end == HEADER_SIZE) {
+        mapping.buffer.putInt(0, MAGIC);
+        mapping.buffer.putInt(4, FORMAT_VERSION);
+      }
+      return new VerdictStore(file, false, channel, mapping, end);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens the store held in an existing file for reading only. The file is left as it is found, and verdicts put in
+   * the store are not recorded.
+   *
+   * @throws IOException if the file is not a verdict store, or is locked by a store open for writing.
+   */
+  public static VerdictStore openReadOnly(Path file) throws IOException {
+    checkNotNull(file, "File cannot be null.");
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      lock(channel, true, file);
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Verdict store is too large: " + file);
+      }
+      if (size < HEADER_SIZE) {
+        throw new IOException("Not a verdict store: " + file);
+      }
+      ConcurrentMap<Key, Integer> index = new ConcurrentHashMap<>();
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+      int end = scan(buffer, (int) size, index, file);
+      return new VerdictStore(file, true, channel, new Mapping(buffer, index), end);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Locks the whole file, which is released when the channel is closed. */
+  private static void lock(FileChannel channel, boolean shared, Path file) throws IOException {
+    FileLock lock;
+    try {
+      lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      throw new IOException("Verdict store is locked by another store: " + file);
+    }
+  }
+
+  private static int scan(ByteBuffer buffer, int size, Map<Key, Integer> index, Path file) throws IOException {
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+      throw new IOException("Not a verdict store: " + file);
+    }
+    int position = HEADER_SIZE;
+    while (position <= size - RECORD_HEADER_SIZE) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || length > size - position - RECORD_HEADER_SIZE) {
+        break;
+      }
+      int offset = position + RECORD_HEADER_SIZE;
+      if (buffer.getInt(position + 4) != checksum(buffer, offset, length)) {
+        break;
+      }
+      index.put(readKey(buffer, offset), position);
+      position = offset + length;
+    }
+    return position;
+  }
+
+  /**
+   * @return the stored verdict, bound to the given schemas, or {@code null} if there is none.
+   */
+  SchemaPairCompatibility get(CheckType check, Schema toValidate, Schema existing, int maximumIncompatibilities) {
+    Key key = new Key(check, SchemaFingerprints.fingerprint(toValidate), SchemaFingerprints.fingerprint(existing),
+        maximumIncompatibilities);
+    Mapping current = mapping;
+    Integer position = current.index.get(key);
+    if (position == null) {
+      return null;
+    }
+    ByteBuffer buffer = current.buffer.duplicate();
+    buffer.position(position + RECORD_HEADER_SIZE + Key.SIZE);
+    return PairEncoding.decode(buffer, toValidate, existing);
+  }
+
+  void put(
+      CheckType check,
+      Schema toValidate,
+      Schema existing,
+      int maximumIncompatibilities,
+      SchemaPairCompatibility compatibility) {
+    if (readOnly) {
+      return;
+    }
+    Key key = new Key(check, SchemaFingerprints.fingerprint(toValidate), SchemaFingerprints.fingerprint(existing),
+        maximumIncompatibilities);
+    if (mapping.index.containsKey(key)) {
+      return;
+    }
+    byte[] record = encode(key, compatibility, toValidate, existing);
+    try {
+      append(key, record);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write to verdict store: " + file, e);
+    }
+  }
+
+  private synchronized void append(Key key, byte[] record) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Verdict store is closed.");
+    }
+    Mapping current = mapping;
+    if (current.index.containsKey(key)) {
+      return;
+    }
+    long required = (long) end + RECORD_HEADER_SIZE + record.length;
+    if (required > Integer.MAX_VALUE) {
+      throw new IOException("Verdict store is full: " + file);
+    }
+    if (required > current.buffer.capacity()) {
+      current = Mapping.map(file, (int) required, current.index);
+      mapping = current;
+    }
+    ByteBuffer buffer = current.buffer.duplicate();
+    buffer.position(end + RECORD_HEADER_SIZE);
+    buffer.put(record);
+    buffer.putInt(end + 4, checksum(buffer, end + RECORD_HEADER_SIZE, record.length));
+    buffer.putInt(end, record.length);
+    // Published only once written, so readers never see a partial record
+    current.index.put(key, end);
+    end = (int) required;
+  }
+
+  /**
+   * Writes the stored verdicts to disk.
+   */
+  public synchronized void flush() {
+    if (!closed && !readOnly) {
+      mapping.buffer.force();
+    }
+  }
+
+  /**
+   * Rewrites the store to hold only its records, releasing the space reserved in the file for further records until
+   * another is appended. Records are never superseded, so every verdict is kept. The new file is written and locked
+   * alongside the original and then moved over it atomically, so a crash during compaction leaves the original intact.
+   */
+  public synchronized void compact() throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Verdict store is closed.");
+    }
+    if (readOnly) {
+      throw new IllegalStateException("Verdict store is read only.");
+    }
+    Mapping current = mapping;
+    Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+    ConcurrentMap<Key, Integer> index = new ConcurrentHashMap<>();
+    int position = HEADER_SIZE;
+    FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      lock(compactedChannel, false, compacted);
+      compactedChannel.truncate(0);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+      write(compactedChannel, header);
+      for (Map.Entry<Key, Integer> entry : current.index.entrySet()) {
+        int offset = entry.getValue();
+        int length = RECORD_HEADER_SIZE + current.buffer.getInt(offset);
+        ByteBuffer record = current.buffer.duplicate();
+        record.position(offset).limit(offset + length);
+        write(compactedChannel, record);
+        index.put(entry.getKey(), position);
+        position += length;
+      }
+      compactedChannel.force(true);
+      Files.move(compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException | RuntimeException e) {
+      compactedChannel.close();
+      throw e;
+    }
+    // The compacted file is locked before it replaces the original, so the store is never left unlocked
+    channel.close();
+    channel = compactedChannel;
+    // Mapped exactly, so that space is reserved again only when a record is next appended
+    mapping = new Mapping(compactedChannel.map(MapMode.READ_WRITE, 0, position), index);
+    end = position;
+  }
+
+  /**
+   * @return the number of verdicts held.
+   */
+  public int size() {
+    return mapping.index.size();
+  }
+
+  /**
+   * @return {@code true} if the store was {@link #openReadOnly(Path) opened read only}.
+   */
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  /**
+   * Writes the stored verdicts to disk and releases the lock on the file.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      try {
+        if (!readOnly) {
+          mapping.buffer.force();
+        }
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "VerdictStore [file=" + file + ", readOnly=" + readOnly + ", size=" + size() + "]";
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static int checksum(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer payload = buffer.duplicate();
+    payload.position(offset).limit(offset + length);
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  private static Key readKey(ByteBuffer buffer, int offset) {
+    return new Key(CHECK_TYPES[buffer.get(offset)], buffer.getLong(offset + 1), buffer.getLong(offset + 9),
+        buffer.getInt(offset + 17));
+  }
+
+  private static byte[] encode(Key key, SchemaPairCompatibility compatibility, Schema toValidate, Schema existing) {
+    byte[] pair = PairEncoding.encode(compatibility, toValidate, existing);
+    ByteBuffer record = ByteBuffer.allocate(Key.SIZE + pair.length);
+    record.put((byte) key.check.ordinal());
+    record.putLong(key.toValidateFingerprint);
+    record.putLong(key.existingFingerprint);
+    record.putInt(key.maximumIncompatibilities);
+    record.put(pair);
+    return record.array();
+  }
+
+  /** The file as mapped into memory, with the offset of the record of each key. */
+  private static final class Mapping {
+    private final MappedByteBuffer buffer;
+    private final ConcurrentMap<Key, Integer> index;
+
+    private Mapping(MappedByteBuffer buffer, ConcurrentMap<Key, Integer> index) {
+      this.buffer = buffer;
+      this.index = index;
+    }
+
+    /** Maps at least the given number of bytes, growing the file geometrically. */
+    private static Mapping map(Path file, int required, ConcurrentMap<Key, Integer> index) throws IOException {
+      long capacity = Math.max(INITIAL_CAPACITY, Long.highestOneBit(Math.max(required, 1) - 1L) << 1);
+      capacity = Math.min(capacity, Integer.MAX_VALUE);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        return new Mapping(channel.map(MapMode.READ_WRITE, 0, capacity), index);
+      }
+    }
+  }
+
+  private static final class Key {
+    /** The size of a key as it is written at the start of each record. */
+    private static final int SIZE = 21;
+
+    private final CheckType check;
+    private final long toValidateFingerprint;
+    private final long existingFingerprint;
+    private final int maximumIncompatibilities;
+
+    private Key(CheckType check, long toValidateFingerprint, long existingFingerprint, int maximumIncompatibilities) {
+      this.check = check;
+      this.toValidateFingerprint = toValidateFingerprint;
+      this.existingFingerprint = existingFingerprint;
+      this.maximumIncompatibilities = maximumIncompatibilities;
+    }
+
+    @Override
+    public int hashCode() {
+      long hash = toValidateFingerprint * 31 + existingFingerprint;
+      hash = hash * 31 + check.ordinal();
+      hash = hash * 31 + maximumIncompatibilities;
+      return (int) (hash ^ hash >>> 32);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return check == other.check
+          && toValidateFingerprint == other.toValidateFingerprint
+          && existingFingerprint == other.existingFingerprint
+          && maximumIncompatibilities == other.maximumIncompatibilities;
+    }
+  }
+
+}
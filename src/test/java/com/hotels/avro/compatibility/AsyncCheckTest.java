@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Test;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+public class AsyncCheckTest {
+
+  private final Schema toValidate = SchemaBuilder.record("r").fields().requiredLong("a").endRecord();
+  private final Schema intSchema = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final Schema stringSchema = SchemaBuilder.record("r").fields().requiredString("a").endRecord();
+  private final List<Schema> history = Arrays.asList(intSchema, stringSchema, intSchema);
+
+  private final QueueingExecutor executor = new QueueingExecutor();
+
+  @Test
+  public void testModeCheckAsync() throws Exception {
+    CompletableFuture<ChronologyCompatibilityCheckResult> future = Mode.CAN_READ_ALL.checkAsync(toValidate, history,
+        executor);
+    assertThat(future.isDone(), is(false));
+
+    executor.runAll();
+
+    assertThat(future.get(), is(Mode.CAN_READ_ALL.check(toValidate, history)));
+  }
+
+  @Test
+  public void testCheckSelectorAsync() throws Exception {
+    CompletableFuture<CompatibilityCheckResult> canRead = Compatibility.checkThat(toValidate).canReadAsync(intSchema,
+        executor);
+    CompletableFuture<CompatibilityCheckResult> canBeReadBy = Compatibility
+        .checkThat(toValidate)
+        .canBeReadByAsync(intSchema, executor);
+    CompletableFuture<CompatibilityCheckResult> mutualReadWith = Compatibility
+        .checkThat(toValidate)
+        .mutualReadWithAsync(intSchema, executor);
+
+    executor.runAll();
+
+    assertThat(canRead.get(), is(Compatibility.checkThat(toValidate).canRead(intSchema)));
+    assertThat(canBeReadBy.get(), is(Compatibility.checkThat(toValidate).canBeReadBy(intSchema)));
+    assertThat(mutualReadWith.get(), is(Compatibility.checkThat(toValidate).mutualReadWith(intSchema)));
+  }
+
+  @Test
+  public void testChronologySelectorAsync() throws Exception {
+    CompletableFuture<ChronologyCompatibilityCheckResult> all = Compatibility
+        .checkThat(toValidate)
+        .canRead()
+        .allAsync(history, executor);
+    CompletableFuture<ChronologyCompatibilityCheckResult> latest = Compatibility
+        .checkThat(toValidate)
+        .canRead()
+        .latestOfAsync(history, executor);
+
+    executor.runAll();
+
+    assertThat(all.get(), is(Compatibility.checkThat(toValidate).canRead().all(history)));
+    assertThat(latest.get(), is(Compatibility.checkThat(toValidate).canRead().latestOf(history)));
+  }
+
+  @Test
+  public void testCancelledBeforeStart() {
+    final AtomicInteger pairChecks = new AtomicInteger();
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .listener(new CompatibilityListener() {
+          @Override
+          public void pairChecked(CheckType check, SchemaPairCompatibility compatibility, long elapsedNanos) {
+            pairChecks.incrementAndGet();
+          }
+        })
+        .build();
+    CompletableFuture<ChronologyCompatibilityCheckResult> future = Mode.CAN_READ_ALL.checkAsync(toValidate, history,
+        configuration, executor);
+
+    assertThat(future.cancel(false), is(true));
+    executor.runAll();
+
+    assertThat(future.isCancelled(), is(true));
+    assertThat(pairChecks.get(), is(0));
+  }
+
+  @Test
+  public void testCancellationStopsPairChecks() {
+    final AtomicInteger pairChecks = new AtomicInteger();
+    final AtomicReference<CompletableFuture<?>> futureReference = new AtomicReference<>();
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .listener(new CompatibilityListener() {
+          @Override
+          public void pairChecked(CheckType check, SchemaPairCompatibility compatibility, long elapsedNanos) {
+            pairChecks.incrementAndGet();
+            futureReference.get().cancel(false);
+          }
+        })
+        .build();
+    CompletableFuture<ChronologyCompatibilityCheckResult> future = Mode.CAN_READ_ALL.checkAsync(toValidate, history,
+        configuration, executor);
+    futureReference.set(future);
+
+    executor.runAll();
+
+    assertThat(future.isCancelled(), is(true));
+    assertThat(pairChecks.get(), is(1));
+  }
+
+  @Test
+  public void testRejected() throws InterruptedException {
+    CompletableFuture<ChronologyCompatibilityCheckResult> future = Mode.CAN_READ_ALL.checkAsync(toValidate, history,
+        new Executor() {
+          @Override
+          public void execute(Runnable command) {
+            throw new RejectedExecutionException();
+          }
+        });
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+    }
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullExecutor() {
+    Mode.CAN_READ_ALL.checkAsync(toValidate, history, null);
+  }
+
+  private static final class QueueingExecutor implements Executor {
+    private final Queue<Runnable> commands = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable command) {
+      commands.add(command);
+    }
+
+    void runAll() {
+      Runnable command;
+      while ((command = commands.poll()) != null) {
+        command.run();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.hotels.avro.compatibility.BulkChecker.SubjectHistory;
+import com.hotels.avro.compatibility.BulkChecker.SubjectResult;
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+public class BulkCheckerTest {
+
+  private static final String INT = "{\"type\":\"record\",\"name\":\"r\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"}]}";
+  private static final String LONG = "{\"type\":\"record\",\"name\":\"r\",\"fields\":[{\"name\":\"a\",\"type\":\"long\"}]}";
+  private static final String STRING = "{\"type\":\"record\",\"name\":\"r\",\"fields\":"
+      + "[{\"name\":\"a\",\"type\":\"string\"}]}";
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testDiscover() throws IOException {
+    Path root = temporaryFolder.getRoot().toPath();
+    write(root, "b", "v10.avsc", LONG);
+    write(root, "b", "v2.avsc", INT);
+    write(root, "b", "notes.txt", "");
+    write(root, "b", "v3.avsc.bak", "");
+    write(root, "a", "v1.avsc", INT);
+    Files.createDirectories(root.resolve("empty"));
+    Files.createFile(root.resolve("README"));
+
+    List<SubjectHistory> histories = BulkChecker.discover(root);
+
+    assertThat(histories.size(), is(2));
+    assertThat(histories.get(0).subject, is("a"));
+    assertThat(histories.get(1).subject, is("b"));
+    assertThat(histories.get(1).versions, is(Arrays.asList(2, 10)));
+    assertThat(histories.get(1).files, is(Arrays.asList(root.resolve("b/v2.avsc"), root.resolve("b/v10.avsc"))));
+  }
+
+  @Test
+  public void testCheck() throws IOException {
+    Path root = temporaryFolder.getRoot().toPath();
+    write(root, "compatible", "v1.avsc", INT);
+    write(root, "compatible", "v2.avsc", LONG);
+    write(root, "incompatible", "v1.avsc", INT);
+    write(root, "incompatible", "v2.avsc", STRING);
+    write(root, "incompatible", "v3.avsc", LONG);
+    write(root, "unparseable", "v1.avsc", INT);
+    write(root, "unparseable", "v2.avsc", "{\"type\":");
+    write(root, "single", "v1.avsc", STRING);
+    StringBuilder out = new StringBuilder();
+
+    Map<String, SubjectResult> results = new BulkChecker(Mode.CAN_READ_ALL, CompatibilityConfiguration.DEFAULT,
+        new ForkJoinPool(2)).check(root, out);
+
+    assertThat(new ArrayList<>(results.keySet()),
+        is(Arrays.asList("compatible", "incompatible", "single", "unparseable")));
+    assertThat(results.get("compatible").isCompatible(), is(true));
+    assertThat(results.get("compatible").getVersion(), is(2));
+    assertThat(results.get("incompatible").isCompatible(), is(false));
+    assertThat(results.get("incompatible").getVersion(), is(3));
+    assertThat(results.get("single").isCompatible(), is(true));
+    assertThat(results.get("unparseable").isCompatible(), is(false));
+    assertThat(results.get("unparseable").getResult(), is(nullValue()));
+    assertThat(results.get("unparseable").getError().startsWith(root.resolve("unparseable/v2.avsc").toString()),
+        is(true));
+
+    List<String> lines = new ArrayList<>(Arrays.asList(out.toString().split("\n")));
+    Collections.sort(lines);
+    assertThat(lines.size(), is(4));
+    assertThat(lines.get(0), is("{\"subject\":\"compatible\",\"version\":2,\"mode\":\"CAN_READ_ALL\",\"compatible\":true}"));
+    assertThat(lines.get(1), is("{\"subject\":\"incompatible\",\"version\":3,\"mode\":\"CAN_READ_ALL\","
+        + "\"compatible\":false,\"incompatibleVersions\":[2],\"message\":"
+        + "\"Compatibility type 'CAN_READ' does not hold between 1 schema(s) in the chronology because: Schema[1] has "
+        + "incompatibilities: ['TYPE_MISMATCH: reader type: LONG not compatible with writer type: STRING' at "
+        + "'/fields/0/type'].\"}"));
+    assertThat(lines.get(2), is("{\"subject\":\"single\",\"version\":1,\"mode\":\"CAN_READ_ALL\",\"compatible\":true}"));
+    assertThat(lines.get(3).startsWith("{\"subject\":\"unparseable\",\"version\":2,\"mode\":\"CAN_READ_ALL\","
+        + "\"compatible\":false,\"error\":\""), is(true));
+  }
+
+  @Test
+  public void testIncompatibleVersionOfLatestCheck() throws IOException {
+    Path root = temporaryFolder.getRoot().toPath();
+    write(root, "subject", "v1.avsc", INT);
+    write(root, "subject", "v2.avsc", STRING);
+    write(root, "subject", "v3.avsc", LONG);
+    StringBuilder out = new StringBuilder();
+
+    new BulkChecker(Mode.CAN_READ_LATEST, CompatibilityConfiguration.DEFAULT, new ForkJoinPool(1)).check(root, out);
+
+    assertThat(out.toString().contains("\"incompatibleVersions\":[2]"), is(true));
+  }
+
+  @Test
+  public void testIncompatibleVersionOfWindowCheck() throws IOException {
+    Path root = temporaryFolder.getRoot().toPath();
+    write(root, "subject", "v1.avsc", STRING);
+    write(root, "subject", "v2.avsc", INT);
+    write(root, "subject", "v3.avsc", STRING);
+    StringBuilder out = new StringBuilder();
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder()
+        .window(ChronologyWindow.lastVersions(1))
+        .build();
+
+    Map<String, SubjectResult> results = new BulkChecker(Mode.CAN_READ_WINDOW, configuration, new ForkJoinPool(1))
+        .check(root, out);
+
+    assertThat(results.get("subject").getResult().getResults().size(), is(1));
+    assertThat(out.toString().contains("\"incompatibleVersions\":[2]"), is(true));
+  }
+
+  @Test
+  public void testFlushesEachLine() throws IOException {
+    Path root = temporaryFolder.getRoot().toPath();
+    write(root, "a", "v1.avsc", INT);
+    write(root, "b", "v1.avsc", INT);
+    final List<String> flushed = new ArrayList<>();
+    StringWriter out = new StringWriter() {
+      @Override
+      public void flush() {
+        flushed.add(toString());
+      }
+    };
+
+    new BulkChecker(Mode.CAN_READ_ALL, CompatibilityConfiguration.DEFAULT, new ForkJoinPool(1)).check(root, out);
+
+    assertThat(flushed.size(), is(2));
+    assertThat(flushed.get(0).split("\n").length, is(1));
+    assertThat(flushed.get(1), is(out.toString()));
+  }
+
+  @Test
+  public void testAppendJsonString() {
+    StringBuilder out = new StringBuilder();
+    BulkChecker.appendJsonString(out, "a\"b\\c\nd\u0001");
+    assertThat(out.toString(), is("\"a\\\"b\\\\c\\nd\\u0001\""));
+  }
+
+  private static void write(Path root, String subject, String file, String content) throws IOException {
+    Path directory = Files.createDirectories(root.resolve(subject));
+    Files.write(directory.resolve(file), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
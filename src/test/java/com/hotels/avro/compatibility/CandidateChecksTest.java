@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+public class CandidateChecksTest {
+
+  private final Schema longSchema = SchemaBuilder.record("r").fields().requiredLong("a").endRecord();
+  private final Schema intSchema = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final Schema stringSchema = SchemaBuilder.record("r").fields().requiredString("a").endRecord();
+  private final Schema documentedIntSchema = SchemaBuilder
+      .record("r")
+      .doc("documented")
+      .fields()
+      .requiredInt("a")
+      .endRecord();
+  private final List<Schema> history = Arrays.asList(intSchema, documentedIntSchema, intSchema);
+  private final List<Schema> candidates = Arrays.asList(longSchema, stringSchema, intSchema);
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testResultsKeyedByCandidateInOrder() {
+    Map<Schema, ChronologyCompatibilityCheckResult> results = Mode.CAN_READ_ALL.checkEach(candidates, history);
+
+    assertThat(new ArrayList<>(results.keySet()), is(candidates));
+    assertThat(results.get(longSchema).isCompatible(), is(true));
+    assertThat(results.get(stringSchema).isCompatible(), is(false));
+    assertThat(results.get(intSchema).isCompatible(), is(true));
+  }
+
+  @Test
+  public void testMatchesSingleChecks() {
+    for (Mode mode : Mode.values()) {
+      Map<Schema, ChronologyCompatibilityCheckResult> results = mode.checkEach(candidates, history);
+      for (Schema candidate : candidates) {
+        assertThat(results.get(candidate), is(mode.check(candidate, history)));
+      }
+    }
+  }
+
+  @Test
+  public void testDeduplicatedMatchesSingleChecks() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().deduplicate(true).build();
+
+    Map<Schema, ChronologyCompatibilityCheckResult> results = Mode.MUTUAL_READ_WITH_ALL.checkEach(candidates, history,
+        configuration);
+
+    for (Schema candidate : candidates) {
+      ChronologyCompatibilityCheckResult result = results.get(candidate);
+      assertThat(result, is(Mode.MUTUAL_READ_WITH_ALL.check(candidate, history)));
+      for (int i = 0; i < history.size(); i++) {
+        CompatibilityCheckResult pair = result.getResults().get(i);
+        Schema existing = pair.isCompatible() ? pair.getWriter() : pair.getReader();
+        assertThat(existing, is(sameInstance(history.get(i))));
+      }
+    }
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    List<Schema> manyCandidates = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      manyCandidates.add(SchemaBuilder.record("r").fields().requiredLong("a").optionalInt("b" + i).endRecord());
+    }
+    manyCandidates.add(stringSchema);
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().executor(executor).build();
+
+    Map<Schema, ChronologyCompatibilityCheckResult> results = Mode.CAN_READ_ALL.checkEach(manyCandidates, history,
+        configuration);
+
+    assertThat(results, is(Mode.CAN_READ_ALL.checkEach(manyCandidates, history)));
+  }
+
+  @Test
+  public void testEmptyHistory() {
+    Map<Schema, ChronologyCompatibilityCheckResult> results = Mode.CAN_READ_LATEST.checkEach(candidates,
+        new ArrayList<Schema>());
+
+    assertThat(results.get(stringSchema).isCompatible(), is(true));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testCandidatesCannotContainNull() {
+    Mode.CAN_READ_ALL.checkEach(Arrays.asList(longSchema, null), history);
+  }
+
+}
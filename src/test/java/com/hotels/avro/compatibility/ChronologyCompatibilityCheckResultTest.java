@@ -21,7 +21,11 @@ import static com.hotels.avro.compatibility.Compatibility.ChronologyType.ALL;
 import static com.hotels.avro.compatibility.Compatibility.ChronologyType.LATEST;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Collections;
 
 import org.apache.avro.Schema;
@@ -101,6 +105,29 @@ public class ChronologyCompatibilityCheckResultTest {
     assertThat(result.isCompatible(), is(false));
   }
 
+  @Test
+  public void testIncompatibleCount() {
+    ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
+        Arrays.asList(resultIncompatible, resultCompatible, resultIncompatible));
+    assertThat(result.getIncompatibleCount(), is(2));
+    assertThat(result.isCompatible(), is(false));
+    assertThat(new ChronologyCompatibilityCheckResult(CAN_READ, ALL, resultIncompatible, 2).getIncompatibleCount(),
+        is(1));
+    assertThat(new ChronologyCompatibilityCheckResult(CAN_READ, ALL, Collections.singletonList(resultCompatible))
+        .getIncompatibleCount(), is(0));
+  }
+
+  @Test
+  public void testEmptyChronologyResultsAreShared() {
+    ChronologyCompatibilityCheckResult all = Compatibility.checkThat(reader).canRead().all();
+    assertThat(all == ChronologyCompatibilityCheckResult.empty(CAN_READ, ALL), is(true));
+    assertThat(all.isCompatible(), is(true));
+    assertThat(all.getResults().isEmpty(), is(true));
+    assertThat(Compatibility.checkThat(reader).canRead().failFast().all() == all, is(true));
+    assertThat(Compatibility.checkThat(reader).canRead().latestOf() == ChronologyCompatibilityCheckResult.empty(
+        CAN_READ, LATEST), is(true));
+  }
+
   @Test
   public void testAsMessage() {
     ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
@@ -109,10 +136,104 @@ public class ChronologyCompatibilityCheckResultTest {
         "Compatibility type 'CAN_READ' does not hold between 1 schema(s) in the chronology because: Schema[0] has incompatibilities: ['FIXED_SIZE_MISMATCH: message' at '/']."));
   }
 
+  @Test
+  public void testAsMessageCompatible() {
+    ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
+        Collections.singletonList(resultCompatible));
+    assertThat(result.asMessage(), is("Compatibility type 'CAN_READ' holds for 'ALL' schema(s)."));
+  }
+
+  @Test
+  public void testAppendMessage() throws IOException {
+    ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
+        Arrays.asList(resultIncompatible, resultCompatible, resultIncompatible));
+    StringWriter writer = new StringWriter();
+    result.appendMessage(writer);
+    assertThat(writer.toString(), is(
+        "Compatibility type 'CAN_READ' does not hold between 2 schema(s) in the chronology because: Schema[0] has incompatibilities: ['FIXED_SIZE_MISMATCH: message' at '/'], Schema[2] has incompatibilities: ['FIXED_SIZE_MISMATCH: message' at '/']."));
+    assertThat(result.asMessage(), is(writer.toString()));
+  }
+
+  @Test
+  public void testAsMessageLimitedIncompatibilities() {
+    ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
+        Arrays.asList(resultIncompatible, resultIncompatible, resultIncompatible));
+    assertThat(result.asMessage(MessageLimits.of(1, Integer.MAX_VALUE)), is(
+        "Compatibility type 'CAN_READ' does not hold between 3 schema(s) in the chronology because: Schema[0] has incompatibilities: ['FIXED_SIZE_MISMATCH: message' at '/'] ... and 2 more."));
+  }
+
+  @Test
+  public void testAsMessageLimitedCharacters() {
+    ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
+        Arrays.asList(resultIncompatible, resultIncompatible));
+    assertThat(result.asMessage(MessageLimits.of(Integer.MAX_VALUE, 20)), is(
+        "Compatibility type ' ... and 2 more."));
+  }
+
+  @Test
+  public void testAsMessageNoIncompatibilities() {
+    ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
+        resultIncompatible, 3);
+    assertThat(result.asMessage(MessageLimits.of(0, Integer.MAX_VALUE)), is(
+        "Compatibility type 'CAN_READ' does not hold in the chronology, stopped at the first incompatible schema because: Schema[3] has incompatibilities: [] ... and 1 more."));
+  }
+
+  @Test
+  public void testTruncated() {
+    ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
+        resultIncompatible, 3);
+
+    assertThat(result.isTruncated(), is(true));
+    assertThat(result.getFailedIndex(), is(3));
+    assertThat(result.getResults(), is(Collections.singletonList(resultIncompatible)));
+    assertThat(result.isCompatible(), is(false));
+    assertThat(result.asMessage(), is(
+        "Compatibility type 'CAN_READ' does not hold in the chronology, stopped at the first incompatible schema because: Schema[3] has incompatibilities: ['FIXED_SIZE_MISMATCH: message' at '/']."));
+  }
+
+  @Test
+  public void testNotTruncated() {
+    ChronologyCompatibilityCheckResult result = new ChronologyCompatibilityCheckResult(CAN_READ, ALL,
+        Collections.singletonList(resultIncompatible));
+
+    assertThat(result.isTruncated(), is(false));
+    assertThat(result.getFailedIndex(), is(-1));
+  }
+
+  @Test
+  public void testEqualsTruncated() {
+    assertThat(new ChronologyCompatibilityCheckResult(CAN_READ, ALL, resultIncompatible, 1)
+        .equals(new ChronologyCompatibilityCheckResult(CAN_READ, ALL, resultIncompatible, 1)), is(true));
+    assertThat(new ChronologyCompatibilityCheckResult(CAN_READ, ALL, resultIncompatible, 1)
+        .equals(new ChronologyCompatibilityCheckResult(CAN_READ, ALL, resultIncompatible, 2)), is(false));
+    assertThat(new ChronologyCompatibilityCheckResult(CAN_READ, ALL, resultIncompatible, 0).equals(
+        new ChronologyCompatibilityCheckResult(CAN_READ, ALL, Collections.singletonList(resultIncompatible))),
+        is(false));
+  }
+
   @Test(expected = SchemaCompatibilityException.class)
   public void testThrowIfIncompatible() throws SchemaCompatibilityException {
     new ChronologyCompatibilityCheckResult(CAN_READ, ALL, Collections.singletonList(resultIncompatible))
         .throwIfIncompatible();
   }
 
+  @Test
+  public void testExceptionMessageOfLatestIsLimited() {
+    SchemaBuilder.FieldAssembler<Schema> readerFields = SchemaBuilder.record("r").fields();
+    SchemaBuilder.FieldAssembler<Schema> writerFields = SchemaBuilder.record("r").fields();
+    for (int i = 0; i < 200; i++) {
+      readerFields = readerFields.requiredString("f" + i);
+      writerFields = writerFields.requiredInt("f" + i);
+    }
+    ChronologyCompatibilityCheckResult result = Compatibility.Mode.CAN_READ_LATEST.check(readerFields.endRecord(),
+        Arrays.asList(writerFields.endRecord()));
+    try {
+      result.throwIfIncompatible(MessageLimits.of(5, 1000));
+      fail();
+    } catch (SchemaCompatibilityException e) {
+      assertThat(e.getMessage().length() <= 1000, is(true));
+      assertThat(e.getMessage().endsWith(" ... and 195 more."), is(true));
+    }
+  }
+
 }
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+
+import com.hotels.avro.compatibility.Compatibility.ChronologyType;
+import com.hotels.avro.compatibility.Compatibility.Mode;
+import com.hotels.avro.compatibility.SubjectRegistry.Registration;
+
+public class ChronologyWindowTest {
+
+  private static final Instant T0 = Instant.parse("2019-01-01T00:00:00Z");
+
+  private final Schema schema1 = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final Schema schema2 = SchemaBuilder.record("r").fields().requiredLong("a").endRecord();
+  private final Schema schema3 = SchemaBuilder.record("r").fields().requiredString("a").endRecord();
+  private final List<Schema> schemas = Arrays.asList(schema1, schema2, schema3);
+  private final List<RegisteredSchema> registered = Arrays.asList(
+      RegisteredSchema.of(schema1, T0),
+      RegisteredSchema.of(schema2, T0.plus(Duration.ofDays(10))),
+      RegisteredSchema.of(schema3, T0.plus(Duration.ofDays(20))));
+
+  @Test
+  public void testDefaultWindowChecksAll() {
+    ChronologyCompatibilityCheckResult windowed = Mode.CAN_READ_WINDOW.check(schema3, schemas);
+    ChronologyCompatibilityCheckResult all = Mode.CAN_READ_ALL.check(schema3, schemas);
+
+    assertThat(windowed.getChronology(), is(ChronologyType.WINDOW));
+    assertThat(windowed.getResults().size(), is(3));
+    assertThat(windowed.isCompatible(), is(all.isCompatible()));
+  }
+
+  @Test
+  public void testLastVersions() {
+    ChronologyCompatibilityCheckResult result = Mode.CAN_READ_WINDOW.check(schema3, schemas,
+        window(ChronologyWindow.lastVersions(1)));
+
+    assertThat(result.isCompatible(), is(true));
+    assertThat(result.getResults().size(), is(1));
+    assertThat(result.getResults().get(0).getWriter(), is(sameInstance(schema3)));
+  }
+
+  @Test
+  public void testLastVersionsOfNavigableMap() {
+    TreeMap<Integer, Schema> versions = new TreeMap<>();
+    versions.put(1, schema1);
+    versions.put(2, schema2);
+    versions.put(3, schema3);
+    SchemaChronology last = SchemaChronology.of(versions).last(2);
+
+    assertThat(last.size(), is(2));
+    assertThat(last.latest(), is(sameInstance(schema3)));
+    assertThat(Iterators.toString(last.iterator()), is(Arrays.asList(schema2, schema3).toString()));
+    assertThat(Iterators.toString(last.latestFirst()), is(Arrays.asList(schema3, schema2).toString()));
+  }
+
+  @Test
+  public void testLastVersionsDeduplicatedAndFailFast() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .window(ChronologyWindow.lastVersions(2))
+        .deduplicate(true)
+        .failFast(true)
+        .build();
+
+    ChronologyCompatibilityCheckResult result = Mode.CAN_READ_WINDOW.check(schema3, schemas, configuration);
+
+    assertThat(result.isCompatible(), is(false));
+    assertThat(result.getFailedIndex(), is(0));
+    assertThat(result.getResults().get(0).getWriter(), is(sameInstance(schema2)));
+  }
+
+  @Test
+  public void testRegisteredAfter() {
+    SchemaChronology chronology = SchemaChronology.ofRegistered(registered);
+
+    ChronologyCompatibilityCheckResult result = Mode.CAN_READ_WINDOW.check(schema3, chronology,
+        window(ChronologyWindow.registeredAfter(T0.plus(Duration.ofDays(10)))));
+
+    assertThat(result.getResults().size(), is(1));
+    assertThat(result.isCompatible(), is(true));
+    assertThat(chronology.registeredAfter(T0.minusMillis(1)), is(sameInstance(chronology)));
+    assertThat(chronology.registeredAfter(T0).size(), is(2));
+    assertThat(chronology.registeredAfter(T0.plus(Duration.ofDays(30))).size(), is(0));
+  }
+
+  @Test
+  public void testRetainedFor() {
+    Clock clock = Clock.fixed(T0.plus(Duration.ofDays(25)), ZoneOffset.UTC);
+
+    ChronologyCompatibilityCheckResult result = Mode.CAN_BE_READ_BY_WINDOW.check(schema1,
+        SchemaChronology.ofRegistered(registered), window(ChronologyWindow.retainedFor(Duration.ofDays(20), clock)));
+
+    assertThat(result.getResults().size(), is(2));
+    assertThat(result.getResults().get(0).getReader(), is(sameInstance(schema2)));
+  }
+
+  @Test
+  public void testCheckEach() {
+    Schema schema4 = SchemaBuilder.record("r").fields().requiredString("a").optionalInt("b").endRecord();
+
+    ChronologyCompatibilityCheckResult result = Mode.CAN_READ_WINDOW
+        .checkEach(Arrays.asList(schema3, schema4), schemas, window(ChronologyWindow.lastVersions(1)))
+        .get(schema4);
+
+    assertThat(result.isCompatible(), is(true));
+    assertThat(result.getResults().size(), is(1));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testRegisteredAfterRequiresRegistrationInstants() {
+    Mode.CAN_READ_WINDOW.check(schema3, schemas, window(ChronologyWindow.registeredAfter(T0)));
+  }
+
+  @Test
+  public void testSubjectRegistryRetention() {
+    MutableClock clock = new MutableClock(T0);
+    SubjectRegistry registry = new SubjectRegistry(Mode.CAN_READ_WINDOW,
+        window(ChronologyWindow.retainedFor(Duration.ofDays(7), clock)), clock);
+    registry.register("s", schema1);
+
+    Registration early = registry.register("s", schema3);
+    clock.instant = T0.plus(Duration.ofDays(8));
+    Registration late = registry.register("s", schema3);
+
+    assertThat(early.isRegistered(), is(false));
+    assertThat(late.isAdded(), is(true));
+    assertThat(late.getVersion(), is(2));
+  }
+
+  private static CompatibilityConfiguration window(ChronologyWindow window) {
+    return CompatibilityConfiguration.builder().window(window).build();
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+
+}
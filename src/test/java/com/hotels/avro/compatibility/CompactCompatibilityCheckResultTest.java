@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.junit.Test;
+
+public class CompactCompatibilityCheckResultTest {
+
+  private final Schema v1 = new Schema.Parser()
+      .parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"},"
+          + "{\"name\":\"b\",\"type\":{\"type\":\"array\",\"items\":\"string\"}}]}");
+  private final Schema v2 = new Schema.Parser()
+      .parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"string\"},"
+          + "{\"name\":\"b\",\"type\":{\"type\":\"array\",\"items\":\"int\"}},{\"name\":\"c\",\"type\":\"long\"}]}");
+  /** The same as the first version, so it is resolved to that version. */
+  private final Schema v3 = new Schema.Parser()
+      .parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"},"
+          + "{\"name\":\"b\",\"type\":{\"type\":\"array\",\"items\":\"string\"}}]}");
+  private final SchemaLookup lookup = SchemaLookup.of(Arrays.asList(v1, v2));
+
+  @Test
+  public void testIncompatibleResolvesThroughLookup() {
+    CompatibilityCheckResult result = Compatibility.checkThat(v2).canRead(v1);
+
+    CompatibilityCheckResult compact = result.compact(lookup);
+
+    assertThat(compact.getType(), is(SchemaCompatibilityType.INCOMPATIBLE));
+    assertThat(compact.isCompatible(), is(false));
+    assertThat(compact.getReader(), is(sameInstance(v2)));
+    assertThat(compact.getWriter(), is(sameInstance(v1)));
+    assertThat(compact.getResult(), is(result.getResult()));
+    assertThat(compact.getDescription(), is(result.getDescription()));
+    assertThat(compact.asMessage(), is(result.asMessage()));
+    assertThat(compact.getCompatibility(), is(result.getCompatibility()));
+    assertThat(compact.getChronology(), is(result.getChronology()));
+  }
+
+  @Test
+  public void testCompatibleResolvesThroughLookup() {
+    CompatibilityCheckResult result = Compatibility.checkThat(v3).mutualReadWith(v1);
+
+    CompatibilityCheckResult compact = result.compact(lookup);
+
+    assertThat(compact.isCompatible(), is(true));
+    assertThat(compact.getResult(), is(result.getResult()));
+    assertThat(compact.getDescription(), is(result.getDescription()));
+    assertThat(compact.asMessage(), is(result.asMessage()));
+  }
+
+  @Test
+  public void testMessageDoesNotResolveSchemas() {
+    CompatibilityCheckResult result = Compatibility.checkThat(v2).canRead(v1);
+
+    CompatibilityCheckResult compact = result.compact(SchemaLookup.of(Collections.<Schema> emptyList()));
+
+    assertThat(compact.isCompatible(), is(false));
+    assertThat(compact.asMessage(), is(result.asMessage()));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnknownSchema() {
+    Compatibility
+        .checkThat(v2)
+        .canRead(v1)
+        .compact(SchemaLookup.of(Collections.singletonList(v2)))
+        .getWriter();
+  }
+
+  @Test
+  public void testFragmentsResolveIntoLookupSchemas() {
+    CompatibilityCheckResult compact = Compatibility.checkThat(v1).canRead(v2).compact(lookup);
+
+    Schema writerFragment = compact.getResult().getIncompatibilities().get(0).getWriterFragment();
+
+    assertThat(writerFragment, is(sameInstance(v2.getField("a").schema())));
+  }
+
+  @Test
+  public void testEquals() {
+    CompatibilityCheckResult compact = Compatibility.checkThat(v2).canRead(v1).compact(lookup);
+
+    assertThat(compact.equals(Compatibility.checkThat(v2).canRead(v3).compact(lookup)), is(true));
+    assertThat(compact.hashCode() == Compatibility.checkThat(v2).canRead(v3).compact(lookup).hashCode(), is(true));
+    assertThat(compact.equals(Compatibility.checkThat(v1).canRead(v2).compact(lookup)), is(false));
+    assertThat(compact.compact(lookup), is(compact));
+  }
+
+  @Test
+  public void testChronology() {
+    ChronologyCompatibilityCheckResult result = Compatibility.checkThat(v2).canRead().all(v1, v3, v2);
+
+    ChronologyCompatibilityCheckResult compact = result.compact(lookup);
+
+    assertThat(compact.getIncompatibleCount(), is(2));
+    assertThat(compact.getResults().size(), is(3));
+    assertThat(compact.getResults().get(1).getWriter(), is(sameInstance(v1)));
+    assertThat(compact.getResults().get(2).isCompatible(), is(true));
+    assertThat(compact.asMessage(), is(result.asMessage()));
+  }
+
+  @Test
+  public void testTruncatedChronology() {
+    ChronologyCompatibilityCheckResult result = Compatibility
+        .checkThat(v2)
+        .canRead()
+        .all(v1, v2, v3, SchemaBuilder.builder().intType());
+    ChronologyCompatibilityCheckResult compact = result.compact(lookup);
+
+    assertThat(compact.isTruncated(), is(result.isTruncated()));
+    assertThat(compact.getFailedIndex(), is(result.getFailedIndex()));
+    assertThat(compact.asMessage(), is(result.asMessage()));
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.hotels.avro.compatibility.Compatibility.CheckType.CAN_BE_READ_BY;
+import static com.hotels.avro.compatibility.Compatibility.CheckType.CAN_READ;
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.ALL_INCOMPATIBILITIES;
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.VERDICT_ONLY;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+public class CompatibilityCacheTest {
+
+  private final Schema intSchema = SchemaBuilder.builder().intType();
+  private final Schema longSchema = SchemaBuilder.builder().longType();
+  private final Schema stringSchema = SchemaBuilder.builder().stringType();
+  private final SchemaPairCompatibility canRead = CAN_READ.validate(longSchema, intSchema);
+  private final FakeTicker ticker = new FakeTicker();
+
+  @Test
+  public void testMiss() {
+    CompatibilityCache cache = new CompatibilityCache(16);
+    assertThat(cache.get(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES), is(nullValue()));
+  }
+
+  @Test
+  public void testHitReturnsCachedInstance() {
+    CompatibilityCache cache = new CompatibilityCache(16);
+    cache.put(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES, canRead);
+    assertThat(cache.get(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES), is(sameInstance(canRead)));
+  }
+
+  @Test
+  public void testHitRebindsEqualSchemas() {
+    CompatibilityCache cache = new CompatibilityCache(16);
+    cache.put(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES, canRead);
+    Schema otherLongSchema = SchemaBuilder.builder().longType();
+    Schema otherIntSchema = SchemaBuilder.builder().intType();
+
+    SchemaPairCompatibility cached = cache.get(CAN_READ, otherLongSchema, otherIntSchema, ALL_INCOMPATIBILITIES);
+
+    assertThat(cached.getType(), is(SchemaCompatibilityType.COMPATIBLE));
+    assertThat(cached.getReader(), is(sameInstance(otherLongSchema)));
+    assertThat(cached.getWriter(), is(sameInstance(otherIntSchema)));
+  }
+
+  @Test
+  public void testCheckTypeIsPartOfKey() {
+    CompatibilityCache cache = new CompatibilityCache(16);
+    cache.put(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES, canRead);
+    assertThat(cache.get(CAN_BE_READ_BY, longSchema, intSchema, ALL_INCOMPATIBILITIES), is(nullValue()));
+  }
+
+  @Test
+  public void testDirectionIsPartOfKey() {
+    CompatibilityCache cache = new CompatibilityCache(16);
+    cache.put(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES, canRead);
+    assertThat(cache.get(CAN_READ, intSchema, longSchema, ALL_INCOMPATIBILITIES), is(nullValue()));
+  }
+
+  @Test
+  public void testMaximumIncompatibilitiesIsPartOfKey() {
+    CompatibilityCache cache = new CompatibilityCache(16);
+    cache.put(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES, canRead);
+    assertThat(cache.get(CAN_READ, longSchema, intSchema, VERDICT_ONLY), is(nullValue()));
+  }
+
+  @Test
+  public void testOldestEvictedWhenFull() {
+    CompatibilityCache cache = new CompatibilityCache(2, 0L, TimeUnit.NANOSECONDS, ticker);
+    cache.put(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES, canRead);
+    ticker.advance(1L);
+    cache.put(CAN_READ, stringSchema, intSchema, ALL_INCOMPATIBILITIES, CAN_READ.validate(stringSchema, intSchema));
+    ticker.advance(1L);
+    cache.put(CAN_READ, stringSchema, longSchema, ALL_INCOMPATIBILITIES, CAN_READ.validate(stringSchema, longSchema));
+
+    assertThat(cache.get(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES), is(nullValue()));
+    assertThat(cache.get(CAN_READ, stringSchema, intSchema, ALL_INCOMPATIBILITIES).getType(),
+        is(SchemaCompatibilityType.INCOMPATIBLE));
+    assertThat(cache.get(CAN_READ, stringSchema, longSchema, ALL_INCOMPATIBILITIES).getType(),
+        is(SchemaCompatibilityType.INCOMPATIBLE));
+  }
+
+  @Test
+  public void testExpireAfterWrite() {
+    CompatibilityCache cache = new CompatibilityCache(16, 10L, TimeUnit.SECONDS, ticker);
+    cache.put(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES, canRead);
+
+    ticker.advance(TimeUnit.SECONDS.toNanos(9L));
+    assertThat(cache.get(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES), is(sameInstance(canRead)));
+    ticker.advance(TimeUnit.SECONDS.toNanos(1L));
+    assertThat(cache.get(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES), is(nullValue()));
+  }
+
+  @Test
+  public void testInvalidateAll() {
+    CompatibilityCache cache = new CompatibilityCache(16);
+    cache.put(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES, canRead);
+    cache.invalidateAll();
+    assertThat(cache.get(CAN_READ, longSchema, intSchema, ALL_INCOMPATIBILITIES), is(nullValue()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaximumSizeMustBePositive() {
+    new CompatibilityCache(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testExpiryCannotBeNegative() {
+    new CompatibilityCache(16, -1L, TimeUnit.SECONDS);
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long nanos) {
+      this.nanos += nanos;
+    }
+  }
+
+}
@@ -21,7 +21,10 @@ import static com.hotels.avro.compatibility.Compatibility.ChronologyType.ALL;
 import static com.hotels.avro.compatibility.Compatibility.ChronologyType.LATEST;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Collections;
 
 import org.apache.avro.Schema;
@@ -93,9 +96,60 @@ public class CompatibilityCheckResultTest {
     assertThat(result.asMessage(), is("Compatibility type 'CAN_READ' does not hold between schemas, incompatibilities: ['FIXED_SIZE_MISMATCH: message' at '/']."));
   }
 
+  @Test
+  public void testAsMessageCompatible() {
+    CompatibilityCheckResult result = new CompatibilityCheckResult(CAN_READ, ALL, pairCompatible);
+    assertThat(result.asMessage(), is("Compatibility type 'CAN_READ' holds between schemas."));
+  }
+
+  @Test
+  public void testAppendMessage() throws IOException {
+    CompatibilityCheckResult result = new CompatibilityCheckResult(CAN_READ, ALL, pairIncompatible);
+    StringWriter writer = new StringWriter();
+    result.appendMessage(writer);
+    assertThat(writer.toString(), is(result.asMessage()));
+  }
+
+  @Test
+  public void testAsMessageLimitedIncompatibilities() {
+    CompatibilityCheckResult result = new CompatibilityCheckResult(CAN_READ, ALL, threeIncompatibilities());
+    assertThat(result.asMessage(MessageLimits.of(1, Integer.MAX_VALUE)), is(
+        "Compatibility type 'CAN_READ' does not hold between schemas, incompatibilities: ['FIXED_SIZE_MISMATCH: a' at '/'] ... and 2 more."));
+  }
+
+  @Test
+  public void testAsMessageLimitedCharacters() {
+    CompatibilityCheckResult result = new CompatibilityCheckResult(CAN_READ, ALL, threeIncompatibilities());
+    assertThat(result.asMessage(MessageLimits.of(Integer.MAX_VALUE, 90)), is(
+        "Compatibility type 'CAN_READ' does not hold between schemas, incompatibilities: ['FIXED_SI] ... and 2 more."));
+  }
+
   @Test(expected = SchemaCompatibilityException.class)
   public void testThrowIfIncompatible() throws SchemaCompatibilityException {
     new CompatibilityCheckResult(CAN_READ, ALL, pairIncompatible).throwIfIncompatible();
   }
 
+  @Test
+  public void testExceptionMessageIsLimitedAndRenderedOnce() {
+    CompatibilityCheckResult result = new CompatibilityCheckResult(CAN_READ, ALL, threeIncompatibilities());
+    try {
+      result.throwIfIncompatible(MessageLimits.of(2, Integer.MAX_VALUE));
+      fail();
+    } catch (SchemaCompatibilityException e) {
+      assertThat(e.getMessage(), is(
+          "Compatibility type 'CAN_READ' does not hold between 1 schema(s) in the chronology because: Schema[0] has incompatibilities: ['FIXED_SIZE_MISMATCH: a' at '/','FIXED_SIZE_MISMATCH: b' at '/'] ... and 1 more."));
+      assertThat(e.getMessage() == e.getMessage(), is(true));
+    }
+  }
+
+  private SchemaPairCompatibility threeIncompatibilities() {
+    SchemaCompatibilityResult result = SchemaCompatibilityResult.incompatible(
+        SchemaIncompatibilityType.FIXED_SIZE_MISMATCH, reader, writer, "a", Collections.singletonList("/"));
+    result = result.mergedWith(SchemaCompatibilityResult.incompatible(SchemaIncompatibilityType.FIXED_SIZE_MISMATCH,
+        reader, writer, "b", Collections.singletonList("/")));
+    result = result.mergedWith(SchemaCompatibilityResult.incompatible(SchemaIncompatibilityType.FIXED_SIZE_MISMATCH,
+        reader, writer, "c", Collections.singletonList("/")));
+    return new SchemaPairCompatibility(result, reader, writer, "description");
+  }
+
 }
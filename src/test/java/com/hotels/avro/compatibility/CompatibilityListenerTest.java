@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaCompatibility.Incompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Test;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+public class CompatibilityListenerTest {
+
+  private final Schema toValidate = SchemaBuilder.record("r").fields().requiredLong("a").endRecord();
+  private final Schema intSchema = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final Schema stringSchema = SchemaBuilder.record("r").fields().requiredString("a").endRecord();
+  private final List<Schema> history = Arrays.asList(intSchema, stringSchema, intSchema);
+
+  private final RecordingListener listener = new RecordingListener();
+
+  @Test
+  public void testChronologyCheck() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().listener(listener).build();
+
+    ChronologyCompatibilityCheckResult result = Mode.CAN_READ_ALL.check(toValidate, history, configuration);
+
+    assertThat(listener.results.size(), is(1));
+    assertThat(listener.results.get(0), is(sameInstance(result)));
+    assertThat(listener.schemaSize, is(2));
+    assertThat(listener.pairChecks, is(3));
+    assertThat(listener.pairs.size(), is(3));
+    assertThat(listener.incompatibilities.get(SchemaIncompatibilityType.TYPE_MISMATCH), is(1));
+    assertThat(listener.elapsedNanos >= 0L, is(true));
+  }
+
+  @Test
+  public void testPairsCountedWhenFailingFast() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .failFast(true)
+        .listener(listener)
+        .build();
+
+    Mode.CAN_READ_ALL.check(toValidate, history, configuration);
+
+    assertThat(listener.pairChecks, is(2));
+  }
+
+  @Test
+  public void testCacheHitsAndMisses() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .cache(new CompatibilityCache(16))
+        .listener(listener)
+        .build();
+
+    Compatibility.checkThat(toValidate, configuration).canRead().all(history);
+
+    assertThat(listener.cacheMisses, is(2));
+    assertThat(listener.cacheHits, is(1));
+    assertThat(listener.pairChecks, is(3));
+  }
+
+  @Test
+  public void testEachCandidateReported() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().listener(listener).build();
+
+    Mode.CAN_READ_LATEST.checkEach(Arrays.asList(toValidate, stringSchema), history, configuration);
+
+    assertThat(listener.results.size(), is(2));
+    assertThat(listener.pairs.size(), is(2));
+  }
+
+  @Test
+  public void testNoListenerByDefault() {
+    assertThat(CompatibilityConfiguration.DEFAULT.getListener(), is(CompatibilityListener.NONE));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testListenerCannotBeNull() {
+    CompatibilityConfiguration.builder().listener(null);
+  }
+
+  private static final class RecordingListener extends CompatibilityListener {
+    private final List<ChronologyCompatibilityCheckResult> results = new ArrayList<>();
+    private final List<SchemaPairCompatibility> pairs = new ArrayList<>();
+    private final Map<SchemaIncompatibilityType, Integer> incompatibilities = new EnumMap<>(
+        SchemaIncompatibilityType.class);
+    private int schemaSize;
+    private int pairChecks;
+    private long elapsedNanos;
+    private int cacheHits;
+    private int cacheMisses;
+
+    @Override
+    public void chronologyChecked(
+        ChronologyCompatibilityCheckResult result,
+        Schema toValidate,
+        int schemaSize,
+        int pairChecks,
+        long elapsedNanos) {
+      results.add(result);
+      this.schemaSize = schemaSize;
+      this.pairChecks = pairChecks;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    @Override
+    public void pairChecked(CheckType check, SchemaPairCompatibility compatibility, long elapsedNanos) {
+      pairs.add(compatibility);
+      for (Incompatibility incompatibility : compatibility.getResult().getIncompatibilities()) {
+        Integer count = incompatibilities.get(incompatibility.getType());
+        incompatibilities.put(incompatibility.getType(), count == null ? 1 : count + 1);
+      }
+    }
+
+    @Override
+    public void cacheHit(CheckType check) {
+      cacheHits++;
+    }
+
+    @Override
+    public void cacheMiss(CheckType check) {
+      cacheMisses++;
+    }
+  }
+
+}
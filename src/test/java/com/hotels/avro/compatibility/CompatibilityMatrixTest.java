@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.junit.After;
+import org.junit.Test;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+
+public class CompatibilityMatrixTest {
+
+  private final Schema intSchema = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final Schema longSchema = SchemaBuilder.record("r").fields().requiredLong("a").endRecord();
+  private final Schema optionalSchema = SchemaBuilder
+      .record("r")
+      .fields()
+      .requiredLong("a")
+      .optionalString("b")
+      .endRecord();
+  private final Schema stringSchema = SchemaBuilder.record("r").fields().requiredString("a").endRecord();
+  private final Schema documentedIntSchema = SchemaBuilder.record("r").doc("documented").fields().requiredInt("a")
+      .endRecord();
+  private final List<Schema> history = Arrays.asList(intSchema, longSchema, optionalSchema, stringSchema,
+      documentedIntSchema);
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testMatchesPairChecks() {
+    assertMatchesPairChecks(CompatibilityMatrix.of(history));
+  }
+
+  @Test
+  public void testParallelMatchesPairChecks() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .executor(executor)
+        .cache(new CompatibilityCache(64))
+        .build();
+    assertMatchesPairChecks(CompatibilityMatrix.of(history, configuration));
+  }
+
+  @Test
+  public void testDirections() {
+    CompatibilityMatrix matrix = CompatibilityMatrix.of(history);
+
+    assertThat(matrix.canRead(1, 0), is(true));
+    assertThat(matrix.canRead(0, 1), is(false));
+    assertThat(matrix.canBeReadBy(0, 1), is(true));
+    assertThat(matrix.mutualRead(1, 2), is(true));
+    assertThat(matrix.mutualRead(0, 4), is(true));
+    assertThat(matrix.mutualRead(0, 1), is(false));
+  }
+
+  @Test
+  public void testEmpty() {
+    CompatibilityMatrix matrix = CompatibilityMatrix.of(Arrays.<Schema> asList());
+
+    assertThat(matrix.size(), is(0));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testIndexOutOfBounds() {
+    CompatibilityMatrix.of(history).canRead(0, history.size());
+  }
+
+  private void assertMatchesPairChecks(CompatibilityMatrix matrix) {
+    assertThat(matrix.size(), is(history.size()));
+    assertThat(matrix.getSchemas(), is(history));
+    for (CheckType check : CheckType.values()) {
+      for (int i = 0; i < history.size(); i++) {
+        for (int j = 0; j < history.size(); j++) {
+          SchemaCompatibilityType expected = check.validate(history.get(i), history.get(j)).getType();
+          assertThat(check + " " + i + " " + j, matrix.isCompatible(check, i, j),
+              is(expected == SchemaCompatibilityType.COMPATIBLE));
+        }
+      }
+    }
+  }
+
+}
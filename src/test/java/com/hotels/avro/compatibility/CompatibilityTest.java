@@ -18,6 +18,7 @@ package com.hotels.avro.compatibility;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import org.apache.avro.Schema;
@@ -219,6 +220,78 @@ public class CompatibilityTest {
         Compatibility.checkThat(schema1).mutualReadWith().all(schema2, schema3).isCompatible());
   }
 
+  @Test
+  public void testCachedVerdictsMatchUncached() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder()
+        .cache(new CompatibilityCache(64))
+        .build();
+    for (int i = 0; i < 2; i++) {
+      assertTrue("adding a field with default is a backward compatible change",
+          Compatibility.checkThat(schema2, configuration).canRead(schema1).isCompatible());
+      assertFalse("removing a default is not a transitively compatible change",
+          Compatibility.Mode.CAN_READ_ALL.check(schema3, Arrays.asList(schema2, schema1), configuration).isCompatible());
+      assertFalse("transitively removing a field without a default is not a compatible change",
+          Compatibility.checkThat(schema1, configuration).mutualReadWith().all(schema2, schema3).isCompatible());
+    }
+  }
+
+  @Test
+  public void testFailFastStopsAtLatestIncompatibleSchema() {
+    ChronologyCompatibilityCheckResult result = Compatibility.checkThat(schema3).canRead().failFast().all(schema1,
+        schema2, schema1);
+
+    assertFalse(result.isCompatible());
+    assertTrue(result.isTruncated());
+    assertTrue(result.getFailedIndex() == 2);
+    assertTrue(result.getResults().size() == 1);
+    assertTrue(result.getResults().get(0).getWriter() == schema1);
+  }
+
+  @Test
+  public void testFailFastCompatibleChecksWholeChronology() {
+    ChronologyCompatibilityCheckResult result = Compatibility.Mode.CAN_READ_ALL.checkFailFast(schema8,
+        Arrays.asList(schema1, schema2));
+
+    assertTrue(result.isCompatible());
+    assertFalse(result.isTruncated());
+    assertTrue(result.getResults().size() == 2);
+    assertTrue(result.getResults().get(0).getWriter() == schema1);
+    assertTrue(result.getResults().get(1).getWriter() == schema2);
+  }
+
+  @Test
+  public void testFailFastConfiguration() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().failFast(true).build();
+    ChronologyCompatibilityCheckResult result = Compatibility.Mode.MUTUAL_READ_WITH_ALL.check(schema1,
+        Collections.singleton(schema3), configuration);
+
+    assertFalse(result.isCompatible());
+    assertTrue(result.getFailedIndex() == 0);
+  }
+
+  @Test
+  public void testVerdictOnlyMatchesFullDetail() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder()
+        .maximumIncompatibilities(CompatibilityConfiguration.VERDICT_ONLY)
+        .build();
+    assertTrue("iteratively adding fields with defaults is a compatible change",
+        Compatibility.Mode.CAN_READ_ALL.check(schema8, Arrays.asList(schema1, schema2), configuration).isCompatible());
+    assertFalse("removing a default is not a transitively compatible change",
+        Compatibility.Mode.CAN_READ_ALL.check(schema3, Arrays.asList(schema2, schema1), configuration).isCompatible());
+    assertFalse("transitively removing a field without a default is not a compatible change",
+        Compatibility.checkThat(schema1, configuration).mutualReadWith().all(schema2, schema3).isCompatible());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaximumIncompatibilitiesCannotBeNegative() {
+    CompatibilityConfiguration.builder().maximumIncompatibilities(-1);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testConfigurationCannotBeNull() {
+    Compatibility.checkThat(schema1, null);
+  }
+
   @Test(expected = NullPointerException.class)
   public void testSchemaToBeCheckedCannotBeNull() {
     Compatibility.checkThat(null);
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Type;
+import org.junit.Test;
+
+import com.hotels.avro.compatibility.Compatibility.Mode;
+import com.hotels.avro.compatibility.CompiledSchema.Node;
+
+public class CompiledSchemaTest {
+
+  private static final String RECORD = "{\"type\":\"record\",\"name\":\"r\",\"namespace\":\"n\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"int\",\"aliases\":[\"x\"]},"
+      + "{\"name\":\"b\",\"type\":{\"type\":\"enum\",\"name\":\"e\",\"symbols\":[\"X\",\"Y\"],\"default\":\"X\"}},"
+      + "{\"name\":\"c\",\"type\":[\"null\",\"long\",\"string\",\"r\"]}]}";
+
+  @Test
+  public void testCompiledOncePerInstance() {
+    Schema schema = parse(RECORD);
+    CompiledSchema compiled = CompiledSchema.compile(schema);
+    assertThat(CompiledSchema.compile(schema), is(sameInstance(compiled)));
+    assertThat(compiled.getSchema(), is(sameInstance(schema)));
+  }
+
+  @Test
+  public void testNamesAreInterned() {
+    Node first = CompiledSchema.compile(parse(RECORD)).getRoot();
+    Node second = CompiledSchema.compile(parse(RECORD)).getRoot();
+    assertThat(first.name, is(sameInstance(second.name)));
+    assertThat(first.fields.get(1).schema.name, is(sameInstance(second.fields.get(1).schema.name)));
+  }
+
+  @Test
+  public void testRecursiveTypesAreCompiledOnce() {
+    Node root = CompiledSchema.compile(parse(RECORD)).getRoot();
+    assertThat(root.fields.get(2).schema.branches.get(3), is(sameInstance(root)));
+  }
+
+  @Test
+  public void testFieldsAndSymbols() {
+    Node root = CompiledSchema.compile(parse(RECORD)).getRoot();
+    assertThat(root.fieldsByName.get("a"), is(sameInstance(root.fields.get(0))));
+    assertThat(root.fields.get(0).aliases.contains("x"), is(true));
+    Node e = root.fields.get(1).schema;
+    assertThat(e.symbols.contains("Y"), is(true));
+    assertThat(e.enumDefault, is("X"));
+  }
+
+  @Test
+  public void testUnionBranchesAreIndexedByReadableType() {
+    Node union = CompiledSchema.compile(parse(RECORD)).getRoot().fields.get(2).schema;
+    assertThat(union.branchesReading[Type.INT.ordinal()], is(new int[] { 1 }));
+    assertThat(union.branchesReading[Type.BYTES.ordinal()], is(new int[] { 2 }));
+    assertThat(union.branchesReading[Type.RECORD.ordinal()], is(new int[] { 3 }));
+    assertThat(union.branchesReading[Type.MAP.ordinal()].length, is(0));
+  }
+
+  @Test
+  public void testChecksUseCompiledSchemas() {
+    CompiledSchema narrow = CompiledSchema.compile(parse(RECORD));
+    CompiledSchema wide = CompiledSchema.compile(parse(RECORD.replace("\"type\":\"int\"", "\"type\":\"long\"")));
+    assertThat(Compatibility.checkThat(narrow.getSchema()).canRead(wide.getSchema()).isCompatible(), is(false));
+    assertThat(Compatibility.checkThat(narrow.getSchema()).canBeReadBy(wide.getSchema()).isCompatible(), is(true));
+    assertThat(Mode.CAN_BE_READ_BY_ALL.check(narrow.getSchema(), Arrays.asList(wide.getSchema())).isCompatible(),
+        is(true));
+  }
+
+  @Test(expected = AvroRuntimeException.class)
+  public void testAmbiguousFieldAliasFails() {
+    Schema reader = parse(RECORD.replace("\"aliases\":[\"x\"]", "\"aliases\":[\"b\"]"));
+    ReaderWriterChecker.checkReaderWriterCompatibility(reader, parse(RECORD), 1);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testSchemaCannotBeNull() {
+    CompiledSchema.compile(null);
+  }
+
+  private static Schema parse(String schema) {
+    return new Schema.Parser().parse(schema);
+  }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.hotels.avro.compatibility.Compatibility.CheckType.CAN_READ;
+import static com.hotels.avro.compatibility.Compatibility.CheckType.MUTUAL_READ;
+import static com.hotels.avro.compatibility.Compatibility.ChronologyType.ALL;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.Test;
+
+public class EquivalentSchemasTest {
+
+  private final Schema toValidate = SchemaBuilder.record("r").fields().requiredLong("a").endRecord();
+  private final Schema intSchema = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final Schema documentedIntSchema = SchemaBuilder
+      .record("r")
+      .doc("documented")
+      .fields()
+      .name("a")
+      .doc("field")
+      .type()
+      .intType()
+      .noDefault()
+      .endRecord();
+  private final Schema stringSchema = SchemaBuilder.record("r").fields().requiredString("a").endRecord();
+  private final Schema otherIntSchema = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final List<Schema> history = Arrays.asList(intSchema, stringSchema, documentedIntSchema, otherIntSchema);
+
+  @Test
+  public void testResultsExpandedOntoEverySchema() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().deduplicate(true).build();
+
+    ChronologyCompatibilityCheckResult result = EquivalentSchemas.check(ALL, CAN_READ, toValidate, history,
+        configuration);
+
+    assertThat(result, is(ALL.check(CAN_READ, toValidate, history, CompatibilityConfiguration.DEFAULT)));
+    for (int i = 0; i < history.size(); i++) {
+      assertThat(result.getResults().get(i).getWriter(), is(sameInstance(history.get(i))));
+      assertThat(result.getResults().get(i).getReader(), is(sameInstance(toValidate)));
+    }
+  }
+
+  @Test
+  public void testMutualReadResultsExpandedOntoEverySchema() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().deduplicate(true).build();
+
+    ChronologyCompatibilityCheckResult result = Compatibility.Mode.MUTUAL_READ_WITH_ALL.check(toValidate, history,
+        configuration);
+
+    assertThat(result, is(Compatibility.Mode.MUTUAL_READ_WITH_ALL.check(toValidate, history)));
+  }
+
+  @Test
+  public void testFailFastReportsLatestOccurrence() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .deduplicate(true)
+        .failFast(true)
+        .build();
+
+    ChronologyCompatibilityCheckResult result = EquivalentSchemas.check(ALL, MUTUAL_READ, toValidate, history,
+        configuration);
+
+    assertThat(result.getFailedIndex(), is(3));
+    assertThat(result.getResults().get(0).getReader(), is(sameInstance(otherIntSchema)));
+  }
+
+  @Test
+  public void testClassesOrderedByLatestOccurrence() {
+    ChronologyCompatibilityCheckResult result = Compatibility.Mode.CAN_READ_ALL.check(toValidate,
+        Arrays.asList(stringSchema, intSchema, stringSchema), CompatibilityConfiguration
+            .builder()
+            .deduplicate(true)
+            .failFast(true)
+            .build());
+
+    assertThat(result.getFailedIndex(), is(2));
+  }
+
+}
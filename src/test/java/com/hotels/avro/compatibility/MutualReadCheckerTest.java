@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.ALL_INCOMPATIBILITIES;
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.VERDICT_ONLY;
+import static com.hotels.avro.compatibility.ReaderWriterCheckerTest.locations;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityResult;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Test;
+
+public class MutualReadCheckerTest {
+
+  private final List<Schema> corpus = ReaderWriterCheckerTest.parseCorpus();
+
+  @Test
+  public void testMatchesBothDirectionsForEveryPair() {
+    for (Schema toValidate : corpus) {
+      for (Schema existing : corpus) {
+        SchemaPairCompatibility expected = bothDirections(toValidate, existing, ALL_INCOMPATIBILITIES);
+        SchemaPairCompatibility actual = checkMutualRead(toValidate, existing, ALL_INCOMPATIBILITIES);
+        assertThat(toValidate + " with " + existing, actual, is(expected));
+        assertThat(locations(actual), is(locations(expected)));
+      }
+    }
+  }
+
+  @Test
+  public void testVerdictMatchesBothDirectionsForEveryPair() {
+    for (Schema toValidate : corpus) {
+      for (Schema existing : corpus) {
+        SchemaPairCompatibility expected = bothDirections(toValidate, existing, ALL_INCOMPATIBILITIES);
+        SchemaPairCompatibility actual = checkMutualRead(toValidate, existing, VERDICT_ONLY);
+        assertThat(toValidate + " with " + existing, actual.getType(), is(expected.getType()));
+        assertThat(actual.getReader(), is(sameInstance(expected.getReader())));
+      }
+    }
+  }
+
+  @Test
+  public void testLimitedMatchesBothDirectionsForEveryPair() {
+    for (int limit = 1; limit <= 3; limit++) {
+      for (Schema toValidate : corpus) {
+        for (Schema existing : corpus) {
+          SchemaPairCompatibility expected = bothDirections(toValidate, existing, limit);
+          SchemaPairCompatibility actual = checkMutualRead(toValidate, existing, limit);
+          assertThat(toValidate + " with " + existing, actual, is(expected));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReportsBothDirections() {
+    Schema toValidate = SchemaBuilder.record("R").fields().requiredLong("a").requiredString("b").endRecord();
+    Schema existing = SchemaBuilder.record("R").fields().requiredInt("a").requiredString("c").endRecord();
+
+    SchemaPairCompatibility compatibility = checkMutualRead(toValidate, existing, ALL_INCOMPATIBILITIES);
+
+    assertThat(compatibility.getReader(), is(sameInstance(existing)));
+    assertThat(compatibility.getResult().getIncompatibilities().size(), is(3));
+    assertThat(compatibility.getResult().getIncompatibilities().get(0).getType(),
+        is(SchemaIncompatibilityType.TYPE_MISMATCH));
+    assertThat(compatibility.getResult().getIncompatibilities().get(2).getReaderFragment(),
+        is(sameInstance(toValidate)));
+  }
+
+  @Test
+  public void testReaderIsToValidateWhenOnlyItCannotRead() {
+    Schema toValidate = SchemaBuilder.record("R").fields().requiredInt("a").endRecord();
+    Schema existing = SchemaBuilder.record("R").fields().requiredLong("a").endRecord();
+
+    SchemaPairCompatibility compatibility = checkMutualRead(toValidate, existing, ALL_INCOMPATIBILITIES);
+
+    assertThat(compatibility.getType(), is(SchemaCompatibilityType.INCOMPATIBLE));
+    assertThat(compatibility.getReader(), is(sameInstance(toValidate)));
+    assertThat(Compatibility.CheckType.MUTUAL_READ.rebind(compatibility, toValidate, existing),
+        is(sameInstance(compatibility)));
+  }
+
+  private static SchemaPairCompatibility checkMutualRead(Schema toValidate, Schema existing, int limit) {
+    return MutualReadChecker.checkMutualRead(CompiledSchema.compile(toValidate), CompiledSchema.compile(existing),
+        limit);
+  }
+
+  /** The incompatibilities of two one way checks, existing reading first. */
+  private static SchemaPairCompatibility bothDirections(Schema toValidate, Schema existing, int limit) {
+    SchemaPairCompatibility existingReads = ReaderWriterChecker.checkReaderWriterCompatibility(existing, toValidate,
+        limit);
+    if (existingReads.getType() == SchemaCompatibilityType.COMPATIBLE) {
+      return ReaderWriterChecker.checkReaderWriterCompatibility(toValidate, existing, limit);
+    }
+    int remaining = limit - existingReads.getResult().getIncompatibilities().size();
+    if (remaining == 0) {
+      return existingReads;
+    }
+    SchemaPairCompatibility toValidateReads = ReaderWriterChecker.checkReaderWriterCompatibility(toValidate, existing,
+        remaining);
+    if (toValidateReads.getType() == SchemaCompatibilityType.COMPATIBLE) {
+      return existingReads;
+    }
+    SchemaCompatibilityResult result = existingReads.getResult().mergedWith(toValidateReads.getResult());
+    return new SchemaPairCompatibility(result, existing, toValidate, existingReads.getDescription());
+  }
+
+}
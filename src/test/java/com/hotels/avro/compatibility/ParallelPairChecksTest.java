@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.hotels.avro.compatibility.Compatibility.CheckType.CAN_READ;
+import static com.hotels.avro.compatibility.Compatibility.CheckType.MUTUAL_READ;
+import static com.hotels.avro.compatibility.Compatibility.ChronologyType.ALL;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelPairChecksTest {
+
+  private final Schema toValidate = SchemaBuilder
+      .record("r")
+      .fields()
+      .requiredLong("a")
+      .optionalString("b")
+      .endRecord();
+  private final List<Schema> history = new ArrayList<>();
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 50; i++) {
+      if (i % 7 == 3) {
+        history.add(SchemaBuilder.record("r").fields().requiredString("a").endRecord());
+      } else if (i % 2 == 0) {
+        history.add(SchemaBuilder.record("r").fields().requiredInt("a").endRecord());
+      } else {
+        history.add(SchemaBuilder.record("r").fields().requiredLong("a").optionalString("b").endRecord());
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testResultsInChronologicalOrder() {
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().executor(executor).build();
+
+    ChronologyCompatibilityCheckResult result = ParallelPairChecks.check(ALL, CAN_READ, toValidate, history,
+        configuration);
+
+    assertThat(result, is(ALL.check(CAN_READ, toValidate, history, CompatibilityConfiguration.DEFAULT)));
+    assertThat(result.getResults().size(), is(50));
+    assertThat(result.isCompatible(), is(false));
+  }
+
+  @Test
+  public void testFailFastReportsLatestFailure() {
+    CompatibilityConfiguration sequential = CompatibilityConfiguration.builder().failFast(true).build();
+    CompatibilityConfiguration configuration = sequential.toBuilder().executor(executor).build();
+
+    ChronologyCompatibilityCheckResult result = ParallelPairChecks.check(ALL, MUTUAL_READ, toValidate, history,
+        configuration);
+
+    assertThat(result, is(ALL.check(MUTUAL_READ, toValidate, history, sequential)));
+    assertThat(result.isTruncated(), is(true));
+    assertThat(result.getFailedIndex(), is(48));
+  }
+
+  @Test
+  public void testFailFastCompatible() {
+    List<Schema> compatibleHistory = history.subList(0, 3);
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .failFast(true)
+        .executor(executor)
+        .build();
+
+    ChronologyCompatibilityCheckResult result = ParallelPairChecks.check(ALL, CAN_READ, toValidate,
+        compatibleHistory, configuration);
+
+    assertThat(result.isCompatible(), is(true));
+    assertThat(result.isTruncated(), is(false));
+    assertThat(result.getResults().size(), is(3));
+  }
+
+  @Test
+  public void testRejectedChecksRunOnCallingThread() {
+    Executor rejecting = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    };
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().executor(rejecting).build();
+
+    ChronologyCompatibilityCheckResult result = Compatibility.checkThat(toValidate, configuration).canRead().all(
+        history);
+
+    assertThat(result, is(Compatibility.checkThat(toValidate).canRead().all(history)));
+  }
+
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.ALL_INCOMPATIBILITIES;
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.VERDICT_ONLY;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.SchemaCompatibility.Incompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+public class ReaderWriterCheckerTest {
+
+  static final String[] CORPUS = {
+      "\"null\"",
+      "\"boolean\"",
+      "\"int\"",
+      "\"long\"",
+      "\"float\"",
+      "\"double\"",
+      "\"bytes\"",
+      "\"string\"",
+      "{\"type\":\"array\",\"items\":\"int\"}",
+      "{\"type\":\"array\",\"items\":\"long\"}",
+      "{\"type\":\"map\",\"values\":\"string\"}",
+      "{\"type\":\"map\",\"values\":\"bytes\"}",
+      "[\"null\",\"int\"]",
+      "[\"null\",\"string\",\"int\"]",
+      "[\"long\",\"string\"]",
+      "{\"type\":\"fixed\",\"name\":\"F\",\"size\":4}",
+      "{\"type\":\"fixed\",\"name\":\"F\",\"size\":8}",
+      "{\"type\":\"fixed\",\"name\":\"G\",\"aliases\":[\"F\"],\"size\":4}",
+      "{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"A\",\"B\"]}",
+      "{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"A\",\"B\",\"C\",\"D\"]}",
+      "{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"A\",\"U\"],\"default\":\"U\"}",
+      "{\"type\":\"enum\",\"name\":\"X\",\"symbols\":[\"A\"]}",
+      "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"}]}",
+      "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"long\"},"
+          + "{\"name\":\"b\",\"type\":\"string\",\"default\":\"\"}]}",
+      "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"string\"},"
+          + "{\"name\":\"b\",\"type\":\"string\"},{\"name\":\"c\",\"type\":[\"null\",\"int\"]}]}",
+      "{\"type\":\"record\",\"name\":\"S\",\"aliases\":[\"R\"],\"fields\":[{\"name\":\"z\",\"aliases\":[\"a\"],"
+          + "\"type\":\"int\"}]}",
+      "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":{\"type\":\"record\",\"name\":\"N\","
+          + "\"fields\":[{\"name\":\"x\",\"type\":{\"type\":\"array\",\"items\":\"int\"}},"
+          + "{\"name\":\"y\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"A\"]}}]}},"
+          + "{\"name\":\"b\",\"type\":[\"null\",\"N\"]},{\"name\":\"c\",\"type\":{\"type\":\"map\",\"values\":\"N\"}}]}",
+      "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":{\"type\":\"record\",\"name\":\"N\","
+          + "\"fields\":[{\"name\":\"x\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+          + "{\"name\":\"y\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"A\",\"B\"]}}]}},"
+          + "{\"name\":\"b\",\"type\":[\"null\",\"N\",\"int\"]},{\"name\":\"c\",\"type\":{\"type\":\"map\","
+          + "\"values\":\"N\"}}]}",
+      "{\"type\":\"record\",\"name\":\"L\",\"fields\":[{\"name\":\"v\",\"type\":\"int\"},"
+          + "{\"name\":\"next\",\"type\":[\"null\",\"L\"]}]}",
+      "{\"type\":\"record\",\"name\":\"L\",\"fields\":[{\"name\":\"v\",\"type\":\"long\"},"
+          + "{\"name\":\"w\",\"type\":\"string\"},{\"name\":\"next\",\"type\":[\"null\",\"L\"]}]}",
+      "[\"null\",{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"}]},\"string\"]",
+      "[{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"float\"}]},"
+          + "{\"type\":\"array\",\"items\":\"R\"}]",
+      "{\"type\":\"record\",\"name\":\"T\",\"fields\":[{\"name\":\"children\",\"type\":{\"type\":\"array\","
+          + "\"items\":{\"type\":\"record\",\"name\":\"U\",\"fields\":[{\"name\":\"parent\",\"type\":[\"null\",\"T\"]},"
+          + "{\"name\":\"n\",\"type\":\"int\"}]}}}]}",
+      "{\"type\":\"record\",\"name\":\"T\",\"fields\":[{\"name\":\"children\",\"type\":{\"type\":\"array\","
+          + "\"items\":{\"type\":\"record\",\"name\":\"U\",\"fields\":[{\"name\":\"parent\",\"type\":[\"null\",\"T\"]},"
+          + "{\"name\":\"n\",\"type\":\"string\"},{\"name\":\"m\",\"type\":\"int\"}]}}}]}" };
+
+  private final List<Schema> corpus = parseCorpus();
+
+  @Test
+  public void testMatchesAvroForEveryPair() {
+    for (Schema reader : corpus) {
+      for (Schema writer : corpus) {
+        SchemaPairCompatibility expected = SchemaCompatibility.checkReaderWriterCompatibility(reader, writer);
+        SchemaPairCompatibility actual = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+            ALL_INCOMPATIBILITIES);
+        assertThat(reader + " reading " + writer, actual, is(expected));
+        assertThat(locations(actual), is(locations(expected)));
+      }
+    }
+  }
+
+  @Test
+  public void testVerdictMatchesAvroForEveryPair() {
+    for (Schema reader : corpus) {
+      for (Schema writer : corpus) {
+        SchemaPairCompatibility expected = SchemaCompatibility.checkReaderWriterCompatibility(reader, writer);
+        SchemaPairCompatibility actual = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+            VERDICT_ONLY);
+        assertThat(reader + " reading " + writer, actual.getType(), is(expected.getType()));
+      }
+    }
+  }
+
+  @Test
+  public void testVerdictOnly() {
+    Schema reader = parse(CORPUS[24]);
+    Schema writer = parse(CORPUS[22]);
+
+    SchemaPairCompatibility compatibility = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+        VERDICT_ONLY);
+
+    assertThat(compatibility.getType(), is(SchemaCompatibilityType.INCOMPATIBLE));
+    assertThat(compatibility.getReader(), is(sameInstance(reader)));
+    assertThat(compatibility.getWriter(), is(sameInstance(writer)));
+    assertThat(compatibility.getDescription(), is(nullValue()));
+    List<Incompatibility> incompatibilities = compatibility.getResult().getIncompatibilities();
+    assertThat(incompatibilities.size(), is(1));
+    assertThat(incompatibilities.get(0).getType(), is(SchemaIncompatibilityType.TYPE_MISMATCH));
+    assertThat(incompatibilities.get(0).getMessage(), is(nullValue()));
+    assertThat(incompatibilities.get(0).getLocation(), is("/"));
+  }
+
+  @Test
+  public void testFirstIncompatibilities() {
+    Schema reader = parse(CORPUS[24]);
+    Schema writer = parse(CORPUS[22]);
+    List<Incompatibility> all = SchemaCompatibility
+        .checkReaderWriterCompatibility(reader, writer)
+        .getResult()
+        .getIncompatibilities();
+    assertThat(all.size(), is(3));
+
+    SchemaPairCompatibility first = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer, 2);
+
+    assertThat(first.getResult().getIncompatibilities(), is(all.subList(0, 2)));
+    assertThat(first.getDescription(), is(SchemaCompatibility.checkReaderWriterCompatibility(reader, writer)
+        .getDescription()));
+  }
+
+  @Test
+  public void testCompatibleVerdictOnly() {
+    Schema reader = parse(CORPUS[23]);
+    Schema writer = parse(CORPUS[22]);
+
+    SchemaPairCompatibility compatibility = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+        VERDICT_ONLY);
+
+    assertThat(compatibility, is(SchemaCompatibility.checkReaderWriterCompatibility(reader, writer)));
+  }
+
+  @Test
+  public void testSharedTypesAreWalkedOnce() {
+    Schema reader = chain(40, "long");
+    Schema writer = chain(40, "int");
+
+    SchemaPairCompatibility compatibility = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+        ALL_INCOMPATIBILITIES);
+
+    assertThat(compatibility, is(SchemaCompatibility.checkReaderWriterCompatibility(reader, writer)));
+  }
+
+  @Test
+  public void testSharedIncompatibleTypesStopAtLimit() {
+    Schema reader = chain(40, "int");
+    Schema writer = chain(40, "string");
+
+    SchemaPairCompatibility first = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer, 1);
+    SchemaPairCompatibility verdict = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+        VERDICT_ONLY);
+
+    assertThat(first.getResult().getIncompatibilities().size(), is(1));
+    assertThat(first.getResult().getIncompatibilities().get(0).getLocation(),
+        is(Strings.repeat("/fields/0/type", 41)));
+    assertThat(verdict.getType(), is(SchemaCompatibilityType.INCOMPATIBLE));
+  }
+
+  @Test
+  public void testSharedUnnamedTypesReportEachLocation() {
+    Schema readerItems = SchemaBuilder.array().items().intType();
+    Schema writerItems = SchemaBuilder.array().items().stringType();
+    Schema reader = SchemaBuilder.record("R").fields()
+        .name("a").type(readerItems).noDefault()
+        .name("b").type(readerItems).noDefault()
+        .endRecord();
+    Schema writer = SchemaBuilder.record("R").fields()
+        .name("a").type(writerItems).noDefault()
+        .name("b").type(writerItems).noDefault()
+        .endRecord();
+
+    SchemaPairCompatibility compatibility = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+        ALL_INCOMPATIBILITIES);
+
+    assertThat(locations(compatibility), is(Arrays.asList("/fields/0/type/items", "/fields/1/type/items")));
+  }
+
+  @Test
+  public void testMissingEnumFieldWithEnumDefaultOnlyCannotBeRead() {
+    String reader = "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"},"
+        + "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"A\"]%s}}]}";
+    Schema withEnumDefault = parse(String.format(reader, ",\"default\":\"A\""));
+    Schema withoutEnumDefault = parse(String.format(reader, ""));
+    Schema writer = parse(CORPUS[22]);
+
+    SchemaPairCompatibility compatibility = ReaderWriterChecker.checkReaderWriterCompatibility(withEnumDefault, writer,
+        ALL_INCOMPATIBILITIES);
+    // Avro 1.9.0 throws a NullPointerException for the reader with an enum default, so it is compared without one
+    SchemaPairCompatibility expected = SchemaCompatibility.checkReaderWriterCompatibility(withoutEnumDefault, writer);
+
+    assertThat(compatibility.getType(), is(SchemaCompatibilityType.INCOMPATIBLE));
+    assertThat(compatibility.getResult().getIncompatibilities().get(0).getType(),
+        is(SchemaIncompatibilityType.READER_FIELD_MISSING_DEFAULT_VALUE));
+    assertThat(locations(compatibility), is(locations(expected)));
+    assertThat(ReaderWriterChecker.checkReaderWriterCompatibility(withoutEnumDefault, writer, ALL_INCOMPATIBILITIES),
+        is(expected));
+  }
+
+  /** Each record in the chain refers to the next twice, so a walk that does not memoize visits 2^length records. */
+  private static Schema chain(int length, String leafType) {
+    StringBuilder schema = new StringBuilder("{\"type\":\"record\",\"name\":\"C" + length + "\",\"fields\":[");
+    schema.append("{\"name\":\"leaf\",\"type\":\"" + leafType + "\"}]}");
+    for (int i = length - 1; i >= 0; i--) {
+      schema.insert(0, "{\"type\":\"record\",\"name\":\"C" + i + "\",\"fields\":[{\"name\":\"left\",\"type\":");
+      schema.append("},{\"name\":\"right\",\"type\":\"C" + (i + 1) + "\"}]}");
+    }
+    return parse(schema.toString());
+  }
+
+  static List<Schema> parseCorpus() {
+    List<Schema> corpus = new ArrayList<>();
+    for (String schema : CORPUS) {
+      corpus.add(parse(schema));
+    }
+    return corpus;
+  }
+
+  private static Schema parse(String schema) {
+    return new Schema.Parser().parse(schema);
+  }
+
+  static List<String> locations(SchemaPairCompatibility compatibility) {
+    List<String> locations = new ArrayList<>();
+    for (Incompatibility incompatibility : compatibility.getResult().getIncompatibilities()) {
+      locations.add(incompatibility.getLocation());
+    }
+    return locations;
+  }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2017-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResolutionPlanTest {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final String WRITER = "{\"type\":\"record\",\"name\":\"r\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"int\"}]}";
+  private static final String READER = "{\"type\":\"record\",\"name\":\"r\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"long\"},"
+      + "{\"name\":\"b\",\"type\":\"string\",\"default\":\"%s\"}]}";
+
+  private final Schema writer = parse(WRITER);
+  private final Schema reader = parse(String.format(READER, "x"));
+
+  @Test
+  public void testReadsThroughPlanOfCompatibleResult() throws IOException {
+    ResolutionPlan plan = Compatibility.checkThat(reader).canRead(writer).getResolutionPlan();
+    DatumReader<GenericRecord> datumReader = plan.newDatumReader();
+
+    GenericRecord first = read(datumReader, 1, null);
+    GenericRecord second = read(datumReader, 2, first);
+
+    assertThat(plan.getWriter(), is(writer));
+    assertThat(plan.getReader(), is(reader));
+    assertThat(second, is(sameInstance(first)));
+    assertThat(second.get("a"), is((Object) 2L));
+    assertThat(second.get("b").toString(), is("x"));
+  }
+
+  @Test
+  public void testSharedByStructurallyEqualSchemas() {
+    ResolutionPlan plan = ResolutionPlan.of(writer, reader);
+
+    assertThat(ResolutionPlan.of(parse(WRITER), parse(String.format(READER, "x"))), is(sameInstance(plan)));
+    assertThat(Compatibility.checkThat(reader).canRead(writer).getResolutionPlan(), is(sameInstance(plan)));
+  }
+
+  @Test
+  public void testReaderDefaultsDistinguishPlans() throws IOException {
+    Schema otherReader = parse(String.format(READER, "y"));
+    ResolutionPlan plan = ResolutionPlan.of(writer, otherReader);
+
+    assertThat(plan, is(not(sameInstance(ResolutionPlan.of(writer, reader)))));
+    assertThat(read(plan.<GenericRecord> newDatumReader(), 1, null).get("b").toString(), is("y"));
+  }
+
+  @Test
+  public void testPlanOfCompactResult() {
+    CompatibilityCheckResult result = Compatibility.checkThat(reader).canRead(writer);
+    CompatibilityCheckResult compact = result.compact(SchemaLookup.of(Arrays.asList(writer, reader)));
+
+    assertThat(compact.getResolutionPlan(), is(sameInstance(result.getResolutionPlan())));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoPlanOfCompactResultForReaderWithOtherDefaults() {
+    CompatibilityCheckResult result = Compatibility.checkThat(reader).canRead(writer);
+    Schema otherReader = parse(String.format(READER, "y"));
+    CompatibilityCheckResult compact = result.compact(SchemaLookup.of(Arrays.asList(writer, otherReader)));
+
+    compact.getResolutionPlan();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testIncompatibleResultHasNoPlan() {
+    Compatibility.checkThat(writer).canRead(reader).getResolutionPlan();
+  }
+
+  @Test
+  public void testReadsDataFileThroughPlan() throws IOException {
+    File file = temporaryFolder.newFile("data.avro");
+    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(writer);
+    try (DataFileWriter<GenericRecord> fileWriter = new DataFileWriter<>(datumWriter)) {
+      fileWriter.create(parse(WRITER), file);
+      for (int i = 0; i < 3; i++) {
+        GenericRecord record = new GenericData.Record(writer);
+        record.put("a", i);
+        fileWriter.append(record);
+      }
+    }
+
+    List<Object> values = new ArrayList<>();
+    DatumReader<GenericRecord> datumReader = ResolutionPlan.of(writer, reader).newDatumReader();
+    try (DataFileReader<GenericRecord> fileReader = new DataFileReader<>(file, datumReader)) {
+      for (GenericRecord record : fileReader) {
+        assertThat(record.get("b").toString(), is("x"));
+        values.add(record.get("a"));
+      }
+    }
+
+    assertThat(values, is(Arrays.<Object> asList(0L, 1L, 2L)));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSchemasOfPlannedReaderAreFixed() {
+    ResolutionPlan.of(writer, reader).newDatumReader().setSchema(reader);
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    final ResolutionPlan plan = ResolutionPlan.of(writer, reader);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Long>> sums = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        sums.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws IOException {
+            DatumReader<GenericRecord> datumReader = plan.newDatumReader(new GenericData());
+            long sum = 0L;
+            GenericRecord record = null;
+            for (int i = 0; i < 1000; i++) {
+              record = read(datumReader, i, record);
+              sum += (Long) record.get("a");
+            }
+            return sum;
+          }
+        }));
+      }
+      for (Future<Long> sum : sums) {
+        assertThat(sum.get(), is(499500L));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private GenericRecord read(DatumReader<GenericRecord> datumReader, int a, GenericRecord reuse) throws IOException {
+    GenericRecord written = new GenericData.Record(writer);
+    written.put("a", a);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<GenericRecord>(writer).write(written, encoder);
+    encoder.flush();
+    return datumReader.read(reuse, DecoderFactory.get().binaryDecoder(out.toByteArray(), null));
+  }
+
+  private static Schema parse(String schema) {
+    return new Schema.Parser().parse(schema);
+  }
+
+}
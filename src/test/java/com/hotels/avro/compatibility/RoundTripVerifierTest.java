@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaBuilder.FieldAssembler;
+import org.apache.avro.SchemaCompatibility.Incompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaIncompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Test;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+
+public class RoundTripVerifierTest {
+
+  private static final Schema INT = Schema.create(Schema.Type.INT);
+  private static final Schema TIME_MILLIS = new Schema.Parser()
+      .parse("{\"type\":\"int\",\"logicalType\":\"time-millis\"}");
+
+  private final CompatibilityConfiguration configuration = CompatibilityConfiguration
+      .builder()
+      .verifier(new RoundTripVerifier(200))
+      .build();
+
+  @Test
+  public void testConfirmsStaticVerdictsOfCorpus() {
+    List<Schema> corpus = ReaderWriterCheckerTest.parseCorpus();
+    for (CheckType check : CheckType.values()) {
+      for (Schema toValidate : corpus) {
+        for (Schema existing : corpus) {
+          SchemaPairCompatibility expected = check.validate(toValidate, existing, CompatibilityConfiguration.DEFAULT);
+          SchemaPairCompatibility actual = check.validate(toValidate, existing, configuration);
+          assertThat(check + " " + toValidate + " with " + existing, actual, is(expected));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReportsValuesOutsideLogicalTypeOfReader() {
+    SchemaPairCompatibility compatibility = CheckType.CAN_READ.validate(TIME_MILLIS, INT, configuration);
+
+    assertThat(CheckType.CAN_READ.validate(TIME_MILLIS, INT).getType(), is(SchemaCompatibilityType.COMPATIBLE));
+    assertThat(compatibility.getType(), is(SchemaCompatibilityType.INCOMPATIBLE));
+    List<Incompatibility> incompatibilities = compatibility.getResult().getIncompatibilities();
+    assertThat(incompatibilities.size(), is(1));
+    assertThat(incompatibilities.get(0).getType(), is(SchemaIncompatibilityType.TYPE_MISMATCH));
+    assertThat(incompatibilities.get(0).getLocation(), is("/"));
+    assertThat(incompatibilities.get(0).getMessage().startsWith("datum written with the writer schema"), is(true));
+  }
+
+  @Test
+  public void testMutualReadVerifiesBothDirections() {
+    SchemaPairCompatibility compatibility = CheckType.MUTUAL_READ.validate(INT, TIME_MILLIS, configuration);
+
+    assertThat(compatibility.getType(), is(SchemaCompatibilityType.INCOMPATIBLE));
+    assertThat(compatibility.getReader(), is(TIME_MILLIS));
+    assertThat(compatibility.getWriter(), is(INT));
+  }
+
+  @Test
+  public void testVerdictOnly() {
+    SchemaPairCompatibility compatibility = CheckType.CAN_READ.validate(TIME_MILLIS, INT,
+        configuration.toBuilder().maximumIncompatibilities(CompatibilityConfiguration.VERDICT_ONLY).build());
+
+    assertThat(compatibility.getType(), is(SchemaCompatibilityType.INCOMPATIBLE));
+    assertThat(compatibility.getDescription(), is(nullValue()));
+    assertThat(compatibility.getResult().getIncompatibilities().get(0).getMessage(), is(nullValue()));
+  }
+
+  @Test
+  public void testSameDatumsEachCheck() {
+    assertThat(CheckType.CAN_READ.validate(TIME_MILLIS, INT, configuration),
+        is(CheckType.CAN_READ.validate(TIME_MILLIS, INT, configuration)));
+  }
+
+  @Test
+  public void testSkipsSchemasWithoutFiniteDatums() {
+    Schema unbounded = new Schema.Parser()
+        .parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"r\",\"type\":\"R\"}]}");
+
+    SchemaPairCompatibility compatibility = CheckType.CAN_READ.validate(unbounded, unbounded, configuration);
+
+    assertThat(compatibility.getType(), is(SchemaCompatibilityType.COMPATIBLE));
+  }
+
+  @Test
+  public void testDatumsLargerThanInitialBuffer() {
+    FieldAssembler<Schema> fields = SchemaBuilder.record("Wide").fields();
+    for (int i = 0; i < 10000; i++) {
+      fields = fields.requiredString("f" + i);
+    }
+    Schema wide = fields.endRecord();
+
+    SchemaPairCompatibility compatibility = CheckType.CAN_READ.validate(wide, wide,
+        CompatibilityConfiguration.builder().verifier(new RoundTripVerifier(3)).build());
+
+    assertThat(compatibility.getType(), is(SchemaCompatibilityType.COMPATIBLE));
+  }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+public class SchemaChronologyTest {
+
+  private final Schema schema1 = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final Schema schema2 = SchemaBuilder.record("r").fields().requiredLong("a").endRecord();
+  private final Schema schema3 = SchemaBuilder.record("r").fields().requiredString("a").endRecord();
+  private final List<Schema> schemas = Arrays.asList(schema1, schema2, schema3);
+
+  @Test
+  public void testLatestOfList() {
+    assertThat(SchemaChronology.latestOf(schemas), is(sameInstance(schema3)));
+    assertThat(SchemaChronology.latestOf(new LinkedList<>(schemas)), is(sameInstance(schema3)));
+  }
+
+  @Test
+  public void testLatestOfDeque() {
+    assertThat(SchemaChronology.latestOf(new ArrayDeque<>(schemas)), is(sameInstance(schema3)));
+  }
+
+  @Test
+  public void testLatestOfIterable() {
+    assertThat(SchemaChronology.latestOf(new LinkedHashSet<>(schemas)), is(sameInstance(schema3)));
+  }
+
+  @Test
+  public void testLatestOfEmpty() {
+    assertThat(SchemaChronology.latestOf(Collections.<Schema> emptyList()), is(nullValue()));
+    assertThat(SchemaChronology.latestOf(new ArrayDeque<Schema>()), is(nullValue()));
+    assertThat(SchemaChronology.of(new TreeMap<Integer, Schema>()).latest(), is(nullValue()));
+  }
+
+  @Test
+  public void testNavigableMap() {
+    TreeMap<Integer, Schema> versions = new TreeMap<>();
+    versions.put(3, schema3);
+    versions.put(1, schema1);
+    versions.put(2, schema2);
+    SchemaChronology chronology = SchemaChronology.of(versions);
+
+    assertThat(chronology.size(), is(3));
+    assertThat(chronology.latest(), is(sameInstance(schema3)));
+    assertThat(Iterators.toString(chronology.iterator()), is(schemas.toString()));
+    assertThat(Iterators.toString(chronology.latestFirst()),
+        is(Arrays.asList(schema3, schema2, schema1).toString()));
+  }
+
+  @Test
+  public void testFromCopiesOnlyPlainIterables() {
+    SchemaChronology chronology = SchemaChronology.from(new LinkedHashSet<>(schemas));
+
+    assertThat(chronology.size(), is(3));
+    assertThat(chronology.latestFirst().next(), is(sameInstance(schema3)));
+    assertThat(SchemaChronology.from(chronology), is(sameInstance(chronology)));
+  }
+
+  @Test
+  public void testLatestCheckDoesNotVisitEarlierSchemas() {
+    ChronologyCompatibilityCheckResult result = Compatibility.Mode.CAN_READ_LATEST.check(schema2,
+        new LatestOnlyChronology(schemas));
+
+    assertThat(result.getResults().size(), is(1));
+    assertThat(result.getResults().get(0).getWriter(), is(sameInstance(schema3)));
+  }
+
+  @Test
+  public void testFailFastCheckDoesNotVisitEarlierSchemas() {
+    ChronologyCompatibilityCheckResult result = Compatibility.Mode.CAN_READ_ALL.checkFailFast(schema2,
+        new LatestOnlyChronology(schemas));
+
+    assertThat(result.isTruncated(), is(true));
+    assertThat(result.getFailedIndex(), is(2));
+  }
+
+  /** Fails if any schema other than the latest is visited. */
+  private static class LatestOnlyChronology extends SchemaChronology {
+    private final List<Schema> schemas;
+
+    LatestOnlyChronology(List<Schema> schemas) {
+      this.schemas = schemas;
+    }
+
+    @Override
+    public int size() {
+      return schemas.size();
+    }
+
+    @Override
+    public Iterator<Schema> iterator() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Schema> latestFirst() {
+      final Iterator<Schema> latestFirst = Lists.reverse(schemas).iterator();
+      return new Iterator<Schema>() {
+        private boolean visited;
+
+        @Override
+        public boolean hasNext() {
+          return !visited && latestFirst.hasNext();
+        }
+
+        @Override
+        public Schema next() {
+          if (visited) {
+            throw new UnsupportedOperationException();
+          }
+          visited = true;
+          return latestFirst.next();
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+
+}
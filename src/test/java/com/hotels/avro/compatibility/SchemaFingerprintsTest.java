@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import org.apache.avro.Schema;
+import org.junit.Test;
+
+public class SchemaFingerprintsTest {
+
+  private static final String RECORD = "{\"type\":\"record\",\"name\":\"r\",\"namespace\":\"n\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"int\"},"
+      + "{\"name\":\"b\",\"type\":{\"type\":\"enum\",\"name\":\"e\",\"symbols\":[\"X\",\"Y\"]},\"default\":\"X\"},"
+      + "{\"name\":\"c\",\"type\":[\"null\",\"r\"]}]}";
+
+  @Test
+  public void testCompatibilityForm() {
+    assertThat(SchemaFingerprints.compatibilityForm(parse(RECORD)),
+        is("{\"name\":\"n.r\",\"type\":\"record\",\"fields\":["
+            + "{\"name\":\"a\",\"type\":\"int\"},"
+            + "{\"name\":\"b\",\"type\":{\"name\":\"n.e\",\"type\":\"enum\",\"symbols\":[\"X\",\"Y\"]},\"default\":true},"
+            + "{\"name\":\"c\",\"type\":[\"null\",\"n.r\"]}]}"));
+  }
+
+  @Test
+  public void testIgnoresDocumentationFormattingAndProperties() {
+    String documented = "{ \"namespace\" : \"n\", \"name\" : \"r\", \"type\" : \"record\", \"doc\" : \"A record\", "
+        + "\"owner\" : \"team\", \"fields\" : ["
+        + "{\"type\":\"int\",\"name\":\"a\",\"doc\":\"A field\"},"
+        + "{\"name\":\"b\",\"type\":{\"type\":\"enum\",\"name\":\"e\",\"symbols\":[\"X\",\"Y\"]},\"default\":\"Y\"},"
+        + "{\"name\":\"c\",\"type\":[\"null\",\"r\"]}]}";
+    assertThat(SchemaFingerprints.fingerprint(parse(documented)), is(SchemaFingerprints.fingerprint(parse(RECORD))));
+  }
+
+  @Test
+  public void testRetainsAliases() {
+    String aliased = RECORD.replace("\"name\":\"a\",", "\"name\":\"a\",\"aliases\":[\"z\"],");
+    assertThat(SchemaFingerprints.fingerprint(parse(aliased)), is(not(SchemaFingerprints.fingerprint(parse(RECORD)))));
+  }
+
+  @Test
+  public void testRetainsDefaultPresence() {
+    String withoutDefault = RECORD.replace(",\"default\":\"X\"", "");
+    assertThat(SchemaFingerprints.fingerprint(parse(withoutDefault)),
+        is(not(SchemaFingerprints.fingerprint(parse(RECORD)))));
+  }
+
+  private static Schema parse(String schema) {
+    return new Schema.Parser().parse(schema);
+  }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.junit.Test;
+
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+public class SchemaInternerTest {
+
+  private static final String RECORD = "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\","
+      + "\"type\":\"int\"}]}";
+  private static final String DOCUMENTED_RECORD = "{\"type\":\"record\",\"name\":\"R\",\"doc\":\"Documented.\","
+      + "\"fields\":[{\"name\":\"a\",\"type\":\"int\"}]}";
+  private static final String WIDER_RECORD = "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\","
+      + "\"type\":\"long\"}]}";
+
+  private final SchemaInterner interner = new SchemaInterner();
+  private final CompatibilityConfiguration configuration = CompatibilityConfiguration
+      .builder()
+      .interner(interner)
+      .build();
+
+  @Test
+  public void testEqualSchemasShareAnInstance() {
+    Schema first = parse(RECORD);
+    Schema second = parse(RECORD);
+
+    assertThat(interner.intern(first), is(sameInstance(first)));
+    assertThat(interner.intern(second), is(sameInstance(first)));
+    assertThat(interner.size(), is(1));
+  }
+
+  @Test
+  public void testDocumentationIsKept() {
+    Schema plain = parse(RECORD);
+    Schema documented = parse(DOCUMENTED_RECORD);
+
+    assertThat(interner.intern(plain), is(sameInstance(plain)));
+    assertThat(interner.intern(documented), is(sameInstance(documented)));
+  }
+
+  @Test
+  public void testStructuralHash() {
+    assertThat(SchemaFingerprints.structuralHash(parse(RECORD)), is(SchemaFingerprints.structuralHash(parse(RECORD))));
+    assertThat(SchemaFingerprints.structuralHash(parse(RECORD)),
+        is(not(SchemaFingerprints.structuralHash(parse(DOCUMENTED_RECORD)))));
+    assertThat(SchemaFingerprints.fingerprint(parse(RECORD)),
+        is(SchemaFingerprints.fingerprint(parse(DOCUMENTED_RECORD))));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNull() {
+    interner.intern(null);
+  }
+
+  @Test
+  public void testPairCheckUsesCanonicalInstances() {
+    Schema reader = interner.intern(parse(WIDER_RECORD));
+    Schema writer = interner.intern(parse(RECORD));
+
+    CompatibilityCheckResult result = Compatibility
+        .checkThat(parse(WIDER_RECORD), configuration)
+        .canRead(parse(RECORD));
+
+    assertThat(result.isCompatible(), is(true));
+    assertThat(result.getReader(), is(sameInstance(reader)));
+    assertThat(result.getWriter(), is(sameInstance(writer)));
+  }
+
+  @Test
+  public void testChronologyCheckUsesCanonicalInstances() {
+    Schema writer = interner.intern(parse(RECORD));
+
+    ChronologyCompatibilityCheckResult result = Mode.CAN_READ_ALL.check(parse(WIDER_RECORD),
+        Arrays.asList(parse(RECORD), parse(DOCUMENTED_RECORD)), configuration);
+
+    assertThat(result.isCompatible(), is(true));
+    assertThat(result.getResults().get(0).getWriter(), is(sameInstance(writer)));
+  }
+
+  @Test
+  public void testCheckEachKeepsCandidatesAsSupplied() {
+    Schema candidate = parse(WIDER_RECORD);
+
+    Map<Schema, ChronologyCompatibilityCheckResult> results = Mode.CAN_READ_LATEST.checkEach(
+        Arrays.asList(candidate), Arrays.asList(parse(RECORD)), configuration);
+
+    assertThat(results.keySet().iterator().next(), is(sameInstance(candidate)));
+    assertThat(results.get(candidate).isCompatible(), is(true));
+  }
+
+  @Test
+  public void testRegistryHoldsCanonicalInstances() {
+    Schema canonical = interner.intern(parse(RECORD));
+    SubjectRegistry registry = new SubjectRegistry(Mode.CAN_READ_ALL, configuration);
+
+    registry.register("subject", parse(RECORD));
+
+    assertThat(registry.getSchema("subject", 1), is(sameInstance(canonical)));
+  }
+
+  private static Schema parse(String schema) {
+    return new Schema.Parser().parse(schema);
+  }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import com.hotels.avro.compatibility.Compatibility.Mode;
+import com.hotels.avro.compatibility.SubjectRegistry.Registration;
+
+public class SubjectRegistryTest {
+
+  private final Schema v1 = SchemaBuilder.record("r").fields().requiredInt("a").endRecord();
+  private final Schema v2 = SchemaBuilder.record("r").fields().requiredInt("a").optionalString("b").endRecord();
+  private final Schema incompatible = SchemaBuilder.record("r").fields().requiredString("a").endRecord();
+
+  private final SubjectRegistry registry = new SubjectRegistry(Mode.CAN_READ_ALL);
+
+  @Test
+  public void testRegister() {
+    Registration first = registry.register("s", v1);
+    Registration second = registry.register("s", v2);
+
+    assertThat(first.isRegistered(), is(true));
+    assertThat(first.isAdded(), is(true));
+    assertThat(first.getVersion(), is(1));
+    assertThat(first.getResult().isCompatible(), is(true));
+    assertThat(second.getVersion(), is(2));
+    assertThat(registry.getLatestVersion("s"), is(2));
+    assertThat(registry.getSchema("s", 1), is(sameInstance(v1)));
+    assertThat(registry.getSchema("s", 2), is(sameInstance(v2)));
+    assertThat(registry.getSchema("s", 3), is(nullValue()));
+    assertThat(Lists.newArrayList(registry.getChronology("s")), is((List<Schema>) Lists.newArrayList(v1, v2)));
+    assertThat(Lists.newArrayList(registry.getChronology("s").latestFirst()),
+        is((List<Schema>) Lists.newArrayList(v2, v1)));
+    assertThat(registry.getSubjects(), is(Collections.singleton("s")));
+  }
+
+  @Test
+  public void testRejectIncompatible() {
+    registry.register("s", v1);
+
+    Registration registration = registry.register("s", incompatible);
+
+    assertThat(registration.isRegistered(), is(false));
+    assertThat(registration.isAdded(), is(false));
+    assertThat(registration.getVersion(), is(-1));
+    assertThat(registration.getResult().isCompatible(), is(false));
+    assertThat(registry.getLatestVersion("s"), is(1));
+  }
+
+  @Test
+  public void testRegisterExistingSchema() {
+    registry.register("s", v1);
+    registry.register("s", v2);
+
+    Registration registration = registry.register("s", new Schema.Parser().parse(v1.toString()));
+
+    assertThat(registration.isRegistered(), is(true));
+    assertThat(registration.isAdded(), is(false));
+    assertThat(registration.getVersion(), is(1));
+    assertThat(registration.getResult(), is(nullValue()));
+    assertThat(registry.getLatestVersion("s"), is(2));
+    assertThat(registry.getVersion("s", v2), is(2));
+    assertThat(registry.getVersion("s", incompatible), is(0));
+  }
+
+  @Test
+  public void testCheckDoesNotRegister() {
+    registry.register("s", v1);
+
+    assertThat(registry.check("s", incompatible).isCompatible(), is(false));
+    assertThat(registry.check("s", v2).isCompatible(), is(true));
+    assertThat(registry.check("t", incompatible).isCompatible(), is(true));
+    assertThat(registry.getLatestVersion("s"), is(1));
+    assertThat(registry.getLatestVersion("t"), is(0));
+  }
+
+  @Test
+  public void testModes() {
+    assertThat(registry.getMode("s"), is(Mode.CAN_READ_ALL));
+
+    registry.setMode("s", Mode.CAN_READ_LATEST);
+    registry.register("s", v1);
+    registry.register("s", v2);
+
+    assertThat(registry.getMode("s"), is(Mode.CAN_READ_LATEST));
+    assertThat(registry.getMode("t"), is(Mode.CAN_READ_ALL));
+    assertThat(registry.getLatestVersion("s"), is(2));
+  }
+
+  @Test
+  public void testConcurrentRegistrations() throws Exception {
+    final int threads = 8;
+    final int schemasPerThread = 25;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            start.await();
+            for (int i = 0; i < schemasPerThread; i++) {
+              Schema schema = SchemaBuilder
+                  .record("r")
+                  .fields()
+                  .requiredInt("a")
+                  .optionalString("f" + thread + "_" + i)
+                  .endRecord();
+              assertThat(registry.register("s", schema).isAdded(), is(true));
+            }
+            return null;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(registry.getLatestVersion("s"), is(threads * schemasPerThread));
+  }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.ALL_INCOMPATIBILITIES;
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.VERDICT_ONLY;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.SchemaCompatibility.Incompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Test;
+
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+public class SubtreeCacheTest {
+
+  private static final String MONEY = "{\"type\":\"record\",\"name\":\"Money\",\"fields\":["
+      + "{\"name\":\"units\",\"type\":\"long\"},{\"name\":\"currency\",\"type\":\"string\"}]}";
+  private static final String NARROW_MONEY = "{\"type\":\"record\",\"name\":\"Money\",\"fields\":["
+      + "{\"name\":\"units\",\"type\":\"int\"},{\"name\":\"currency\",\"type\":\"string\"},"
+      + "{\"name\":\"scale\",\"type\":\"int\"}]}";
+
+  private final SubtreeCache cache = new SubtreeCache(64);
+
+  @Test
+  public void testMatchesAvroForEveryPairWithSharedCache() {
+    List<Schema> corpus = ReaderWriterCheckerTest.parseCorpus();
+    for (int pass = 0; pass < 2; pass++) {
+      for (Schema reader : corpus) {
+        for (Schema writer : corpus) {
+          SchemaPairCompatibility expected = SchemaCompatibility.checkReaderWriterCompatibility(reader, writer);
+          SchemaPairCompatibility actual = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+              ALL_INCOMPATIBILITIES, cache);
+          assertThat(reader + " reading " + writer, actual, is(expected));
+          assertThat(ReaderWriterCheckerTest.locations(actual), is(ReaderWriterCheckerTest.locations(expected)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testVerdictsMatchAvroForEveryPairWithSharedCache() {
+    List<Schema> corpus = ReaderWriterCheckerTest.parseCorpus();
+    for (int pass = 0; pass < 2; pass++) {
+      for (Schema reader : corpus) {
+        for (Schema writer : corpus) {
+          SchemaPairCompatibility expected = SchemaCompatibility.checkReaderWriterCompatibility(reader, writer);
+          SchemaPairCompatibility actual = ReaderWriterChecker.checkReaderWriterCompatibility(reader, writer,
+              VERDICT_ONLY, cache);
+          assertThat(reader + " reading " + writer, actual.getType(), is(expected.getType()));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSharedTypeIsRebasedOntoEnclosingLocation() {
+    Schema readerOrder = parse(order(NARROW_MONEY));
+    Schema writerOrder = parse(order(MONEY));
+    Schema readerInvoice = parse(invoice(NARROW_MONEY));
+    Schema writerInvoice = parse(invoice(MONEY));
+    CompatibilityConfiguration configuration = CompatibilityConfiguration.builder().subtreeCache(cache).build();
+
+    Compatibility.checkThat(readerOrder, configuration).canRead(writerOrder);
+    assertThat(cache.get(SchemaFingerprints.fingerprint(readerOrder.getField("total").schema()),
+        SchemaFingerprints.fingerprint(writerOrder.getField("total").schema()), false), is(notNullValue()));
+    CompatibilityCheckResult result = Compatibility.checkThat(readerInvoice, configuration).canRead(writerInvoice);
+
+    CompatibilityCheckResult expected = Compatibility.checkThat(readerInvoice).canRead(writerInvoice);
+    assertThat(result.getResult(), is(expected.getResult()));
+    Incompatibility incompatibility = result.getResult().getIncompatibilities().get(0);
+    assertThat(incompatibility.getLocation(), is("/fields/1/type/items/fields/0/type/fields/0/type"));
+    Schema readerMoney = readerInvoice.getField("lines").schema().getElementType().getField("amount").schema();
+    assertThat(incompatibility.getReaderFragment(), is(sameInstance(readerMoney.getField("units").schema())));
+  }
+
+  @Test
+  public void testCompatibleSharedType() {
+    Schema reader = parse(order(MONEY));
+    Schema writer = parse(order(MONEY));
+
+    CompatibilityCheckResult result = Compatibility
+        .checkThat(reader, CompatibilityConfiguration.builder().subtreeCache(cache).build())
+        .canRead(writer);
+
+    assertThat(result.isCompatible(), is(true));
+    assertThat(cache.get(SchemaFingerprints.fingerprint(reader.getField("total").schema()),
+        SchemaFingerprints.fingerprint(writer.getField("total").schema()), false), is(notNullValue()));
+  }
+
+  @Test
+  public void testTruncatedVerdictsAreNotShared() {
+    Schema reader = parse(order(NARROW_MONEY));
+    Schema writer = parse(order(MONEY));
+    CompatibilityConfiguration configuration = CompatibilityConfiguration
+        .builder()
+        .subtreeCache(cache)
+        .maximumIncompatibilities(1)
+        .build();
+
+    Mode.CAN_READ_LATEST.check(reader, Arrays.asList(writer), configuration);
+
+    assertThat(cache.get(SchemaFingerprints.fingerprint(reader.getField("total").schema()),
+        SchemaFingerprints.fingerprint(writer.getField("total").schema()), false), is(nullValue()));
+  }
+
+  @Test
+  public void testInvalidateAll() {
+    Schema reader = parse(order(NARROW_MONEY));
+    Schema writer = parse(order(MONEY));
+    Compatibility.checkThat(reader, CompatibilityConfiguration.builder().subtreeCache(cache).build()).canRead(writer);
+
+    cache.invalidateAll();
+
+    assertThat(cache.get(SchemaFingerprints.fingerprint(reader.getField("total").schema()),
+        SchemaFingerprints.fingerprint(writer.getField("total").schema()), false), is(nullValue()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSize() {
+    new SubtreeCache(0);
+  }
+
+  private static String order(String money) {
+    return "{\"type\":\"record\",\"name\":\"Order\",\"fields\":[{\"name\":\"total\",\"type\":" + money + "}]}";
+  }
+
+  private static String invoice(String money) {
+    return "{\"type\":\"record\",\"name\":\"Invoice\",\"fields\":[{\"name\":\"id\",\"type\":\"string\"},"
+        + "{\"name\":\"lines\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"record\",\"name\":\"Line\","
+        + "\"fields\":[{\"name\":\"amount\",\"type\":" + money + "}]}}}]}";
+  }
+
+  private static Schema parse(String schema) {
+    return new Schema.Parser().parse(schema);
+  }
+
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2017-2019 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.avro.compatibility;
+
+import static com.hotels.avro.compatibility.Compatibility.CheckType.CAN_BE_READ_BY;
+import static com.hotels.avro.compatibility.Compatibility.CheckType.CAN_READ;
+import static com.hotels.avro.compatibility.Compatibility.CheckType.MUTUAL_READ;
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.ALL_INCOMPATIBILITIES;
+import static com.hotels.avro.compatibility.CompatibilityConfiguration.VERDICT_ONLY;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.hotels.avro.compatibility.Compatibility.CheckType;
+import com.hotels.avro.compatibility.Compatibility.Mode;
+
+public class VerdictStoreTest {
+
+  private static final String TO_VALIDATE = "{\"type\":\"record\",\"name\":\"r\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"long\"},"
+      + "{\"name\":\"b\",\"type\":{\"type\":\"enum\",\"name\":\"e\",\"symbols\":[\"X\"]}},"
+      + "{\"name\":\"c\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"record\",\"name\":\"n\",\"fields\":["
+      + "{\"name\":\"x\",\"type\":[\"null\",\"int\"]}]}}},"
+      + "{\"name\":\"d\",\"type\":\"string\"}]}";
+  private static final String EXISTING = "{\"type\":\"record\",\"name\":\"r\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"string\"},"
+      + "{\"name\":\"b\",\"type\":{\"type\":\"enum\",\"name\":\"e\",\"symbols\":[\"X\",\"Y\"]}},"
+      + "{\"name\":\"c\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"record\",\"name\":\"n\",\"fields\":["
+      + "{\"name\":\"x\",\"type\":[\"null\",\"string\"]}]}}}]}";
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Schema toValidate = new Schema.Parser().parse(TO_VALIDATE);
+  private final Schema existing = new Schema.Parser().parse(EXISTING);
+
+  @Test
+  public void testMiss() throws IOException {
+    try (VerdictStore store = VerdictStore.open(file())) {
+      assertThat(store.get(CAN_READ, toValidate, existing, ALL_INCOMPATIBILITIES), is(nullValue()));
+      assertThat(store.size(), is(0));
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    try (VerdictStore store = VerdictStore.open(file())) {
+      for (CheckType check : CheckType.values()) {
+        for (int maximumIncompatibilities : Arrays.asList(VERDICT_ONLY, 1, ALL_INCOMPATIBILITIES)) {
+          assertRoundTrip(store, check, toValidate, existing, maximumIncompatibilities);
+          assertRoundTrip(store, check, existing, toValidate, maximumIncompatibilities);
+          assertRoundTrip(store, check, toValidate, toValidate, maximumIncompatibilities);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSurvivesReopening() throws IOException {
+    Path file = file();
+    SchemaPairCompatibility compatibility = MUTUAL_READ.validate(toValidate, existing);
+    try (VerdictStore store = VerdictStore.open(file)) {
+      store.put(MUTUAL_READ, toValidate, existing, ALL_INCOMPATIBILITIES, compatibility);
+    }
+    try (VerdictStore store = VerdictStore.open(file)) {
+      assertThat(store.size(), is(1));
+      assertThat(store.get(MUTUAL_READ, toValidate, existing, ALL_INCOMPATIBILITIES), is(compatibility));
+    }
+  }
+
+  @Test
+  public void testRebindsEqualSchemas() throws IOException {
+    Schema toValidateCopy = new Schema.Parser().parse(TO_VALIDATE);
+    Schema existingCopy = new Schema.Parser().parse(EXISTING);
+    try (VerdictStore store = VerdictStore.open(file())) {
+      store.put(CAN_READ, toValidate, existing, ALL_INCOMPATIBILITIES, CAN_READ.validate(toValidate, existing));
+
+      SchemaPairCompatibility stored = store.get(CAN_READ, toValidateCopy, existingCopy, ALL_INCOMPATIBILITIES);
+
+      assertThat(stored, is(CAN_READ.validate(toValidateCopy, existingCopy)));
+      assertThat(stored.getReader(), is(sameInstance(toValidateCopy)));
+      assertThat(stored.getWriter(), is(sameInstance(existingCopy)));
+    }
+  }
+
+  @Test
+  public void testDiscardsTornRecord() throws IOException {
+    Path file = file();
+    try (VerdictStore store = VerdictStore.open(file)) {
+      store.put(CAN_READ, toValidate, existing, ALL_INCOMPATIBILITIES, CAN_READ.validate(toValidate, existing));
+      store.put(CAN_BE_READ_BY, toValidate, existing, ALL_INCOMPATIBILITIES,
+          CAN_BE_READ_BY.validate(toValidate, existing));
+    }
+    corruptLastByte(file);
+
+    try (VerdictStore store = VerdictStore.open(file)) {
+      assertThat(store.size(), is(1));
+      assertThat(store.get(CAN_BE_READ_BY, toValidate, existing, ALL_INCOMPATIBILITIES), is(nullValue()));
+      store.put(CAN_BE_READ_BY, toValidate, existing, ALL_INCOMPATIBILITIES,
+          CAN_BE_READ_BY.validate(toValidate, existing));
+    }
+    try (VerdictStore store = VerdictStore.open(file)) {
+      assertThat(store.size(), is(2));
+      assertThat(store.get(CAN_BE_READ_BY, toValidate, existing, ALL_INCOMPATIBILITIES),
+          is(CAN_BE_READ_BY.validate(toValidate, existing)));
+    }
+  }
+
+  @Test
+  public void testCompact() throws IOException {
+    Path file = file();
+    try (VerdictStore store = VerdictStore.open(file)) {
+      store.put(CAN_READ, toValidate, existing, ALL_INCOMPATIBILITIES, CAN_READ.validate(toValidate, existing));
+      store.put(CAN_READ, toValidate, existing, VERDICT_ONLY, CAN_READ.validate(toValidate, existing, VERDICT_ONLY));
+
+      long size = Files.size(file);
+
+      store.compact();
+
+      assertThat(Files.size(file) < size, is(true));
+      assertThat(store.size(), is(2));
+      assertThat(store.get(CAN_READ, toValidate, existing, ALL_INCOMPATIBILITIES),
+          is(CAN_READ.validate(toValidate, existing)));
+      store.put(MUTUAL_READ, toValidate, existing, ALL_INCOMPATIBILITIES, MUTUAL_READ.validate(toValidate, existing));
+      try {
+        VerdictStore.openReadOnly(file);
+        fail("Compacted store should remain locked");
+      } catch (IOException e) {
+        // expected
+      }
+    }
+    assertThat(Files.exists(file.resolveSibling(file.getFileName() + ".compact")), is(false));
+    try (VerdictStore store = VerdictStore.open(file)) {
+      assertThat(store.size(), is(3));
+      assertThat(store.get(CAN_READ, toValidate, existing, VERDICT_ONLY),
+          is(CAN_READ.validate(toValidate, existing, VERDICT_ONLY)));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriterHoldsLock() throws IOException {
+    Path file = file();
+    try (VerdictStore store = VerdictStore.open(file)) {
+      VerdictStore.open(file);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testReaderLockedOutByWriter() throws IOException {
+    Path file = file();
+    try (VerdictStore store = VerdictStore.open(file)) {
+      VerdictStore.openReadOnly(file);
+    }
+  }
+
+  @Test
+  public void testReopenedOnceClosed() throws IOException {
+    Path file = file();
+    VerdictStore.open(file).close();
+    try (VerdictStore store = VerdictStore.openReadOnly(file)) {
+      assertThat(store.isReadOnly(), is(true));
+    }
+    try (VerdictStore store = VerdictStore.open(file)) {
+      assertThat(store.isReadOnly(), is(false));
+    }
+  }
+
+  @Test
+  public void testReadOnly() throws IOException {
+    Path file = file();
+    SchemaPairCompatibility compatibility = CAN_READ.validate(toValidate, existing);
+    try (VerdictStore store = VerdictStore.open(file)) {
+      store.put(CAN_READ, toValidate, existing, ALL_INCOMPATIBILITIES, compatibility);
+    }
+    long size = Files.size(file);
+
+    try (VerdictStore store = VerdictStore.openReadOnly(file)) {
+      assertThat(store.get(CAN_READ, toValidate, existing, ALL_INCOMPATIBILITIES), is(compatibility));
+      store.put(MUTUAL_READ, toValidate, existing, ALL_INCOMPATIBILITIES, MUTUAL_READ.validate(toValidate, existing));
+      assertThat(store.get(MUTUAL_READ, toValidate, existing, ALL_INCOMPATIBILITIES), is(nullValue()));
+      assertThat(store.size(), is(1));
+    }
+    assertThat(Files.size(file), is(size));
+  }
+
+  @Test
+  public void testReadOnlyLeavesTornRecord() throws IOException {
+    Path file = file();
+    try (VerdictStore store = VerdictStore.open(file)) {
+      store.put(CAN_READ, toValidate, existing, ALL_INCOMPATIBILITIES, CAN_READ.validate(toValidate, existing));
+      store.put(CAN_BE_READ_BY, toValidate, existing, ALL_INCOMPATIBILITIES,
+          CAN_BE_READ_BY.validate(toValidate, existing));
+    }
+    corruptLastByte(file);
+    byte[] contents = Files.readAllBytes(file);
+
+    try (VerdictStore store = VerdictStore.openReadOnly(file)) {
+      assertThat(store.size(), is(1));
+    }
+    assertThat(Arrays.equals(Files.readAllBytes(file), contents), is(true));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReadOnlyCannotBeCompacted() throws IOException {
+    Path file = file();
+    VerdictStore.open(file).close();
+    try (VerdictStore store = VerdictStore.openReadOnly(file)) {
+      store.compact();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testNotAStore() throws IOException {
+    Path file = file();
+    Files.write(file, "not a verdict store".getBytes("UTF-8"));
+    VerdictStore.open(file);
+  }
+
+  @Test
+  public void testSecondTier() throws IOException {
+    try (VerdictStore store = VerdictStore.open(file())) {
+      CountingListener listener = new CountingListener();
+      CompatibilityConfiguration configuration = CompatibilityConfiguration
+          .builder()
+          .cache(new CompatibilityCache(16))
+          .verdictStore(store)
+          .listener(listener)
+          .build();
+      ChronologyCompatibilityCheckResult result = Mode.CAN_READ_ALL.check(toValidate, Arrays.asList(existing),
+          configuration);
+      assertThat(store.size(), is(1));
+      assertThat(listener.misses, is(1));
+
+      CompatibilityConfiguration restarted = configuration.toBuilder().cache(new CompatibilityCache(16)).build();
+      assertThat(Mode.CAN_READ_ALL.check(toValidate, Arrays.asList(existing), restarted), is(result));
+      assertThat(listener.misses, is(1));
+      assertThat(listener.hits, is(1));
+      assertThat(Mode.CAN_READ_ALL.check(toValidate, Arrays.asList(existing), restarted), is(result));
+      assertThat(listener.hits, is(2));
+    }
+  }
+
+  private void assertRoundTrip(
+      VerdictStore store,
+      CheckType check,
+      Schema toValidate,
+      Schema existing,
+      int maximumIncompatibilities) {
+    SchemaPairCompatibility compatibility = check.validate(toValidate, existing, maximumIncompatibilities);
+    store.put(check, toValidate, existing, maximumIncompatibilities, compatibility);
+    assertThat(store.get(check, toValidate, existing, maximumIncompatibilities), is(compatibility));
+  }
+
+  private Path file() {
+    return temporaryFolder.getRoot().toPath().resolve("verdicts.bin");
+  }
+
+  /** Corrupts the last record, which is followed by the zeroed tail of the mapping. */
+  private static void corruptLastByte(Path file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+      long position = raf.length() - 1;
+      while (position > 0) {
+        raf.seek(position);
+        int value = raf.read();
+        if (value != 0) {
+          raf.seek(position);
+          raf.write(value ^ 0xFF);
+          return;
+        }
+        position--;
+      }
+    }
+  }
+
+  private static final class CountingListener extends CompatibilityListener {
+    private int hits;
+    private int misses;
+
+    @Override
+    public void cacheHit(CheckType check) {
+      hits++;
+    }
+
+    @Override
+    public void cacheMiss(CheckType check) {
+      misses++;
+    }
+  }
+
+}